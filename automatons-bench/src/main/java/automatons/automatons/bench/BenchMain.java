@@ -0,0 +1,35 @@
+package automatons.automatons.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * main of benchmarks.jar: same command line as org.openjdk.jmh.Main, but the
+ * gc profiler is always on, so every result comes with allocation rates
+ * (gc.alloc.rate.norm = bytes per operation); <br>
+ * java -jar automatons-bench/target/benchmarks.jar EngineStep -rf json
+ */
+public class BenchMain {
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams() || cmd.shouldListProfilers()
+                || cmd.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        boolean gc = false;
+        for (ProfilerConfig p : cmd.getProfilers()) {
+            gc |= p.getKlass().equals("gc") || p.getKlass().equals(GCProfiler.class.getName());
+        }
+        final OptionsBuilder options = new OptionsBuilder();
+        options.parent(cmd);
+        if (!gc) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
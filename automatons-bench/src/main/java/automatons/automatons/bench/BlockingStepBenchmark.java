@@ -0,0 +1,119 @@
+package automatons.automatons.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.VirtualThreadScheduler;
+
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * I/O-heavy bots: every step is a 1 ms blocking call; time to run the whole
+ * fleet (bots x 10 steps); <br>
+ * pool = fromExecutor(ScheduledThreadPool(64)), virtual =
+ * {@link VirtualThreadScheduler} (platform threads fallback before java 21,
+ * check the log);
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockingStepBenchmark {
+    static final int STEPS = 10;
+
+    @Param({ "pool", "virtual" }) String impl;
+
+    @Param({ "1000", "10000" }) int bots;
+
+    private ScheduledExecutorService pool;
+    private AutomatonScheduler sched;
+
+    protected static class IoBot extends AbstractAutomaton<IoBot.IoState> {
+        int remaining = STEPS;
+
+        protected IoBot(Builder b) {
+            super(b);
+        }
+
+        enum IoState implements Supplier<AbstractStep<IoBot>> {
+            BEGIN, CALL;
+
+            // first step runs in the thread of start(), it must not block;
+            private static final Step<IoBot> begin = new Step<IoBot>() {
+                @Override public StepResult step(IoBot self) {
+                    return self.next(CALL);
+                }
+            };
+
+            private static final BlockingStep<IoBot> call = new BlockingStep<IoBot>() {
+                @Override public StepResult step(IoBot self) throws Exception {
+                    Thread.sleep(1); // blocking client call;
+                    return --self.remaining > 0 ? self.nextSameState() : self.nextEnd();
+                }
+            };
+
+            @Override public AbstractStep<IoBot> get() {
+                return this == BEGIN ? begin : call;
+            }
+        }
+
+        protected static class Builder extends BuilderBase<Builder, IoState, IoBot> {
+            protected Builder() {
+                super(IoState.BEGIN);
+            }
+
+            public IoBot build() {
+                return new IoBot(this);
+            }
+        }
+    }
+
+    @Setup(Level.Trial) public void setUp() {
+        if ("pool".equals(impl)) {
+            pool = Executors.newScheduledThreadPool(64);
+            sched = AutomatonScheduler.fromExecutor(pool);
+        } else {
+            sched = AutomatonScheduler.virtualThreads();
+        }
+    }
+
+    @TearDown(Level.Trial) public void tearDown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        } else {
+            ((VirtualThreadScheduler) sched).shutdown();
+        }
+    }
+
+    @Benchmark public void fleet() throws Exception {
+        final List<ListenableFuture<?>> stops = new ArrayList<>(bots);
+        for (int i = 0; i < bots; i++) {
+            stops.add(new IoBot.Builder().build().start(sched));
+        }
+        for (ListenableFuture<?> stop : stops) {
+            stop.get();
+        }
+    }
+}
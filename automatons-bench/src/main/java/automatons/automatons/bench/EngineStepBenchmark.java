@@ -0,0 +1,180 @@
+package automatons.automatons.bench;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.JumpAutomaton;
+import automatons.automatons.sched.AutomatonScheduler;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * single threaded cost of the engine itself: one automaton runs STEPS steps
+ * per invocation on a scheduler which executes zero-delay steps inline (in
+ * the benchmark thread), score is steps/us; <br>
+ * next = zero-delay next() (park + inline fire), join = one nextJoin() chain,
+ * react = react step on a completed future + nextJoin(), jump =
+ * {@link JumpAutomaton} with one jump per state; <br>
+ * run with -prof gc (BenchMain does) for bytes per step;
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineStepBenchmark {
+    static final int STEPS = 10000;
+
+    static final Executor inline = new Executor() {
+        @Override public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    static final AutomatonScheduler sched = AutomatonScheduler.make(inline, null, null);
+
+    protected static class PingBot extends AbstractAutomaton<PingBot.Ping> {
+        static final ListenableFuture<Object> ready = Futures.<Object> immediateFuture("ready");
+        int left;
+        boolean join;
+
+        enum Ping implements Supplier<AbstractStep<PingBot>> {
+            PING, PONG, POLL;
+
+            private static final Step<PingBot> step = new Step<PingBot>() {
+                @Override public StepResult step(PingBot self) {
+                    if (self.left-- <= 0) {
+                        return self.nextEnd();
+                    }
+                    final Ping next = self.getCurrentState() == PING ? PONG : PING;
+                    return self.join ? self.nextJoin(next) : self.next(next);
+                }
+            };
+
+            private static final ReactStep<PingBot, Object> poll = new ReactStep<PingBot, Object>() {
+                @Override public ListenableFuture<Object> future(PingBot self) {
+                    return ready;
+                }
+
+                @Override public StepResult step(PingBot self, Object result) {
+                    return self.left-- > 0 ? self.nextJoin(POLL) : self.nextEnd();
+                }
+            };
+
+            @Override public AbstractStep<PingBot> get() {
+                return this == POLL ? poll : step;
+            }
+        }
+
+        protected PingBot(Builder b) {
+            super(b);
+        }
+
+        protected static class Builder extends BuilderBase<Builder, Ping, PingBot> {
+            protected Builder(Ping initial) {
+                super(initial);
+            }
+
+            public PingBot build() {
+                return new PingBot(this);
+            }
+        }
+    }
+
+    protected static class JumpBot extends JumpAutomaton<JumpBot.Jump> {
+        int left;
+
+        enum Jump implements Supplier<StepWithJump<JumpBot>> {
+            PING, PONG;
+
+            private static final StepWithJump<JumpBot> step = new StepWithJump<JumpBot>() {
+                @Override public void stepWithJump(JumpBot self) {
+                    self.left--;
+                }
+            };
+
+            @Override public StepWithJump<JumpBot> get() {
+                return step;
+            }
+        }
+
+        static final Predicate<JumpBot> done = new Predicate<JumpBot>() {
+            @Override public boolean apply(JumpBot self) {
+                return self.left <= 0;
+            }
+        };
+
+        protected JumpBot(Builder b) {
+            super(b);
+        }
+
+        protected static class Builder extends JumpBuilder<Builder, Jump, JumpBot> {
+            protected Builder() {
+                super(Jump.class);
+            }
+
+            public JumpBot build() {
+                return new JumpBot(this);
+            }
+        }
+    }
+
+    private PingBot next;
+    private PingBot join;
+    private PingBot react;
+    private JumpBot jump;
+
+    @Setup(Level.Trial) public void setUp() {
+        next = new PingBot.Builder(PingBot.Ping.PING).build();
+        join = new PingBot.Builder(PingBot.Ping.PING).build();
+        join.join = true;
+        react = new PingBot.Builder(PingBot.Ping.POLL).build();
+        jump = new JumpBot.Builder().jumpsBegin(JumpBot.Jump.PING)
+                .jump(JumpBot.Jump.PING, null).when(JumpBot.done).nodelay()
+                .jump(JumpBot.Jump.PING, JumpBot.Jump.PONG).nodelay()
+                .jump(JumpBot.Jump.PONG, null).when(JumpBot.done).nodelay()
+                .jump(JumpBot.Jump.PONG, JumpBot.Jump.PING).nodelay()
+                .jumpsEnd().build();
+    }
+
+    private static Automaton.StopDescription<?> run(PingBot bot) throws Exception {
+        bot.left = STEPS;
+        return bot.start(sched).get();
+    }
+
+    @Benchmark @OperationsPerInvocation(STEPS) public Object next() throws Exception {
+        return run(next);
+    }
+
+    @Benchmark @OperationsPerInvocation(STEPS) public Object join() throws Exception {
+        return run(join);
+    }
+
+    @Benchmark @OperationsPerInvocation(STEPS) public Object react() throws Exception {
+        return run(react);
+    }
+
+    @Benchmark @OperationsPerInvocation(STEPS) public Object jump() throws Exception {
+        jump.left = STEPS;
+        return jump.start(sched).get();
+    }
+}
@@ -0,0 +1,137 @@
+package automatons.automatons.bench;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.AbstractAutomaton.AbstractStep;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.utility.PartialFunction;
+
+import com.google.common.base.Supplier;
+
+/**
+ * cost of one enum state step: A -> B -> C -> A ... with nextJoin(), so the
+ * whole run happens inside start() in the benchmark thread; <br>
+ * function = default statesFunction, table = ordinal-indexed statesFunction
+ * ({@link EnumTable}) which still calls get() of the state per step; the
+ * table is not faster (the JIT inlines the default lookup), so the engine
+ * keeps the default statesFunction;
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnumDispatchBenchmark {
+    static final int STEPS = 30000;
+
+    @Param({ "table", "function" }) String impl;
+
+    /**
+     * statesFunction of one enum class: supplier states by ordinal, get() is
+     * resolved per call (it may return different steps);
+     */
+    static final class EnumTable<S extends Enum<S> & Supplier<? extends AbstractStep<A>>, A extends AbstractAutomaton<S>>
+            implements PartialFunction<S, AbstractStep<A>> {
+        private final Object[] states;
+
+        EnumTable(Class<S> type) {
+            states = type.getEnumConstants();
+        }
+
+        @Override public boolean isDefinedAt(S state) {
+            final int ordinal = state.ordinal();
+            return ordinal < states.length && states[ordinal] == state;
+        }
+
+        @SuppressWarnings("unchecked") @Override public AbstractStep<A> apply(S state) {
+            return ((Supplier<? extends AbstractStep<A>>) states[state.ordinal()]).get();
+        }
+    }
+
+    private ScheduledExecutorService exec;
+    private AutomatonScheduler sched;
+
+    protected static class AbcBot extends AbstractAutomaton<AbcBot.AbcState> {
+        int left;
+
+        protected AbcBot(Builder b) {
+            super(b);
+        }
+
+        enum AbcState implements Supplier<AbstractStep<AbcBot>> {
+            A, B, C;
+
+            private static final Step<AbcBot> a = new Step<AbcBot>() {
+                @Override public StepResult step(AbcBot self) {
+                    return --self.left > 0 ? self.nextJoin(B) : self.nextEnd();
+                }
+            };
+
+            private static final Step<AbcBot> b = new Step<AbcBot>() {
+                @Override public StepResult step(AbcBot self) {
+                    return --self.left > 0 ? self.nextJoin(C) : self.nextEnd();
+                }
+            };
+
+            private static final Step<AbcBot> c = new Step<AbcBot>() {
+                @Override public StepResult step(AbcBot self) {
+                    return --self.left > 0 ? self.nextJoin(A) : self.nextEnd();
+                }
+            };
+
+            @Override public AbstractStep<AbcBot> get() {
+                return this == A ? a : this == B ? b : c;
+            }
+        }
+
+        protected static class Builder extends BuilderBase<Builder, AbcState, AbcBot> {
+            protected Builder(boolean table) {
+                super(AbcState.A);
+                if (table) {
+                    statesFunction(new EnumTable<AbcState, AbcBot>(AbcState.class));
+                }
+            }
+
+            public AbcBot build() {
+                return new AbcBot(this);
+            }
+        }
+    }
+
+    private AbcBot bot;
+
+    @Setup(Level.Trial) public void setUp() {
+        exec = Executors.newSingleThreadScheduledExecutor();
+        // instantExec is never used: all steps are joined;
+        sched = AutomatonScheduler.make(exec, null, exec);
+        bot = new AbcBot.Builder("table".equals(impl)).build();
+    }
+
+    @TearDown(Level.Trial) public void tearDown() {
+        exec.shutdownNow();
+    }
+
+    @Benchmark @OperationsPerInvocation(STEPS) public Object run() throws Exception {
+        bot.left = STEPS;
+        return bot.start(sched).get();
+    }
+}
@@ -0,0 +1,70 @@
+package automatons.automatons.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import automatons.automatons.bench.EngineStepBenchmark.JumpBot;
+import automatons.automatons.dsl.DslForJumpAutomaton;
+import automatons.automatons.random.Randomizers;
+
+import com.google.common.base.Predicate;
+
+/**
+ * jump selection of {@link automatons.automatons.JumpAutomaton}: every step
+ * of PING checks "predicates" false predicates, then the end predicate, then
+ * picks one of "branches" equally probable loops (TreeMap lookup of a random
+ * double); same inline scheduler as {@link EngineStepBenchmark}, score is
+ * steps/us;
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JumpDispatchBenchmark {
+
+    @Param({ "0", "8", "64" }) int predicates;
+
+    @Param({ "1", "8", "64" }) int branches; // power of 2, so that 1/branches sum up to 1 exactly;
+
+    private JumpBot bot;
+
+    private static final class Never implements Predicate<JumpBot> {
+        @Override public boolean apply(JumpBot self) {
+            return self.left < 0;
+        }
+    }
+
+    @Setup(Level.Trial) public void setUp() {
+        final JumpBot.Builder b = new JumpBot.Builder();
+        b.randomizer(Randomizers.uniform(42));
+        DslForJumpAutomaton.Jumps<JumpBot.Builder, JumpBot.Jump, JumpBot> jumps = b.jumpsBegin(JumpBot.Jump.PING);
+        for (int i = 0; i < predicates; i++) {
+            jumps = jumps.jump(JumpBot.Jump.PING, JumpBot.Jump.PONG).when(new Never()).nodelay();
+        }
+        jumps = jumps.jump(JumpBot.Jump.PING, null).when(JumpBot.done).nodelay();
+        for (int i = 0; i < branches; i++) {
+            jumps = jumps.loop(JumpBot.Jump.PING).maybe(1.0 / branches).nodelay();
+        }
+        bot = jumps.jump(JumpBot.Jump.PONG, JumpBot.Jump.PING).nodelay().jumpsEnd().build();
+    }
+
+    @Benchmark @OperationsPerInvocation(EngineStepBenchmark.STEPS) public Object fire() throws Exception {
+        bot.left = EngineStepBenchmark.STEPS;
+        return bot.start(EngineStepBenchmark.sched).get();
+    }
+}
@@ -0,0 +1,318 @@
+package automatons.automatons.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import automatons.automatons.Automaton.StopDescription;
+import automatons.automatons.AutomatonEngine;
+import automatons.automatons.AutomatonFleet;
+import automatons.automatons.AutomatonListener;
+import automatons.automatons.JumpAutomaton;
+import automatons.automatons.dsl.DslForJumpAutomaton;
+import automatons.automatons.metrics.LogHistogram;
+import automatons.automatons.random.Randomizers;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.EventLoopScheduler;
+import automatons.automatons.sched.ForkJoinScheduler;
+import automatons.automatons.sched.HashedWheelScheduler;
+import automatons.automatons.sched.VirtualThreadScheduler;
+
+import com.google.common.base.Supplier;
+
+/**
+ * soak/load harness (not a JMH benchmark): adds "step" bots every "stage"
+ * seconds to one scheduler until p99 timer lag or p99 step time of a stage
+ * exceeds its SLO (or "max" bots run); prints one JSON line per stage and a
+ * result line with the last stage within SLO, botsPerCore is per thread of
+ * the scheduler: <br>
+ * java -cp automatons-bench/target/benchmarks.jar
+ * automatons.automatons.bench.LoadHarness sched=wheel workload=abc <br>
+ * options (name=value): sched = stpe|fj|loops|wheel|virtual (default
+ * loops), threads (cores), workload = abc|coin (abc), step (10000 bots),
+ * stage (10 s), max (10^7 bots), lagSlo (10 ms), stepSlo (1000 us), seed; <br>
+ * workloads are jump automatons in the style of the README: abc = A -> B ->
+ * C -> A with maybe-loops and 100..1000 ms delays, coin = A <-> B (0.5) with
+ * 10..100 ms delays; heap per bot is measured after System.gc() at the end
+ * of stage, GC time excludes these collections; percentiles are upper
+ * bounds of log2 buckets, see {@link LogHistogram};
+ */
+public class LoadHarness {
+
+    /**
+     * all bots report to it, measurements of a stage go to the current
+     * histograms;
+     */
+    static final class StageListener implements AutomatonListener {
+        volatile LogHistogram steps = new LogHistogram();
+        volatile LogHistogram lags = new LogHistogram();
+
+        @Override public void onStep(AutomatonEngine<?> automaton, Object state, @Nullable Object nextState,
+                long nanos) {
+            steps.record(nanos);
+        }
+
+        @Override public void onReact(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+        }
+
+        @Override public void onReactTimeout(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+        }
+
+        @Override public void onTimer(AutomatonEngine<?> automaton, AutomatonScheduler sched, long lagNanos) {
+            lags.record(lagNanos);
+        }
+
+        @Override public void onJump(JumpAutomaton<?> automaton, Object source, @Nullable Object target) {
+        }
+
+        @Override public void onStop(AutomatonEngine<?> automaton, StopDescription<?> description) {
+        }
+    }
+
+    protected static class LoadBot extends JumpAutomaton<LoadBot.State> {
+        long work;
+
+        protected LoadBot(Builder b) {
+            super(b);
+        }
+
+        enum State implements Supplier<StepWithJump<LoadBot>> {
+            A, B, C;
+
+            private static final StepWithJump<LoadBot> step = new StepWithJump<LoadBot>() {
+                @Override public void stepWithJump(LoadBot self) {
+                    self.work = self.work * 31 + self.getCurrentState().ordinal();
+                }
+            };
+
+            @Override public StepWithJump<LoadBot> get() {
+                return step;
+            }
+        }
+
+        protected static class Builder extends JumpBuilder<Builder, State, LoadBot> {
+            protected Builder() {
+                super(State.class);
+                enableManualStop();
+            }
+
+            public LoadBot build() {
+                return new LoadBot(this);
+            }
+        }
+
+        static LoadBot build(String workload, long seed, AutomatonListener listener) {
+            final Builder b = new Builder();
+            b.listener(listener).randomizer(Randomizers.uniform(seed));
+            final DslForJumpAutomaton.Jumps<Builder, State, LoadBot> jumps = b.jumpsBegin(State.A);
+            if ("coin".equals(workload)) {
+                return jumps.jump(State.A, State.B).maybe(0.5).delay(JumpAutomaton.<LoadBot> toDelay(10, 100))
+                        .loop(State.A).maybe(0.5).delay(JumpAutomaton.<LoadBot> toDelay(10, 100))
+                        .jump(State.B, State.A).delay(JumpAutomaton.<LoadBot> toDelay(10, 100))
+                        .jumpsEnd().build();
+            }
+            if ("abc".equals(workload)) {
+                return jumps.jump(State.A, State.B).maybe(0.5).delay(JumpAutomaton.<LoadBot> toDelay(100, 1000))
+                        .loop(State.A).maybe(0.5).nodelay()
+                        .jump(State.B, State.C).maybe(0.5).delay(JumpAutomaton.<LoadBot> toDelay(100, 1000))
+                        .loop(State.B).maybe(0.5).nodelay()
+                        .jump(State.C, State.A).delay(JumpAutomaton.<LoadBot> toDelay(100, 1000))
+                        .jumpsEnd().build();
+            }
+            throw new IllegalArgumentException("workload? " + workload);
+        }
+    }
+
+    private static AutomatonScheduler scheduler(String impl, int threads, List<Runnable> shutdown) {
+        switch (impl) {
+        case "stpe":
+            final ScheduledExecutorService stpe = Executors.newScheduledThreadPool(threads);
+            shutdown.add(new Runnable() {
+                @Override public void run() {
+                    stpe.shutdownNow();
+                }
+            });
+            return AutomatonScheduler.fromExecutor(stpe);
+        case "wheel":
+            final ScheduledExecutorService exec = Executors.newScheduledThreadPool(threads);
+            final HashedWheelScheduler wheel = AutomatonScheduler.timingWheel(exec, 1, TimeUnit.MILLISECONDS);
+            shutdown.add(new Runnable() {
+                @Override public void run() {
+                    wheel.shutdown();
+                    exec.shutdownNow();
+                }
+            });
+            return wheel;
+        case "fj":
+            final ForkJoinScheduler fj = AutomatonScheduler.forkJoin(threads);
+            shutdown.add(new Runnable() {
+                @Override public void run() {
+                    fj.shutdown();
+                }
+            });
+            return fj;
+        case "loops":
+            final EventLoopScheduler loops = AutomatonScheduler.eventLoops(threads);
+            shutdown.add(new Runnable() {
+                @Override public void run() {
+                    loops.shutdown();
+                }
+            });
+            return loops;
+        case "virtual":
+            final VirtualThreadScheduler virtual = AutomatonScheduler.virtualThreads();
+            shutdown.add(new Runnable() {
+                @Override public void run() {
+                    virtual.shutdown();
+                }
+            });
+            return virtual;
+        default:
+            throw new IllegalArgumentException("sched? " + impl);
+        }
+    }
+
+    private static long gcMillis() {
+        long sum = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sum += Math.max(0, gc.getCollectionTime());
+        }
+        return sum;
+    }
+
+    private static long heapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * rounded value, a JSON number in plain notation;
+     */
+    private static BigDecimal decimal(double value, int scale) {
+        return new BigDecimal(value).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    private static String json(Map<String, ?> fields) {
+        final StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, ?> e : fields.entrySet()) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append('"').append(e.getKey()).append("\":");
+            final Object v = e.getValue();
+            if (v instanceof Number || v instanceof Boolean) {
+                sb.append(v);
+            } else {
+                sb.append('"').append(v).append('"');
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> opts = new LinkedHashMap<>();
+        for (String arg : args) {
+            final int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("name=value? " + arg);
+            }
+            opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final String impl = opt(opts, "sched", "loops");
+        final int threads = Integer.parseInt(opt(opts, "threads", Integer.toString(cores)));
+        final String workload = opt(opts, "workload", "abc");
+        final int step = Integer.parseInt(opt(opts, "step", "10000"));
+        final long stage = TimeUnit.SECONDS.toMillis(Long.parseLong(opt(opts, "stage", "10")));
+        final long max = Long.parseLong(opt(opts, "max", "10000000"));
+        final long lagSlo = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(opt(opts, "lagSlo", "10")));
+        final long stepSlo = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(opt(opts, "stepSlo", "1000")));
+        long seed = Long.parseLong(opt(opts, "seed", "42"));
+
+        final List<Runnable> shutdown = new ArrayList<>();
+        final AutomatonScheduler sched = scheduler(impl, threads, shutdown);
+        final AutomatonFleet<LoadBot.State> fleet = new AutomatonFleet<>(sched);
+        final StageListener listener = new StageListener();
+        final List<LoadBot> bots = new ArrayList<>();
+        final long baseHeap = heapAfterGc();
+        Map<String, Object> passed = null;
+        try {
+            for (int n = 1; bots.size() < max; n++) {
+                final List<LoadBot> added = new ArrayList<>(step);
+                for (int i = 0; i < step && bots.size() + added.size() < max; i++) {
+                    added.add(LoadBot.build(workload, seed++, listener));
+                }
+                bots.addAll(added);
+                fleet.startAll(added);
+                Thread.sleep(stage / 5); // started bots settle, first steps are synchronized;
+                listener.steps = new LogHistogram();
+                listener.lags = new LogHistogram();
+                final long gc0 = gcMillis();
+                final long t0 = System.nanoTime();
+                Thread.sleep(stage);
+                final long elapsed = System.nanoTime() - t0;
+                final long gc = gcMillis() - gc0;
+                final LogHistogram steps = listener.steps;
+                final LogHistogram lags = listener.lags;
+                final long heap = heapAfterGc() - baseHeap;
+
+                final long p99Lag = lags.getPercentile(0.99, TimeUnit.NANOSECONDS);
+                final long p99Step = steps.getPercentile(0.99, TimeUnit.NANOSECONDS);
+                final boolean ok = p99Lag <= lagSlo && p99Step <= stepSlo && fleet.getRunning() == bots.size();
+                final Map<String, Object> r = new LinkedHashMap<>();
+                r.put("stage", n);
+                r.put("sched", impl);
+                r.put("workload", workload);
+                r.put("bots", bots.size());
+                r.put("running", fleet.getRunning());
+                r.put("botsPerCore", decimal((double) bots.size() / threads, 1));
+                r.put("stepsPerSec", steps.getCount() * TimeUnit.SECONDS.toNanos(1) / elapsed);
+                r.put("p99LagMs", decimal(p99Lag / 1e6, 3));
+                r.put("p99StepUs", decimal(p99Step / 1e3, 3));
+                r.put("heapPerBot", heap / bots.size());
+                r.put("gcMillis", gc);
+                r.put("gcPercent", decimal(gc * 100e6 / elapsed, 2));
+                r.put("ok", ok);
+                System.out.println(json(r));
+                if (!ok) {
+                    break;
+                }
+                passed = r;
+            }
+        } finally {
+            fleet.stopAll(bots);
+            fleet.awaitAll(1, TimeUnit.MINUTES);
+            for (Runnable r : shutdown) {
+                r.run();
+            }
+        }
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("result", passed != null ? "sustainable" : "none");
+        result.put("cores", cores);
+        result.put("threads", threads);
+        result.put("lagSloMs", TimeUnit.NANOSECONDS.toMillis(lagSlo));
+        result.put("stepSloUs", TimeUnit.NANOSECONDS.toMicros(stepSlo));
+        if (passed != null) {
+            for (String key : new String[] { "bots", "botsPerCore", "stepsPerSec", "p99LagMs", "p99StepUs",
+                    "heapPerBot", "gcPercent" }) {
+                result.put(key, passed.get(key));
+            }
+        }
+        System.out.println(json(result));
+    }
+
+    private static String opt(Map<String, String> opts, String name, String def) {
+        final String v = opts.get(name);
+        return v != null ? v : def;
+    }
+}
@@ -0,0 +1,115 @@
+package automatons.automatons.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.EventLoopScheduler;
+import automatons.automatons.sched.ForkJoinScheduler;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * testAbc-style ping-pong: every automaton cycles 1 -> 2 -> 3 -> 1 with
+ * zero-delay next() for ROUNDS rounds; time to run the whole fleet of
+ * instances x ROUNDS x 3 steps; <br>
+ * stpe = fromExecutor(ScheduledThreadPool), fj = {@link ForkJoinScheduler},
+ * loops = {@link EventLoopScheduler}, all with one thread per core;
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PingPongBenchmark {
+    static final int ROUNDS = 100;
+
+    @Param({ "stpe", "fj", "loops" }) String impl;
+
+    @Param({ "10000", "100000" }) int instances;
+
+    private ScheduledExecutorService stpe;
+    private AutomatonScheduler sched;
+
+    protected static class AbcAutomaton extends AbstractAutomaton<Integer> {
+        int total = ROUNDS;
+
+        protected AbcAutomaton(Builder b) {
+            super(b);
+        }
+
+        @Override protected StepResult step(Integer currentState) {
+            switch (currentState) {
+            case 1:
+                return total-- == 0 ? nextEnd() : next(2);
+            case 2:
+                return next(3);
+            case 3:
+                return next(1);
+            default:
+                throw errorStateUndefined(currentState);
+            }
+        }
+
+        protected static class Builder extends BuilderBase<Builder, Integer, AbcAutomaton> {
+            protected Builder() {
+                super(1);
+            }
+
+            public AbcAutomaton build() {
+                return new AbcAutomaton(this);
+            }
+        }
+    }
+
+    @Setup(Level.Trial) public void setUp() {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        if ("stpe".equals(impl)) {
+            stpe = Executors.newScheduledThreadPool(cores);
+            sched = AutomatonScheduler.fromExecutor(stpe);
+        } else if ("fj".equals(impl)) {
+            sched = AutomatonScheduler.forkJoin(cores);
+        } else {
+            sched = AutomatonScheduler.eventLoops(cores);
+        }
+    }
+
+    @TearDown(Level.Trial) public void tearDown() {
+        if (stpe != null) {
+            stpe.shutdownNow();
+        } else if (sched instanceof ForkJoinScheduler) {
+            ((ForkJoinScheduler) sched).shutdown();
+        } else {
+            ((EventLoopScheduler) sched).shutdown();
+        }
+    }
+
+    @Benchmark public void fleet() throws Exception {
+        final List<ListenableFuture<?>> stops = new ArrayList<>(instances);
+        for (int i = 0; i < instances; i++) {
+            stops.add(new AbcAutomaton.Builder().build().start(sched));
+        }
+        for (ListenableFuture<?> stop : stops) {
+            stop.get();
+        }
+    }
+}
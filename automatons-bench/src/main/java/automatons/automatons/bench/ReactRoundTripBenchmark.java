@@ -0,0 +1,142 @@
+package automatons.automatons.bench;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.sched.AutomatonScheduler;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * round trip of one react step: the benchmark thread completes the future the
+ * automaton waits for and spins until the handler has run (in a pool
+ * thread); score is ns per round trip; <br>
+ * guava = nextReact(SettableFuture), stage = nextReact(CompletableFuture),
+ * adapter = CompletableFuture adapted to SettableFuture by whenComplete()
+ * (the way it was done before nextReact(CompletionStage)); pool =
+ * fromExecutor() (callbacks go through futuresExecutor), inline = no
+ * futuresExecutor (handler runs in the completing thread, the benchmark's);
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReactRoundTripBenchmark {
+    static final Object VALUE = "value";
+
+    @Param({ "guava", "stage", "adapter" }) String path;
+
+    @Param({ "pool", "inline" }) String callbacks;
+
+    private ScheduledExecutorService pool;
+    private EchoBot bot;
+
+    protected static class EchoBot extends AbstractAutomaton<Integer> {
+        final String path;
+        volatile Object request; // the future of the next round trip;
+        volatile long replies;
+
+        private final Function<Object, StepResult> handler = new Function<Object, StepResult>() {
+            @Override public StepResult apply(Object input) {
+                request = newRequest();
+                replies++; // the only writer;
+                return nextJoin(1);
+            }
+        };
+
+        protected EchoBot(Builder b, String path) {
+            super(b);
+            this.path = path;
+            this.request = newRequest();
+        }
+
+        Object newRequest() {
+            return "guava".equals(path) ? SettableFuture.create() : new CompletableFuture<Object>();
+        }
+
+        @SuppressWarnings("unchecked") @Override protected StepResult step(Integer currentState) {
+            switch (path) {
+            case "guava":
+                return nextReact((SettableFuture<Object>) request, handler);
+            case "stage":
+                return nextReact((CompletableFuture<Object>) request, handler);
+            default:
+                return nextReact(adapt((CompletableFuture<Object>) request), handler);
+            }
+        }
+
+        static <T> ListenableFuture<T> adapt(CompletableFuture<T> future) {
+            final SettableFuture<T> adapter = SettableFuture.create();
+            future.whenComplete(new BiConsumer<T, Throwable>() {
+                @Override public void accept(T result, Throwable error) {
+                    if (error != null) {
+                        adapter.setException(error);
+                    } else {
+                        adapter.set(result);
+                    }
+                }
+            });
+            return adapter;
+        }
+
+        protected static class Builder extends BuilderBase<Builder, Integer, EchoBot> {
+            protected Builder() {
+                super(1);
+            }
+
+            public EchoBot build(String path) {
+                return new EchoBot(this, path);
+            }
+        }
+    }
+
+    @Setup(Level.Trial) public void setUp() {
+        pool = Executors.newScheduledThreadPool(2);
+        final AutomatonScheduler sched = "pool".equals(callbacks) ? AutomatonScheduler.fromExecutor(pool)
+                : AutomatonScheduler.make(pool, null, pool);
+        bot = new EchoBot.Builder().enableManualStop().build(path);
+        bot.start(sched);
+    }
+
+    @TearDown(Level.Trial) public void tearDown() throws Exception {
+        bot.stop().get();
+        pool.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked") @Benchmark public long roundTrip() {
+        final EchoBot b = bot;
+        final long n = b.replies;
+        final Object request = b.request;
+        if (request instanceof SettableFuture) {
+            ((SettableFuture<Object>) request).set(VALUE);
+        } else {
+            ((CompletableFuture<Object>) request).complete(VALUE);
+        }
+        while (b.replies == n) {
+            // spin, the handler runs in a pool thread (or has run inline);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,104 @@
+package automatons.automatons.bench;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.HashedWheelScheduler;
+
+/**
+ * submit/expiry cost of delayed steps while N other timers are parked
+ * (bots sleeping in long delays); <br>
+ * stpe = AutomatonScheduler.fromExecutor(ScheduledThreadPoolExecutor), wheel
+ * = {@link HashedWheelScheduler} with 1 ms tick;
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class TimerSchedulerBenchmark {
+
+    private static final Runnable noop = new Runnable() {
+        @Override public void run() {
+        }
+    };
+
+    @Param({ "stpe", "wheel" }) String impl;
+
+    @Param({ "100000", "1000000", "10000000" }) int outstanding;
+
+    private ScheduledExecutorService exec;
+    private AutomatonScheduler sched;
+
+    @Setup(Level.Trial) public void setUp() {
+        exec = Executors.newScheduledThreadPool(4);
+        if ("stpe".equals(impl)) {
+            sched = AutomatonScheduler.fromExecutor(exec);
+        } else {
+            sched = AutomatonScheduler.timingWheel(exec, 1, TimeUnit.MILLISECONDS);
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < outstanding; i++) {
+            // parked bots: 1..2 hours;
+            sched.submit(noop, 3600000 + random.nextInt(3600000), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial) public void tearDown() {
+        if (sched instanceof HashedWheelScheduler) {
+            ((HashedWheelScheduler) sched).shutdown();
+        }
+        exec.shutdownNow();
+    }
+
+    /**
+     * short (expiring during the run) timer insert, single producer;
+     */
+    @Benchmark public void submit() {
+        sched.submit(noop, 1 + ThreadLocalRandom.current().nextInt(50), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * same with 4 producers (contention on STPE lock);
+     */
+    @Benchmark @Threads(4) public void submitContended() {
+        sched.submit(noop, 1 + ThreadLocalRandom.current().nextInt(50), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * insert + expiry of a batch of 10k timers;
+     */
+    @Benchmark @OperationsPerInvocation(10000) public void submitAndFire() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(10000);
+        final Runnable countDown = new Runnable() {
+            @Override public void run() {
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < 10000; i++) {
+            sched.submit(countDown, 1, TimeUnit.MILLISECONDS);
+        }
+        latch.await();
+    }
+}
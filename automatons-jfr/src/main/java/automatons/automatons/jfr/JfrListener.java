@@ -0,0 +1,150 @@
+package automatons.automatons.jfr;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import jdk.jfr.EventType;
+
+import automatons.automatons.Automaton.StopDescription;
+import automatons.automatons.AutomatonEngine;
+import automatons.automatons.AutomatonListener;
+import automatons.automatons.JumpAutomaton;
+import automatons.automatons.sched.AutomatonScheduler;
+
+/**
+ * {@link AutomatonListener} which emits JFR events (category "Automatons"):
+ * automatons.Step, automatons.ReactWait, automatons.Timer,
+ * automatons.JoinChain and automatons.Stop; pass it to builders of
+ * automatons, EngineBuilder.listener(); <br>
+ * steps, react waits and timers shorter than the threshold are sampled (one
+ * of sampleEvery), stops, join chains and react timeouts are always
+ * emitted; events which no recording enables cost a check of their
+ * EventType before anything is allocated, so the listener may stay attached
+ * when nothing is recorded; <br>
+ * JFR thresholds of these events don't apply (events are committed after the
+ * fact, their duration is 0), times are fields;
+ */
+public class JfrListener implements AutomatonListener {
+    private static final EventType STEP = EventType.getEventType(StepEvent.class);
+    private static final EventType REACT_WAIT = EventType.getEventType(ReactWaitEvent.class);
+    private static final EventType TIMER = EventType.getEventType(TimerEvent.class);
+    private static final EventType JOIN_CHAIN = EventType.getEventType(JoinChainEvent.class);
+    private static final EventType STOP = EventType.getEventType(StopEvent.class);
+
+    private final long threshold;
+    private final int sampleEvery;
+
+    /**
+     * join chain length of the current thread (steps of one run are executed
+     * by one thread);
+     */
+    private static final ThreadLocal<int[]> joins = new ThreadLocal<int[]>() {
+        @Override protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /**
+     * 1 ms threshold, one of 1000 shorter events;
+     */
+    public JfrListener() {
+        this(1, TimeUnit.MILLISECONDS, 1000);
+    }
+
+    /**
+     * @param sampleEvery
+     *            1 = all events, 0 = none below threshold
+     */
+    public JfrListener(long threshold, TimeUnit unit, int sampleEvery) {
+        checkArgument(threshold >= 0 && sampleEvery >= 0, "threshold/sample?");
+        this.threshold = unit.toNanos(threshold);
+        this.sampleEvery = sampleEvery;
+    }
+
+    private boolean sample(long nanos) {
+        return nanos >= threshold || (sampleEvery > 0 && ThreadLocalRandom.current().nextInt(sampleEvery) == 0);
+    }
+
+    private static String name(@Nullable Object state) {
+        return state == null ? "END" : state.toString();
+    }
+
+    @Override public void onStep(AutomatonEngine<?> automaton, Object state, @Nullable Object nextState, long nanos) {
+        final long delay = automaton.getLastDelay();
+        if (JOIN_CHAIN.isEnabled()) {
+            final int[] length = joins.get();
+            if (delay == AutomatonEngine.JOIN_PSEUDO_DELAY && nextState != null) {
+                length[0]++;
+            } else if (length[0] > 0) {
+                final JoinChainEvent chain = new JoinChainEvent();
+                chain.automaton = automaton.getName();
+                chain.state = name(state);
+                chain.length = length[0] + 1;
+                chain.commit();
+                length[0] = 0;
+            }
+        }
+        if (STEP.isEnabled() && sample(nanos)) {
+            final StepEvent event = new StepEvent();
+            event.automaton = automaton.getName();
+            event.state = name(state);
+            event.nextState = name(nextState);
+            event.stepTime = nanos;
+            event.delay = delay;
+            event.commit();
+        }
+    }
+
+    @Override public void onReact(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+        if (REACT_WAIT.isEnabled() && sample(waitNanos)) {
+            final ReactWaitEvent event = new ReactWaitEvent();
+            event.automaton = automaton.getName();
+            event.state = name(state);
+            event.waitTime = waitNanos;
+            event.commit();
+        }
+    }
+
+    @Override public void onReactTimeout(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+        if (REACT_WAIT.isEnabled()) {
+            final ReactWaitEvent event = new ReactWaitEvent();
+            event.automaton = automaton.getName();
+            event.state = name(state);
+            event.waitTime = waitNanos;
+            event.timedOut = true;
+            event.commit();
+        }
+    }
+
+    @Override public void onTimer(AutomatonEngine<?> automaton, AutomatonScheduler sched, long lagNanos) {
+        if (TIMER.isEnabled() && sample(lagNanos)) {
+            final TimerEvent event = new TimerEvent();
+            event.automaton = automaton.getName();
+            event.scheduler = sched.getClass().getSimpleName();
+            event.delay = automaton.getLastDelay();
+            event.lag = lagNanos;
+            event.commit();
+        }
+    }
+
+    @Override public void onJump(JumpAutomaton<?> automaton, Object source, @Nullable Object target) {
+    }
+
+    @Override public void onStop(AutomatonEngine<?> automaton, StopDescription<?> description) {
+        joins.get()[0] = 0;
+        if (STOP.isEnabled()) {
+            final StopEvent event = new StopEvent();
+            event.automaton = automaton.getName();
+            event.reason = description.getReason().name();
+            event.lastState = name(description.getLastState());
+            event.age = description.getAge(TimeUnit.NANOSECONDS);
+            final Throwable error = description.getError();
+            event.error = error == null ? null : error.toString();
+            event.commit();
+        }
+    }
+}
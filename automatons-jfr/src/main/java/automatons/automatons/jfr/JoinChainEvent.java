@@ -0,0 +1,20 @@
+package automatons.automatons.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * steps joined one after another in the same run, ended by the state which
+ * chose a delay (or react);
+ */
+@Name("automatons.JoinChain")
+@Label("Automaton Join Chain")
+@Category("Automatons")
+@StackTrace(false)
+final class JoinChainEvent extends jdk.jfr.Event {
+    @Label("Automaton") String automaton;
+    @Label("Last State") String state;
+    @Label("Length") int length;
+}
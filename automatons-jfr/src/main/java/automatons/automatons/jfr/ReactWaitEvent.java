@@ -0,0 +1,22 @@
+package automatons.automatons.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * react future is done (from nextReact() to the callback) or its deadline
+ * has expired (timedOut);
+ */
+@Name("automatons.ReactWait")
+@Label("Automaton React Wait")
+@Category("Automatons")
+@StackTrace(false)
+final class ReactWaitEvent extends jdk.jfr.Event {
+    @Label("Automaton") String automaton;
+    @Label("State") String state;
+    @Label("Wait Time") @Timespan long waitTime;
+    @Label("Timed Out") boolean timedOut;
+}
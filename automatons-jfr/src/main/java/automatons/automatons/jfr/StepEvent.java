@@ -0,0 +1,22 @@
+package automatons.automatons.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * step of state has run (committed after the step, see stepTime);
+ */
+@Name("automatons.Step")
+@Label("Automaton Step")
+@Category("Automatons")
+@StackTrace(false)
+final class StepEvent extends jdk.jfr.Event {
+    @Label("Automaton") String automaton;
+    @Label("State") String state;
+    @Label("Next State") String nextState;
+    @Label("Step Time") @Timespan long stepTime;
+    @Label("Delay") @Timespan long delay; // -1 join, -2 react;
+}
@@ -0,0 +1,19 @@
+package automatons.automatons.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("automatons.Stop")
+@Label("Automaton Stop")
+@Category("Automatons")
+@StackTrace(false)
+final class StopEvent extends jdk.jfr.Event {
+    @Label("Automaton") String automaton;
+    @Label("Reason") String reason;
+    @Label("Last State") String lastState;
+    @Label("Age") @Timespan long age;
+    @Label("Error") String error;
+}
@@ -0,0 +1,22 @@
+package automatons.automatons.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * scheduler has fired the timer of delayed step; submitted at (event time -
+ * lag - delay);
+ */
+@Name("automatons.Timer")
+@Label("Automaton Timer")
+@Category("Automatons")
+@StackTrace(false)
+final class TimerEvent extends jdk.jfr.Event {
+    @Label("Automaton") String automaton;
+    @Label("Scheduler") String scheduler;
+    @Label("Delay") @Timespan long delay;
+    @Label("Lag") @Timespan long lag;
+}
@@ -0,0 +1,155 @@
+package automatons.automatons.jfr.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.jfr.JfrListener;
+import automatons.automatons.sched.AutomatonScheduler;
+
+import com.google.common.base.Supplier;
+
+public class TestJfrListener {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(2);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    /**
+     * A -join-> B -join-> C -5ms-> D -> end;
+     */
+    static class ChainBot extends AbstractAutomaton<ChainBot.State> {
+        ChainBot(Builder b) {
+            super(b);
+        }
+
+        enum State implements Supplier<AbstractStep<ChainBot>> {
+            A, B, C, D;
+
+            private static final Step<ChainBot> step = new Step<ChainBot>() {
+                @Override public StepResult step(ChainBot self) {
+                    switch (self.getCurrentState()) {
+                    case A:
+                        return self.nextJoin(B);
+                    case B:
+                        return self.nextJoin(C);
+                    case C:
+                        return self.next(D, 5, TimeUnit.MILLISECONDS);
+                    default:
+                        return self.nextEnd();
+                    }
+                }
+            };
+
+            @Override public AbstractStep<ChainBot> get() {
+                return step;
+            }
+        }
+
+        static class Builder extends BuilderBase<Builder, State, ChainBot> {
+            Builder() {
+                super(State.A);
+            }
+
+            ChainBot build() {
+                return new ChainBot(this);
+            }
+        }
+    }
+
+    @Test(timeout = 30000) public void testEvents() throws Throwable {
+        final JfrListener listener = new JfrListener(0, TimeUnit.NANOSECONDS, 1);
+        final Path file = Files.createTempFile("automatons", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] { "automatons.Step", "automatons.Timer", "automatons.JoinChain",
+                    "automatons.Stop", "automatons.ReactWait" }) {
+                recording.enable(name);
+            }
+            recording.start();
+            for (int i = 0; i < 10; i++) {
+                new ChainBot.Builder().name("chain").listener(listener).build().start(sched).get();
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        final Map<String, Integer> counts = new HashMap<>();
+        try {
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            for (RecordedEvent e : events) {
+                final String name = e.getEventType().getName();
+                counts.put(name, counts.containsKey(name) ? counts.get(name) + 1 : 1);
+                if (name.equals("automatons.JoinChain")) {
+                    assertEquals(3, e.getInt("length"));
+                    assertEquals("C", e.getString("state"));
+                }
+                if (name.equals("automatons.Stop")) {
+                    assertEquals("NATURAL", e.getString("reason"));
+                    assertEquals("chain", e.getString("automaton"));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+        assertEquals(Integer.valueOf(40), counts.get("automatons.Step"));
+        assertEquals(Integer.valueOf(10), counts.get("automatons.JoinChain"));
+        assertEquals(Integer.valueOf(10), counts.get("automatons.Stop"));
+        assertTrue(counts.get("automatons.Timer") >= 10);
+    }
+
+    @Test(timeout = 30000) public void testNotRecording() throws Throwable {
+        final JfrListener listener = new JfrListener();
+        for (int i = 0; i < 10; i++) {
+            new ChainBot.Builder().listener(listener).build().start(sched).get();
+        }
+    }
+
+    private static long allocatedBytes(JfrListener listener, ChainBot bot,
+            Automaton.StopDescription<ChainBot.State> stop, int calls) {
+        final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        final long id = Thread.currentThread().getId();
+        final long before = mx.getThreadAllocatedBytes(id);
+        for (int i = 0; i < calls; i++) {
+            listener.onStep(bot, ChainBot.State.A, ChainBot.State.B, 5000000);
+            listener.onReact(bot, ChainBot.State.A, 5000000);
+            listener.onReactTimeout(bot, ChainBot.State.A, 5000000);
+            listener.onTimer(bot, sched, 5000000);
+            listener.onStop(bot, stop);
+        }
+        return mx.getThreadAllocatedBytes(id) - before;
+    }
+
+    @Test(timeout = 60000) public void testNotRecordingAllocatesNothing() throws Throwable {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final JfrListener listener = new JfrListener(0, TimeUnit.NANOSECONDS, 1);
+        final ChainBot bot = new ChainBot.Builder().build();
+        final Automaton.StopDescription<ChainBot.State> stop = bot.start(sched).get();
+        allocatedBytes(listener, bot, stop, 1000); // thread locals;
+        final long small = allocatedBytes(listener, bot, stop, 1000);
+        final long large = allocatedBytes(listener, bot, stop, 101000);
+        assertTrue("allocated " + (large - small) + " bytes per 100k calls", large - small < 8192);
+    }
+}
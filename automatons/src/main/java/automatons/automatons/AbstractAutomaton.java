@@ -1,9 +1,8 @@
 package automatons.automatons;
 
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
-import automatons.automatons.sched.AutomatonScheduler;
-import automatons.automatons.utility.FunctionWithError;
 import automatons.automatons.utility.PartialFunction;
 
 import com.google.common.base.*;
@@ -14,10 +13,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 
-import static automatons.automatons.utility.NanoTimes.isBefore;
-import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.base.Preconditions.checkState;
 
 /**
  * Automaton is a state machine; It consists of states and steps(actions). Each
@@ -35,51 +31,28 @@ import static com.google.common.base.Preconditions.checkState;
  * To describe automaton step - you either override step() method [less syntax,
  * more concise] or pass your own statesFunction, default statesFunction
  * supposes that your state type implements Supplier<AbstractStep> or is an
- * AbstractStep itself;
+ * AbstractStep itself; <br>
+ * Scheduling, timers, react futures and stop are done by
+ * {@link AutomatonEngine}, see also {@link IntAutomaton};
  * 
  * @param <S>
  *            any type you choose, but usually an enum, null state - is a total
  *            stop of automaton;
  * @author denis.lepekhin
  */
-public abstract class AbstractAutomaton<S> implements Automaton<S> {
+public abstract class AbstractAutomaton<S> extends AutomatonEngine<S> {
     private static final Logger log = LoggerFactory.getLogger(AbstractAutomaton.class);
-    
-    public static final long JOIN_PSEUDO_DELAY = -1;
-    
-    // core automaton state(step) variables {
-    
+
     private @Nullable S currentState;
-    private long currentDelay; 
-    private TimeUnit currentDelayUnit;
-    private @Nullable ListenableFuture<?> stepFuture;
-    private @Nullable Function<?, StepResult> stepFutureHandler;
-    // }
-
-    private @Nullable final String name;
-    private volatile boolean stopFlag;
-    private final boolean supportsManualStop;
-    private volatile @Nullable SettableFuture<StopDescriptionImpl> stopFuture;
-    private long nextCallCount;
-    private @Nullable Long maxAge;
-    private @Nullable Long maxTime;
     private S initialState;
-    private long startTime;
     private @Nullable ListenableFuture<?> deffered;
     private final PartialFunction<S, ? extends AbstractStep<AbstractAutomaton<S>>> statesFunction;
-    private AutomatonScheduler currentSched;
-    private final Ticker ticker;
-    protected final TimeUnit defaulDelaytUnit;
-    
+
     @SuppressWarnings({ "unchecked", "rawtypes" }) protected AbstractAutomaton(
             BuilderBase<? extends BuilderBase<?, ?, ?>, S, ? extends AbstractAutomaton<S>> b) {
-        this.maxAge = b.maxAge;
-        this.ticker = b.ticker;
-        this.defaulDelaytUnit = b.defaultUnit;
-        this.supportsManualStop = b.supportsManualStop;
+        super(b);
         this.initialState = checkNotNull(b.initialState, "initialState?");
         this.statesFunction = Objects.firstNonNull(b.statesFuntcion, (PartialFunction) defaultStatesFunction);
-        this.name = b.name;
     }
 
     /**
@@ -94,22 +67,6 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
         checkStateBelongsAutomaton(initialState);
     }
 
-    @Override public void setMaxAge(long maxAge, TimeUnit unit) {
-        this.maxAge = unit.toNanos(maxAge);
-    }
-
-    @Override public boolean isRestartable() {
-        return true;
-    }
-    
-    /**
-     * @return ticker value (nano seconds)
-     */
-    public final long currentClock() {
-    	return ticker.read();
-    }
-   
-
     /**
      * you can redefine step method to use switch-case instead of
      * statesFunction;
@@ -122,7 +79,17 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
             return theStep.step(this);
         } else if (step instanceof ReactStep) {
             @SuppressWarnings("unchecked") final ReactStep<AbstractAutomaton<S>, Object> theStep = (ReactStep<AbstractAutomaton<S>, Object>) step;
-            return nextReact(theStep.future(this), theStep.asHandler(this));
+            return setNextReactStep(theStep.future(this), theStep);
+        } else if (step instanceof StageStep) {
+            @SuppressWarnings("unchecked") final StageStep<AbstractAutomaton<S>, Object> theStep = (StageStep<AbstractAutomaton<S>, Object>) step;
+            return setNextStageStep(theStep.stage(this), theStep);
+        } else if (step instanceof BlockingStep) {
+            @SuppressWarnings("unchecked") final BlockingStep<AbstractAutomaton<S>> theStep = (BlockingStep<AbstractAutomaton<S>>) step;
+            try {
+                return theStep.step(this);
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
         } else {
             throw errorInCurrentState("no other step kinds should be defined");
         }
@@ -139,31 +106,10 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
         notifyStop(StopReason.ERROR, error);
     }
 
-    protected void onStopped(StopReason reason, @Nullable Throwable error) {
-        if (log.isTraceEnabled()) {
-            log.trace("automaton manual stop at state = {} ", getCurrentState());
-        }
-    }
-
-    private void notifyStop(StopReason reason, @Nullable Throwable error) {
-        stepFuture = null;
-        stepFutureHandler = null;
-        try {
-            onStopped(reason, error);
-        } finally {
-            stopFuture.set(new StopDescriptionImpl(reason, error, getCurrentState()));
-            currentState = null;
-        }
-    }
-
     protected final S getCurrentState() {
         return currentState;
     }
 
-    public final String getName() {
-        return name;
-    }
-
     // / "NEXT"-methods
     // / These methods should be called in the return-statement of your states
     // step-functions;
@@ -174,13 +120,8 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
      * navigates to some other automaton state
      */
     protected final StepResult next(@Nullable S nextState, long delay, TimeUnit unit) {
-        nextCallCount++;
         currentState = nextState;
-        currentDelay = delay;
-        currentDelayUnit = unit;
-        stepFuture = null;
-        stepFutureHandler = null;
-        return StepResult.OK;
+        return setNext(delay, unit);
     }
     
     protected final StepResult next(@Nullable S nextState, long delay) {
@@ -216,28 +157,6 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
         return nextJoin(currentState);
     }
 
-    /**
-     * This method links automaton to the world of external events;
-     * @param handler can also be {@link FunctionWithError} if you want to handle errors
-     */
-    protected final <T> StepResult nextReact(ListenableFuture<T> future, Function<T, StepResult> handler) {
-        nextCallCount++;
-        currentDelay = 0;
-        this.stepFuture = future;
-        this.stepFutureHandler = handler;
-        return StepResult.OK;
-    }
-
-    final void beforeStep() {
-        nextCallCount = 0;
-    }
-
-    final void afterStep(StepResult result) {
-        checkAutomaton(result == StepResult.OK, "never redefine nextXXXX() methods(!), introduce new if needed.");
-        checkAutomaton(nextCallCount == 1,
-                "nextXXXX() method should be called ONCE per automaton step, in return statement(!)");
-    }
-
     // optionally override this method to check states from larger domains
     // (integer, strings, ...);
     protected void checkStateBelongsAutomaton(S state) {
@@ -245,133 +164,54 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
         // "error: state doesn't belong this automaton");
     }
 
-    private final Runnable runnableContinuation = new Runnable() {
-        @Override public void run() {
-            continueExecution(currentSched, true);
-        }
-    };
-
-    /**
-     * call this method to start automaton;
-     * 
-     * @param sched
-     */
-    @Override public ListenableFuture<? extends StopDescription<S>> start(AutomatonScheduler sched) {
-        checkArgument(stopFuture == null || stopFuture.isDone());
-        currentSched = checkNotNull(sched);
-        stopFlag = false;
+    @Override final void resetState() {
         currentState = getInitialState();
         checkNotNull(currentState, "degenerated automaton which stops in its initial state(null) is strange!");
-        stopFuture = SettableFuture.create(); // mem visibility(!)
-        startTime = ticker.read();
-        maxTime = null;
-        if (maxAge != null) {
-            maxTime = startTime + maxAge;
-        }
-        continueExecution(sched, true);
-        return stopFuture;
     }
 
-    @Override public final ListenableFuture<? extends StopDescription<S>> stop() {
-    	checkState(supportsManualStop, "manual stop must be enabled");
-        checkAutomaton(stopFuture != null, "not started");
-        stopFlag = true;
-        return stopFuture;
+    @Override final boolean isEndState() {
+        return currentState == null;
     }
 
-    @Override public final boolean isStopped() {
-        return stopFuture != null || stopFuture.isDone();
+    @Override final StepResult stepCurrent() {
+        checkStateBelongsAutomaton(currentState);
+        return step(currentState);
     }
 
-    protected final IllegalStateException errorStateUndefined(S state) {
-        return new AutomatonStateException("[Automaton error: " + this + "] state undefined:" + state);
+    @SuppressWarnings("unchecked") @Override final StepResult stepReact(Object reactStep, @Nullable Object result) {
+        if (reactStep instanceof ReactStep) {
+            return ((ReactStep<AbstractAutomaton<S>, Object>) reactStep).step(this, result);
+        }
+        return ((StageStep<AbstractAutomaton<S>, Object>) reactStep).step(this, result);
     }
 
-    protected final IllegalStateException errorInCurrentState(String errorText) {
-        return new AutomatonStateException("[Automaton error: " + this + "] in state: " + getCurrentState() + ": "
-                + errorText);
+    @Override final void stepFailed(Throwable error) {
+        onError(currentState, error);
     }
 
-    protected final void checkAutomaton(boolean cond, String msg) {
-        if (!cond) {
-            throw new AutomatonStateException("[Automaton check failure:" + this + "]: " + msg);
-        }
+    @Override final StopDescription<S> stopDescription(StopReason reason, @Nullable Throwable error) {
+        return new StopDescriptionImpl(reason, error, getCurrentState());
     }
 
-    /**
-     * Core automaton logic;
-     */
-    final void continueExecution(final AutomatonScheduler sched, final boolean doStep) {
-        if (currentState != null) {
-            checkStateBelongsAutomaton(currentState);
-        }
-        try {
-            if (supportsManualStop && stopFlag) {
-                notifyStop(StopReason.MANUAL, null);
-                return;
-            }
+    @Override final void clearState() {
+        currentState = null;
+    }
 
-            if (currentState == null) {
-                notifyStop(StopReason.NATURAL, null);
-                return;
-            }
-            
-            if (maxTime != null && isBefore(maxTime, currentClock())) {
-                notifyStop(StopReason.AGE, null);
-                return;
-            }
-            if (doStep) {
-            	beforeStep();
-            	afterStep(step(currentState));
-            }
-            
-            while (currentDelay < 0) {
-            	assert currentDelay == JOIN_PSEUDO_DELAY;
-            	// join steps;
-            	beforeStep();
-            	afterStep(step(currentState));
-            }
-            
-            if (stepFuture == null) {
-                // normal step
-                sched.submit(runnableContinuation, currentDelay, currentDelayUnit);
-            } else {
-                // wait step
-                final ListenableFuture<?> future = this.stepFuture;
-                @SuppressWarnings("unchecked") final Function<Object, StepResult> handler = (Function<Object, StepResult>) stepFutureHandler;
-                this.stepFuture = null;
-                this.stepFutureHandler = null;
-                Futures.addCallback(future, new FutureCallback<Object>() {
-
-                    @Override public void onSuccess(Object result) {
-                    	beforeStep();
-                        afterStep(handler.apply(result));
-                        continueExecution(sched, false);
-                    }
-
-                    @Override public void onFailure(Throwable t) {
-                        if (handler instanceof FunctionWithError) {
-                            beforeStep();
-                            afterStep(((FunctionWithError<Object, StepResult>)handler).error(t));
-                            continueExecution(sched, false);
-                        } else {
-                            onError(currentState, t);
-                        }
-                    }
-                }, sched.futuresExecutor());
-            }
-        } catch (AutomatonStateException ase) {
-            // non-recoverable
-            log.error("Automaton inner logic disaster", ase);
-            notifyStop(StopReason.ERROR, ase);
-        } catch (Throwable error) {
-            onError(currentState, error);
-            if (getCurrentState() != null) {
-                // if error was recovered;
-                continueExecution(sched, true);
-            }
-        }
+    @Override final S checkpointState() {
+        return currentState;
+    }
+
+    @Override final void restoreState(S state) {
+        currentState = checkNotNull(state);
+    }
+
+    protected final IllegalStateException errorStateUndefined(S state) {
+        return new AutomatonStateException("[Automaton error: " + this + "] state undefined:" + state);
+    }
 
+    protected final IllegalStateException errorInCurrentState(String errorText) {
+        return new AutomatonStateException("[Automaton error: " + this + "] in state: " + getCurrentState() + ": "
+                + errorText);
     }
 
     public class StopDescriptionImpl implements StopDescription<S> {
@@ -383,7 +223,7 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
         public StopDescriptionImpl(StopReason reason, @Nullable Throwable error, @Nullable S lastState) {
             this.error = error;
             this.reason = reason;
-            this.age = ticker.read() - startTime;
+            this.age = age();
             this.lastState = lastState;
         }
 
@@ -410,21 +250,11 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
         
     }
 
-    // ensure that client will never be able to write his/her own nextXXXX()
-    // method;
-    protected static class StepResult {
-        final static StepResult OK = new StepResult();
-    }
-
-    protected static abstract class BuilderBase<This extends BuilderBase<?, ?, ?>, S, A extends AbstractAutomaton<S>> {
+    protected static abstract class BuilderBase<This extends BuilderBase<?, ?, ?>, S, A extends AbstractAutomaton<S>>
+            extends EngineBuilder<This> {
 
-        @Nullable Long maxAge; // null = forever;
         S initialState;
         PartialFunction<S, ? extends AbstractStep<A>> statesFuntcion;
-        String name;
-        Ticker ticker = Ticker.systemTicker();
-        TimeUnit defaultUnit = TimeUnit.MILLISECONDS;
-        boolean supportsManualStop;
 
         protected BuilderBase(S initialState) {
             this.initialState = initialState;
@@ -438,44 +268,12 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
             return getThis();
         }
 
-        public final This maxAge(long duration, TimeUnit unit) {
-            this.maxAge = unit.toNanos(duration);
-            return getThis();
-        }
-
-        public final This name(String name) {
-            this.name = name;
-            return getThis();
-        }
-
-        public final This ticker(Ticker ticker) {
-            this.ticker = ticker;
-            return getThis();
-        }
-        
-        public final This defaultDelayUnit(TimeUnit unit) {
-        	this.defaultUnit = unit;
-        	return getThis();
-        }
-        
-        public final This enableManualStop() {
-        	this.supportsManualStop = true;
-        	return getThis();
-        }
-        
         // unstable api - may change in fututure. too abstract...
         public final This statesFunction(PartialFunction<S, ? extends AbstractStep<A>> pf) {
             Preconditions.checkState(statesFuntcion == null, "partial function already defined");
             this.statesFuntcion = checkNotNull(pf);
             return getThis();
         }
-
-        /**
-         * to eat unchecked warnings in one place;
-         */
-        @SuppressWarnings("unchecked") protected final This getThis() {
-            return (This) this;
-        }
     }
 
     public static abstract class AbstractStep<A extends AbstractAutomaton<?>> {
@@ -485,18 +283,30 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
         public abstract StepResult step(A self);
     }
 
+    /**
+     * Step which is allowed to block (blocking io clients, sleeps, locks...);
+     * blocking is cheap only on {@link automatons.automatons.sched.VirtualThreadScheduler},
+     * other schedulers will have one of their threads blocked; checked
+     * exceptions are passed to onError();
+     */
+    public static abstract class BlockingStep<A extends AbstractAutomaton<?>> extends AbstractStep<A> {
+        public abstract StepResult step(A self) throws Exception;
+    }
+
     public abstract static class ReactStep<A extends AbstractAutomaton<?>, V> extends AbstractStep<A> {
         public abstract ListenableFuture<V> future(A self);
 
         public abstract StepResult step(A self, V result);
+    }
 
-        Function<V, StepResult> asHandler(final A self) {
-            return new Function<V, StepResult>() {
-                @Override public StepResult apply(V input) {
-                    return step(self, input);
-                }
-            };
-        }
+    /**
+     * ReactStep on a CompletionStage (java 8+ clients), no adapter future;
+     * see {@link AutomatonEngine#nextReact(java.util.concurrent.CompletionStage, Function)}
+     */
+    public abstract static class StageStep<A extends AbstractAutomaton<?>, V> extends AbstractStep<A> {
+        public abstract CompletionStage<V> stage(A self);
+
+        public abstract StepResult step(A self, V result);
     }
 
     protected static final PartialFunction<Object, AbstractStep<AbstractAutomaton<Object>>> defaultStatesFunction = new PartialFunction<Object, AbstractStep<AbstractAutomaton<Object>>>() {
@@ -517,7 +327,7 @@ public abstract class AbstractAutomaton<S> implements Automaton<S> {
     };
 
     public String toString() {
-        return "[ " + super.toString() + " name: " + name + "]";
+        return "[ " + super.toString() + " name: " + getName() + "]";
     }
     
     public static void main(String[] args) {
@@ -0,0 +1,227 @@
+package automatons.automatons;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checkpoint of running automatons to a memory-mapped file and their restore
+ * (e.g. after restart of the node): current state, remaining delay of the
+ * current step, age, maxAge and user data (assoc) of every automaton; <br>
+ * write() suspends automatons one by one: parked automaton is taken out of
+ * its scheduler, written and stopped (MANUAL); automaton running a step is
+ * written when the step is over; automaton waiting for a react future will
+ * run its react step (the request) again after restore; <br>
+ * the file is written and read sequentially through mapped windows, the
+ * codec reads/writes the mapped buffer directly; <br>
+ * file: header (magic, version, count), records (length, flags, delay, age,
+ * maxAge, state, assoc);
+ */
+public final class AutomatonCheckpoint {
+    private static final int MAGIC = 0x41555443; // "AUTC"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int WINDOW = 64 << 20;
+    private static final byte HAS_MAX_AGE = 1;
+
+    /**
+     * serialization of states and user data, codec must read exactly what it
+     * has written;
+     */
+    public interface Codec<S, A extends AutomatonEngine<S>> {
+        void writeState(S state, ByteBuffer out);
+
+        S readState(ByteBuffer in);
+
+        /**
+         * user data of automaton (fields which step logic depends on);
+         */
+        void writeAssoc(A automaton, ByteBuffer out);
+
+        /**
+         * @return new (not started) automaton with user data written by
+         *         writeAssoc();
+         */
+        A create(ByteBuffer in);
+    }
+
+    private AutomatonCheckpoint() {
+    }
+
+    /**
+     * suspends (stops) and writes automatons, stopped automatons are
+     * skipped; waits without a deadline for steps which are running, see
+     * write(Path, Iterable, Codec, long, TimeUnit);
+     *
+     * @return number of written automatons;
+     */
+    public static <S, A extends AutomatonEngine<S>> long write(Path file, Iterable<? extends A> automatons,
+            Codec<S, A> codec) throws IOException {
+        try {
+            return write(file, automatons, codec, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * suspends (stops) and writes automatons, stopped automatons are
+     * skipped; automaton running a step is waited for till the deadline of
+     * the whole write();
+     *
+     * @throws TimeoutException
+     *             a step is still running at the deadline: the file is a
+     *             valid checkpoint of automatons written so far (they are
+     *             stopped), that automaton and the rest are left running;
+     * @return number of written automatons;
+     */
+    public static <S, A extends AutomatonEngine<S>> long write(Path file, Iterable<? extends A> automatons,
+            Codec<S, A> codec, long timeout, TimeUnit unit) throws IOException, TimeoutException {
+        final long writeStart = System.nanoTime();
+        final long timeoutNanos = unit.toNanos(timeout);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long base = 0; // of the current window;
+            int window = WINDOW;
+            MappedByteBuffer buf = ch.map(MapMode.READ_WRITE, base, window);
+            buf.position(HEADER);
+            long count = 0;
+            A running = null; // at the deadline;
+            for (A a : automatons) {
+                int suspended;
+                while ((suspended = a.beginSuspend()) == 0) {
+                    // running a step;
+                    if (System.nanoTime() - writeStart >= timeoutNanos) {
+                        break;
+                    }
+                    Thread.yield();
+                }
+                if (suspended == 0) {
+                    running = a;
+                    break;
+                }
+                if (suspended < 0) {
+                    continue;
+                }
+                try {
+                    while (true) {
+                        final int start = buf.position();
+                        try {
+                            writeRecord(buf, a, codec);
+                            break;
+                        } catch (BufferOverflowException e) {
+                            // record doesn't fit the rest of window: next
+                            // window from the record start;
+                            buf.position(start);
+                            if (start == 0) {
+                                checkState(window < Integer.MAX_VALUE / 2, "record is too big");
+                                window *= 2;
+                            }
+                            base += start;
+                            buf = ch.map(MapMode.READ_WRITE, base, window);
+                        }
+                    }
+                } finally {
+                    a.endSuspend();
+                }
+                count++;
+            }
+            final long end = base + buf.position();
+            final MappedByteBuffer header = base == 0 ? buf : ch.map(MapMode.READ_WRITE, 0, HEADER);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putLong(8, count);
+            ch.truncate(end);
+            ch.force(false);
+            if (running != null) {
+                throw new TimeoutException("checkpoint timed out after " + count + " automatons, " + running
+                        + " is still running a step");
+            }
+            return count;
+        }
+    }
+
+    private static <S, A extends AutomatonEngine<S>> void writeRecord(ByteBuffer buf, A a, Codec<S, A> codec) {
+        final int start = buf.position();
+        final Long maxAge = a.maxAge();
+        buf.putInt(0); // length;
+        buf.put(maxAge != null ? HAS_MAX_AGE : 0);
+        buf.putLong(a.remainingDelay());
+        buf.putLong(a.age());
+        buf.putLong(maxAge != null ? maxAge : 0);
+        codec.writeState(a.checkpointState(), buf);
+        codec.writeAssoc(a, buf);
+        buf.putInt(start, buf.position() - start - 4);
+    }
+
+    /**
+     * reads checkpoint, every automaton is created by codec and continues as
+     * a member of fleet (on the scheduler of fleet) with its remaining delay
+     * and age;
+     *
+     * @return restored automatons in the order of write();
+     */
+    public static <S, A extends AutomatonEngine<S>> List<A> restore(Path file, AutomatonFleet<S> fleet,
+            Codec<S, A> codec) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = ch.size();
+            checkState(size >= HEADER, "not a checkpoint: %s", file);
+            long base = 0;
+            MappedByteBuffer buf = ch.map(MapMode.READ_ONLY, base, Math.min(WINDOW, size));
+            checkState(buf.getInt() == MAGIC && buf.getInt() == VERSION, "not a checkpoint: %s", file);
+            final long count = buf.getLong();
+            checkState(count <= Integer.MAX_VALUE, "too many automatons: %s", count);
+            final List<A> restored = new ArrayList<>((int) count);
+            for (long i = 0; i < count; i++) {
+                int length = buf.remaining() >= 4 ? buf.getInt(buf.position()) : -1;
+                if (length < 0 || buf.remaining() < 4 + length) {
+                    base += buf.position();
+                    buf = ch.map(MapMode.READ_ONLY, base, Math.min(WINDOW, size - base));
+                    length = buf.getInt(0);
+                    if (buf.remaining() < 4 + length) {
+                        buf = ch.map(MapMode.READ_ONLY, base, 4 + length);
+                    }
+                }
+                buf.getInt();
+                final int end = buf.position() + length;
+                final byte flags = buf.get();
+                final long delay = buf.getLong();
+                final long age = buf.getLong();
+                final long maxAge = buf.getLong();
+                final S state = codec.readState(buf);
+                final A a = codec.create(buf);
+                checkState(buf.position() == end, "codec has read %s bytes of %s byte record",
+                        buf.position() - end + length, length);
+                a.resume(fleet.scheduler(), fleet, state, delay, age, (flags & HAS_MAX_AGE) != 0 ? Long
+                        .valueOf(maxAge) : null, true);
+                restored.add(a);
+            }
+            return restored;
+        }
+    }
+
+    /**
+     * @return number of automatons in checkpoint, -1 if file isn't a
+     *         checkpoint;
+     */
+    public static long count(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER) {
+                return -1;
+            }
+            final ByteBuffer header = ch.map(MapMode.READ_ONLY, 0, HEADER);
+            return header.getInt() == MAGIC && header.getInt() == VERSION ? header.getLong() : -1;
+        }
+    }
+}
@@ -0,0 +1,1263 @@
+package automatons.automatons;
+
+import static automatons.automatons.utility.NanoTimes.isBefore;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.Cancellable;
+import automatons.automatons.utility.FunctionWithError;
+
+import com.google.common.base.Function;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Execution engine shared by {@link AbstractAutomaton} (states of any type)
+ * and {@link IntAutomaton} (primitive int states): scheduling of steps,
+ * timers, react futures, join chains, budgets, age and stop; <br>
+ * The engine knows nothing about the state itself, it asks the subclass to
+ * run the step of the current state (stepCurrent()) and to tell whether the
+ * current state is the end (isEndState()); extend one of the subclasses, not
+ * this class;
+ *
+ * @param <S>
+ *            state type as seen by {@link Automaton}
+ */
+public abstract class AutomatonEngine<S> implements Automaton<S> {
+    private static final Logger log = LoggerFactory.getLogger(AutomatonEngine.class);
+
+    public static final long JOIN_PSEUDO_DELAY = -1;
+    public static final long REACT_PSEUDO_DELAY = -2;
+
+    // run state = park sequence << 4 | REACT | phase; phase tells who owns the
+    // automaton right now, sequence makes late timers/listeners of previous
+    // parks harmless;
+    private static final int RUNNING = 0; // some thread executes steps;
+    private static final int PARKING = 1; // timer/listener is being registered;
+    private static final int PARKED = 2; // nobody, waits for timer/listener;
+    private static final int FIRED = 3; // timer/listener fired while parking, parking thread continues;
+    private static final int STOPPED = 4;
+    private static final int PHASE = 7;
+    private static final int REACT = 8; // parked on a react future, not on a timer;
+    private static final int SEQ = ~15;
+    private static final int SEQ_ONE = 16;
+
+    @SuppressWarnings("rawtypes") private static final AtomicIntegerFieldUpdater<AutomatonEngine> RUN_STATE = AtomicIntegerFieldUpdater
+            .newUpdater(AutomatonEngine.class, "runState");
+    @SuppressWarnings("rawtypes") private static final AtomicReferenceFieldUpdater<AutomatonEngine, SettableFuture> STOP_FUTURE = AtomicReferenceFieldUpdater
+            .newUpdater(AutomatonEngine.class, SettableFuture.class, "stopFuture");
+    @SuppressWarnings("rawtypes") private static final AtomicIntegerFieldUpdater<AutomatonEngine> REACT_COUNTDOWN = AtomicIntegerFieldUpdater
+            .newUpdater(AutomatonEngine.class, "reactCountdown");
+
+    // stop futures of fleet members: running without a stop future (until
+    // somebody calls stop()) / stopped and reported to the fleet only;
+    private static final SettableFuture<?> FLEET_RUNNING = SettableFuture.create(); // never completed;
+    private static final SettableFuture<?> FLEET_STOPPED = SettableFuture.create();
+    static {
+        FLEET_STOPPED.set(null);
+    }
+
+    // core automaton step variables (current state is kept by subclasses) {
+    private long currentDelay;
+    private TimeUnit currentDelayUnit;
+    private @Nullable Future<?> stepFuture; // ListenableFuture or CompletableFuture (stepStage);
+    private boolean stepStage;
+    private @Nullable Function<?, StepResult> stepFutureHandler;
+    private @Nullable Object stepReact; // react step of subclass, instead of handler;
+    private long stepTimeout; // nanos of react step, 0 = none;
+    private @Nullable Object stepTimeoutState; // null = TimeoutException;
+    private @Nullable List<? extends ListenableFuture<?>> stepFutures; // multi-future react step;
+    private int stepNeeded; // of stepFutures;
+    // }
+
+    private static final AtomicLong ids = new AtomicLong();
+
+    private final long id = ids.incrementAndGet();
+    private @Nullable final String name;
+    private volatile boolean stopFlag;
+    private final boolean supportsManualStop;
+    private volatile @Nullable SettableFuture<StopDescription<S>> stopFuture;
+    private @Nullable AutomatonFleet<S> fleet; // of the current run;
+    private long nextCallCount;
+    private @Nullable Long maxAge;
+    private @Nullable Long maxTime;
+    private long startTime;
+    private AutomatonScheduler currentSched;
+    private volatile int runState = STOPPED;
+    private volatile @Nullable Continuation continuation; // new one per start(), stale timers are ignored;
+    private volatile @Nullable Cancellable pendingTimer;
+    private long pendingDeadline; // of pendingTimer, for checkpoints and listener;
+    private long pendingSince; // react park time, for listener;
+    private final @Nullable AutomatonListener listener;
+    private volatile @Nullable Future<?> pendingFuture;
+    private volatile @Nullable List<? extends ListenableFuture<?>> pendingFutures; // instead of pendingFuture;
+    private int pendingNeeded; // done futures of pendingFutures which wake automaton up;
+    private volatile int reactCountdown; // callbacks left till pendingNeeded, see ReactListener;
+    private @Nullable Function<Object, StepResult> pendingHandler;
+    private @Nullable Object pendingReact;
+    private @Nullable Object pendingTimeoutState;
+    private long reactTimeouts;
+    private ReactListener reactListener = new ReactListener(this); // reused by all react steps;
+    private final Ticker ticker;
+    private final long timerSlack;
+    private final int priority;
+    private final int stepBudget;
+    private final long timeBudget; // nanos, 0 = none;
+    private long budgetYields;
+    protected final TimeUnit defaulDelaytUnit;
+
+    AutomatonEngine(EngineBuilder<?> b) {
+        this.maxAge = b.maxAge;
+        this.ticker = b.ticker;
+        this.defaulDelaytUnit = b.defaultUnit;
+        this.timerSlack = b.timerSlack;
+        this.priority = b.priority;
+        this.stepBudget = b.stepBudget;
+        this.timeBudget = b.timeBudget;
+        this.supportsManualStop = b.supportsManualStop;
+        this.name = b.name;
+        this.listener = b.listener;
+    }
+
+    // subclass hooks {
+
+    /**
+     * start(): current state = initial state;
+     */
+    abstract void resetState();
+
+    /**
+     * current state is the end (stop) state;
+     */
+    abstract boolean isEndState();
+
+    /**
+     * runs the step of the current state;
+     */
+    abstract StepResult stepCurrent();
+
+    /**
+     * runs react step (see {@link #setNextReactStep}) with the result of its
+     * future;
+     */
+    abstract StepResult stepReact(Object reactStep, @Nullable Object result);
+
+    /**
+     * step failed: onError(current state, error);
+     */
+    abstract void stepFailed(Throwable error);
+
+    /**
+     * stop description with the current state, the current state is cleared
+     * afterwards;
+     */
+    abstract StopDescription<S> stopDescription(StopReason reason, @Nullable Throwable error);
+
+    abstract void clearState();
+
+    /**
+     * checkpoint: the current state;
+     */
+    abstract S checkpointState();
+
+    /**
+     * restore from checkpoint: current state = state;
+     */
+    abstract void restoreState(S state);
+    // }
+
+    @Override public void setMaxAge(long maxAge, TimeUnit unit) {
+        this.maxAge = unit.toNanos(maxAge);
+    }
+
+    @Override public boolean isRestartable() {
+        return true;
+    }
+
+    /**
+     * @return ticker value (nano seconds)
+     */
+    public final long currentClock() {
+        return ticker.read();
+    }
+
+    protected void onStopped(StopReason reason, @Nullable Throwable error) {
+        if (log.isTraceEnabled()) {
+            log.trace("automaton stop {}: {}", reason, this);
+        }
+    }
+
+    final void notifyStop(StopReason reason, @Nullable Throwable error) {
+        stepFuture = null;
+        stepFutureHandler = null;
+        stepReact = null;
+        runState = (runState & SEQ) | STOPPED;
+        continuation = null;
+        pendingTimer = null;
+        pendingFuture = null;
+        pendingFutures = null;
+        stepFutures = null;
+        pendingHandler = null;
+        pendingReact = null;
+        try {
+            onStopped(reason, error);
+        } finally {
+            final StopDescription<S> description = stopDescription(reason, error);
+            if (listener != null) {
+                listener.onStop(this, description);
+            }
+            final AutomatonFleet<S> f = fleet;
+            fleet = null;
+            if (f != null) {
+                f.stopped(description);
+            }
+            SettableFuture<StopDescription<S>> future;
+            do {
+                future = stopFuture;
+            } while (future == FLEET_RUNNING && !STOP_FUTURE.compareAndSet(this, future, FLEET_STOPPED));
+            if (future != FLEET_RUNNING) {
+                future.set(description);
+            }
+            clearState();
+        }
+    }
+
+    /**
+     * how many times automaton has run out of its step/time budget and
+     * yielded (approximate if read from other threads);
+     */
+    public final long getBudgetYields() {
+        return budgetYields;
+    }
+
+    /**
+     * how many react steps with deadline have timed out (approximate if read
+     * from other threads);
+     */
+    public final long getReactTimeouts() {
+        return reactTimeouts;
+    }
+
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * unique (in the JVM) id of the engine, allocated at construction, > 0;
+     */
+    public final long getId() {
+        return id;
+    }
+
+    /**
+     * nanos since the last start();
+     */
+    final long age() {
+        return ticker.read() - startTime;
+    }
+
+    /**
+     * common part of "next" methods: subclass sets the next state, then calls
+     * this method;
+     */
+    final StepResult setNext(long delay, TimeUnit unit) {
+        nextCallCount++;
+        currentDelay = delay;
+        currentDelayUnit = unit;
+        stepFuture = null;
+        stepFutureHandler = null;
+        stepReact = null;
+        stepTimeout = 0;
+        stepFutures = null;
+        stepStage = false;
+        return StepResult.OK;
+    }
+
+    /**
+     * react step of subclass, see {@link #stepReact(Object, Object)};
+     */
+    final StepResult setNextReactStep(ListenableFuture<?> future, Object reactStep) {
+        nextCallCount++;
+        currentDelay = 0;
+        this.stepFuture = future;
+        this.stepFutureHandler = null;
+        this.stepReact = reactStep;
+        this.stepTimeout = 0;
+        this.stepFutures = null;
+        this.stepStage = false;
+        return StepResult.OK;
+    }
+
+    /**
+     * react step of subclass on a CompletionStage;
+     */
+    final StepResult setNextStageStep(CompletionStage<?> stage, Object reactStep) {
+        nextCallCount++;
+        currentDelay = 0;
+        this.stepFuture = stage.toCompletableFuture();
+        this.stepFutureHandler = null;
+        this.stepReact = reactStep;
+        this.stepTimeout = 0;
+        this.stepFutures = null;
+        this.stepStage = true;
+        return StepResult.OK;
+    }
+
+    /**
+     * This method links automaton to the world of external events;
+     * @param handler can also be {@link FunctionWithError} if you want to handle errors
+     */
+    protected final <T> StepResult nextReact(ListenableFuture<T> future, Function<T, StepResult> handler) {
+        nextCallCount++;
+        currentDelay = 0;
+        this.stepFuture = future;
+        this.stepFutureHandler = handler;
+        this.stepReact = null;
+        this.stepTimeout = 0;
+        this.stepFutures = null;
+        this.stepStage = false;
+        return StepResult.OK;
+    }
+
+    /**
+     * nextReact() with deadline: if the future isn't done in timeout, handler
+     * gets {@link TimeoutException} (if it's a {@link FunctionWithError}),
+     * otherwise the step fails with it (onError()); the deadline is a timer
+     * of automaton's scheduler (with timer slack);
+     */
+    protected final <T> StepResult nextReact(ListenableFuture<T> future, long timeout, TimeUnit unit,
+            Function<T, StepResult> handler) {
+        checkArgument(timeout > 0, "timeout?");
+        nextReact(future, handler);
+        this.stepTimeout = unit.toNanos(timeout);
+        this.stepTimeoutState = null;
+        return StepResult.OK;
+    }
+
+    /**
+     * nextReact() with deadline: if the future isn't done in timeout,
+     * automaton goes to timeoutState (as if handler has called
+     * nextJoin(timeoutState)), the late result is ignored;
+     */
+    protected final <T> StepResult nextReact(ListenableFuture<T> future, long timeout, TimeUnit unit,
+            S timeoutState, Function<T, StepResult> handler) {
+        nextReact(future, timeout, unit, handler);
+        this.stepTimeoutState = checkNotNull(timeoutState);
+        return StepResult.OK;
+    }
+
+    /**
+     * nextReact() on a CompletionStage (CompletableFuture of java 8 clients)
+     * without an adapter future: the callback is registered on the stage by
+     * the scheduler, see {@link AutomatonScheduler#addListener(CompletionStage, java.util.function.BiConsumer)};
+     * the stage must support toCompletableFuture() (CompletableFuture and
+     * the stages of the JDK do);
+     */
+    protected final <T> StepResult nextReact(CompletionStage<T> stage, Function<T, StepResult> handler) {
+        nextCallCount++;
+        currentDelay = 0;
+        this.stepFuture = stage.toCompletableFuture();
+        this.stepFutureHandler = handler;
+        this.stepReact = null;
+        this.stepTimeout = 0;
+        this.stepFutures = null;
+        this.stepStage = true;
+        return StepResult.OK;
+    }
+
+    /**
+     * nextReact(CompletionStage) with deadline, see nextReact(future,
+     * timeout, unit, handler);
+     */
+    protected final <T> StepResult nextReact(CompletionStage<T> stage, long timeout, TimeUnit unit,
+            Function<T, StepResult> handler) {
+        checkArgument(timeout > 0, "timeout?");
+        nextReact(stage, handler);
+        this.stepTimeout = unit.toNanos(timeout);
+        this.stepTimeoutState = null;
+        return StepResult.OK;
+    }
+
+    /**
+     * nextReact(CompletionStage) with deadline and timeout state, see
+     * nextReact(future, timeout, unit, timeoutState, handler);
+     */
+    protected final <T> StepResult nextReact(CompletionStage<T> stage, long timeout, TimeUnit unit,
+            S timeoutState, Function<T, StepResult> handler) {
+        nextReact(stage, timeout, unit, handler);
+        this.stepTimeoutState = checkNotNull(timeoutState);
+        return StepResult.OK;
+    }
+
+    /**
+     * react step on several futures: handler gets the same list when all of
+     * them are done; a failed or cancelled future counts as done, the handler
+     * looks at each (no combined future or result list is allocated, unlike
+     * Futures.allAsList()); it's one react wait for the scheduler, see
+     * {@link AutomatonScheduler#reactParked()};
+     */
+    protected final <L extends List<? extends ListenableFuture<?>>> StepResult nextReactAll(L futures,
+            Function<? super L, StepResult> handler) {
+        return nextReactFirst(futures.size(), futures, handler);
+    }
+
+    /**
+     * nextReactAll() which wakes up when any of the futures is done (the
+     * handler finds which by isDone()); listener isn't left on the others;
+     */
+    protected final <L extends List<? extends ListenableFuture<?>>> StepResult nextReactAny(L futures,
+            Function<? super L, StepResult> handler) {
+        return nextReactFirst(1, futures, handler);
+    }
+
+    /**
+     * nextReactAll() which wakes up when n of the futures are done (more may
+     * be done by the time handler runs);
+     */
+    protected final <L extends List<? extends ListenableFuture<?>>> StepResult nextReactFirst(int n, L futures,
+            Function<? super L, StepResult> handler) {
+        checkArgument(n > 0 && n <= futures.size(), "n?");
+        nextCallCount++;
+        currentDelay = 0;
+        this.stepFuture = futures.get(0); // react step marker, see stepFutures;
+        this.stepFutureHandler = handler;
+        this.stepReact = null;
+        this.stepTimeout = 0;
+        this.stepFutures = futures;
+        this.stepNeeded = n;
+        this.stepStage = false;
+        return StepResult.OK;
+    }
+
+    final void beforeStep() {
+        nextCallCount = 0;
+    }
+
+    final void afterStep(StepResult result) {
+        checkAutomaton(result == StepResult.OK, "never redefine nextXXXX() methods(!), introduce new if needed.");
+        checkAutomaton(nextCallCount == 1,
+                "nextXXXX() method should be called ONCE per automaton step, in return statement(!)");
+    }
+
+    /**
+     * timer/zero-delay continuation of one run (start) of automaton;
+     */
+    private final class Continuation implements Runnable {
+        @Override public void run() {
+            if (continuation == this && fire(0)) {
+                if (listener != null) {
+                    listener.onTimer(AutomatonEngine.this, currentSched, currentClock() - pendingDeadline);
+                }
+                continueExecution(currentSched, true, false);
+            }
+        }
+    }
+
+    /**
+     * deadline timer of one react park (seq), see nextReact() with timeout;
+     */
+    private final class ReactDeadline implements Runnable {
+        private final int seq;
+
+        ReactDeadline(int seq) {
+            this.seq = seq;
+        }
+
+        @Override public void run() {
+            if (fireDeadline(seq)) {
+                continueExecution(currentSched, false, true);
+            }
+        }
+    }
+
+    /**
+     * listener of react futures, one per automaton, so react steps allocate
+     * nothing; the future which woke it up is pendingFuture (listeners of
+     * the previous parks find it not done or find a newer park sequence);
+     * multi-future steps register it on each future and count its calls
+     * down, the park is checked only by the call which reaches zero (and by
+     * later ones if that check failed); once detached (automaton stopped
+     * while waiting) it only keeps the reference of the future's listener
+     * list, not the automaton;
+     */
+    private static final class ReactListener implements Runnable {
+        volatile @Nullable AutomatonEngine<?> owner;
+        private @Nullable StageCallback stageCallback; // by the first stage step;
+
+        ReactListener(AutomatonEngine<?> owner) {
+            this.owner = owner;
+        }
+
+        StageCallback stageCallback() {
+            if (stageCallback == null) {
+                stageCallback = new StageCallback(this);
+            }
+            return stageCallback;
+        }
+
+        @Override public void run() {
+            final AutomatonEngine<?> o = owner;
+            if (o != null && (o.pendingFutures == null || REACT_COUNTDOWN.decrementAndGet(o) <= 0)
+                    && o.fire(REACT)) {
+                o.continueExecution(o.currentSched, false, true);
+            }
+        }
+    }
+
+    /**
+     * call this method to start automaton;
+     *
+     * @param sched automaton is bound to sched.bind(priority) until it stops;
+     */
+    @Override public ListenableFuture<? extends StopDescription<S>> start(AutomatonScheduler sched) {
+        final SettableFuture<StopDescription<S>> future = SettableFuture.create();
+        start(sched, future, null);
+        return future;
+    }
+
+    /**
+     * start as a member of fleet: no stop future, the stop is reported to
+     * fleet;
+     */
+    @SuppressWarnings("unchecked") final void start(AutomatonScheduler sched, AutomatonFleet<S> fleet) {
+        start(sched, (SettableFuture<StopDescription<S>>) FLEET_RUNNING, fleet);
+    }
+
+    private void start(AutomatonScheduler sched, SettableFuture<StopDescription<S>> future,
+            @Nullable AutomatonFleet<S> fleet) {
+        begin(sched, future, fleet, true);
+        resetState();
+        startTime = ticker.read();
+        maxTime = null;
+        if (maxAge != null) {
+            maxTime = startTime + maxAge;
+        }
+        final Continuation c = new Continuation();
+        continuation = c;
+        if (currentSched.inScheduler()) {
+            runState = (runState & SEQ) | RUNNING;
+            continueExecution(currentSched, true, false);
+        } else {
+            pendingDeadline = startTime;
+            runState = ((runState & SEQ) + SEQ_ONE) | PARKED;
+            currentSched.submit(c, 0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * restore from checkpoint (or passivation): fleet member continues in
+     * state after delay, as if it had been started age nanos ago;
+     *
+     * @param maxAge
+     *            nanos, null = unbounded
+     * @param newMember
+     *            false: fleet already counts automaton as running
+     *            (passivated one);
+     */
+    @SuppressWarnings("unchecked") final void resume(AutomatonScheduler sched, AutomatonFleet<S> fleet, S state,
+            long delay, long age, @Nullable Long maxAge, boolean newMember) {
+        begin(sched, (SettableFuture<StopDescription<S>>) FLEET_RUNNING, fleet, newMember);
+        restoreState(state);
+        this.maxAge = maxAge;
+        startTime = ticker.read() - age;
+        maxTime = maxAge == null ? null : startTime + maxAge;
+        final Continuation c = new Continuation();
+        continuation = c;
+        pendingDeadline = startTime + age + delay;
+        runState = ((runState & SEQ) + SEQ_ONE) | PARKED;
+        pendingTimer = currentSched.submit(c, delay, TimeUnit.NANOSECONDS, timerSlack);
+    }
+
+    private void begin(AutomatonScheduler sched, SettableFuture<StopDescription<S>> future,
+            @Nullable AutomatonFleet<S> fleet, boolean newMember) {
+        checkArgument(stopFuture == null || stopFuture.isDone());
+        currentSched = checkNotNull(sched).bind(priority);
+        this.fleet = fleet;
+        if (fleet != null && newMember) {
+            fleet.started();
+        }
+        stopFlag = false;
+        pendingTimer = null;
+        pendingFuture = null;
+        pendingFutures = null;
+        if (reactListener.owner == null) {
+            reactListener = new ReactListener(this); // detached by stop();
+        }
+        stopFuture = future; // mem visibility(!)
+    }
+
+    /**
+     * automaton waiting for its timer or react future is stopped right away
+     * (in the calling thread): timer is cancelled, react callback is detached
+     * and the stop future is completed; automaton executing a step stops
+     * when that step completes; <br>
+     * fleet members get their stop future here, if a member has already
+     * stopped the future holds null (its stop was reported to the fleet);
+     */
+    @Override public final ListenableFuture<? extends StopDescription<S>> stop() {
+    	checkState(supportsManualStop, "manual stop must be enabled");
+        checkAutomaton(stopFuture != null, "not started");
+        if (stopFuture == FLEET_RUNNING) {
+            STOP_FUTURE.compareAndSet(this, FLEET_RUNNING, SettableFuture.create());
+        }
+        final ListenableFuture<? extends StopDescription<S>> future = stopFuture;
+        stopFlag = true;
+        stopParked();
+        return future;
+    }
+
+    /**
+     * stop() of fleet member without its stop future;
+     */
+    final void stopMember() {
+        checkState(supportsManualStop, "manual stop must be enabled");
+        stopFlag = true;
+        stopParked();
+    }
+
+    @Override public final boolean isStopped() {
+        return stopFuture != null && stopFuture.isDone();
+    }
+
+    private void stopParked() {
+        if (takeParked()) {
+            notifyStop(StopReason.MANUAL, null);
+        }
+    }
+
+    /**
+     * parked -> stopped, the timer is cancelled, the react listener is
+     * detached; the caller owns automaton afterwards and must notifyStop();
+     *
+     * @return false if automaton isn't parked;
+     */
+    private boolean takeParked() {
+        int state;
+        do {
+            state = runState;
+            if ((state & PHASE) != PARKED) {
+                return false; // running (will see stopFlag) or already stopped;
+            }
+        } while (!RUN_STATE.compareAndSet(this, state, (state & SEQ) | STOPPED));
+        final Cancellable timer = pendingTimer;
+        if (timer != null) {
+            timer.cancel();
+        }
+        if ((state & REACT) != 0) {
+            currentSched.reactResumed();
+            reactListener.owner = null;
+            pendingDeadline = startTime; // the react step is run again after restore;
+        }
+        return true;
+    }
+
+    /**
+     * checkpoint: takes parked automaton out of its scheduler, the caller
+     * reads checkpointState()/remainingDelay()/age() and calls
+     * endSuspend();
+     *
+     * @return 1 = suspended, 0 = busy (running a step, try again later), -1 =
+     *         stopped or never started;
+     */
+    final int beginSuspend() {
+        if (takeParked()) {
+            return 1;
+        }
+        return (runState & PHASE) == STOPPED ? -1 : 0;
+    }
+
+    /**
+     * checkpoint is written: the automaton stops (MANUAL);
+     */
+    final void endSuspend() {
+        notifyStop(StopReason.MANUAL, null);
+    }
+
+    /**
+     * nanos left till the step of a suspended automaton, 0 for zero-delay
+     * and react steps;
+     */
+    final long remainingDelay() {
+        return Math.max(0, pendingDeadline - ticker.read());
+    }
+
+    /**
+     * nanos, null = unbounded;
+     */
+    final @Nullable Long maxAge() {
+        return maxAge;
+    }
+
+    final long startTime() {
+        return startTime;
+    }
+
+    final Ticker ticker() {
+        return ticker;
+    }
+
+    final @Nullable AutomatonListener listener() {
+        return listener;
+    }
+
+    /**
+     * delay of the last "next" method (nanos), {@link #JOIN_PSEUDO_DELAY}
+     * for join; for engines which run steps of automaton without starting it
+     * (react steps can't be run this way);
+     */
+    final long nextDelay() {
+        checkAutomaton(stepFuture == null, "react steps aren't supported here");
+        return currentDelay < 0 ? JOIN_PSEUDO_DELAY : currentDelayUnit.toNanos(currentDelay);
+    }
+
+    /**
+     * delay of the last "next" method (nanos), {@link #JOIN_PSEUDO_DELAY} for
+     * join, {@link #REACT_PSEUDO_DELAY} for react; for listeners (valid in
+     * onStep());
+     */
+    public final long getLastDelay() {
+        return stepFuture != null ? REACT_PSEUDO_DELAY : currentDelay < 0 ? JOIN_PSEUDO_DELAY : currentDelayUnit
+                .toNanos(currentDelay);
+    }
+
+    /**
+     * long delay of fleet member: automaton is written to the store and
+     * dropped, the store schedules its rehydration on sched (the bound one);
+     *
+     * @return false if delay is below the threshold of store;
+     */
+    private boolean passivate(PassivationStore<S, ?> store, AutomatonScheduler sched) {
+        final long delay = currentDelayUnit.toNanos(currentDelay);
+        if (delay < store.threshold || (supportsManualStop && stopFlag)) {
+            return false;
+        }
+        store.passivate(this, sched, delay, timerSlack);
+        runState = (runState & SEQ) | STOPPED;
+        continuation = null;
+        fleet = null;
+        clearState();
+        return true;
+    }
+
+    /**
+     * timer (kind = 0) or react listener (kind = REACT) fired;
+     *
+     * @return true if caller owns automaton now and must continue execution;
+     */
+    private boolean fire(int kind) {
+        while (true) {
+            final int state = runState;
+            if ((state & REACT) != kind) {
+                return false; // late timer/listener;
+            }
+            if (kind == REACT && !reactReady()) {
+                return false;
+            }
+            final int phase = state & PHASE;
+            if (phase == PARKED) {
+                if (RUN_STATE.compareAndSet(this, state, (state & SEQ) | RUNNING)) {
+                    return true;
+                }
+            } else if (phase == PARKING) {
+                if (RUN_STATE.compareAndSet(this, state, (state & ~PHASE) | FIRED)) {
+                    return false; // parking thread continues;
+                }
+            } else {
+                return false; // running or stopped;
+            }
+        }
+    }
+
+    /**
+     * the future(s) of react park are done; pendingFuture(s) are written
+     * before the park state, so they belong to this park or a newer one
+     * (then the CAS of fire() fails);
+     */
+    private boolean reactReady() {
+        final List<? extends ListenableFuture<?>> futures = pendingFutures;
+        if (futures != null) {
+            return doneCount(futures) >= pendingNeeded;
+        }
+        final Future<?> future = pendingFuture;
+        return future != null && future.isDone();
+    }
+
+    private static int doneCount(List<? extends ListenableFuture<?>> futures) {
+        int done = 0;
+        for (int i = 0, n = futures.size(); i < n; i++) {
+            if (futures.get(i).isDone()) {
+                done++;
+            }
+        }
+        return done;
+    }
+
+    /**
+     * same as fire(REACT) for the deadline of react park seq: the future
+     * needn't be done, the winner finds it not done and times out;
+     */
+    private boolean fireDeadline(int seq) {
+        while (true) {
+            final int state = runState;
+            if ((state & SEQ) != seq || (state & REACT) == 0) {
+                return false; // late deadline;
+            }
+            final int phase = state & PHASE;
+            if (phase == PARKED) {
+                if (RUN_STATE.compareAndSet(this, state, (state & SEQ) | RUNNING)) {
+                    return true;
+                }
+            } else if (phase == PARKING) {
+                if (RUN_STATE.compareAndSet(this, state, (state & ~PHASE) | FIRED)) {
+                    return false; // parking thread continues;
+                }
+            } else {
+                return false; // running or stopped;
+            }
+        }
+    }
+
+    /**
+     * registers a timer/listener: RUNNING -> PARKING, next park sequence;
+     */
+    private void beginPark(int kind) {
+        runState = ((runState & SEQ) + SEQ_ONE) | kind | PARKING;
+    }
+
+    /**
+     * @return false if timer/listener has already fired and current thread
+     *         must continue execution;
+     */
+    private boolean park() {
+        final int state = runState;
+        if ((state & PHASE) != PARKING || !RUN_STATE.compareAndSet(this, state, (state & ~PHASE) | PARKED)) {
+            runState = (state & SEQ) | RUNNING; // FIRED
+            return false;
+        }
+        if (supportsManualStop && stopFlag) {
+            stopParked(); // stop() could miss us while we were parking;
+        }
+        return true;
+    }
+
+    protected final void checkAutomaton(boolean cond, String msg) {
+        if (!cond) {
+            throw new AutomatonStateException("[Automaton check failure:" + this + "]: " + msg);
+        }
+    }
+
+    /**
+     * Core automaton logic;
+     *
+     * @param reacted
+     *            react future is done, its handler is the next step
+     */
+    final void continueExecution(final AutomatonScheduler sched, boolean doStep, boolean reacted) {
+        int steps = 0; // of this run, see stepBudget/timeBudget;
+        long runStart = budgetStart();
+        while (true) {
+            try {
+                if (reacted) {
+                    reacted = false;
+                    steps++;
+                    if (!handleReact()) {
+                        if (isEndState()) {
+                            return;
+                        }
+                        doStep = true; // failure was recovered by onError();
+                        continue;
+                    }
+                }
+
+                if (supportsManualStop && stopFlag) {
+                    notifyStop(StopReason.MANUAL, null);
+                    return;
+                }
+
+                if (isEndState()) {
+                    notifyStop(StopReason.NATURAL, null);
+                    return;
+                }
+
+                if (maxTime != null && isBefore(maxTime, currentClock())) {
+                    notifyStop(StopReason.AGE, null);
+                    return;
+                }
+                if (doStep) {
+                    steps++;
+                    beforeStep();
+                    runStep();
+                }
+
+                while (currentDelay < 0) {
+                    assert currentDelay == JOIN_PSEUDO_DELAY;
+                    if (budgetSpent(steps, runStart)) {
+                        // budget is over: yield the thread, the join step
+                        // continues as a zero-delay step;
+                        currentDelay = 0;
+                        break;
+                    }
+                    // join steps;
+                    steps++;
+                    beforeStep();
+                    runStep();
+                }
+
+                if (stepFuture == null) {
+                    if (fleet != null && fleet.passivation != null && passivate(fleet.passivation, sched)) {
+                        return;
+                    }
+                    // normal step
+                    pendingDeadline = currentDelay > 0 || listener != null ? currentClock()
+                            + currentDelayUnit.toNanos(currentDelay) : startTime;
+                    beginPark(0);
+                    pendingTimer = sched.submit(continuation, currentDelay, currentDelayUnit, timerSlack);
+                    if (park()) {
+                        return;
+                    }
+                    // timer has fired already, this thread runs it: a new
+                    // run as far as budgets are concerned;
+                    pendingTimer = null;
+                    doStep = true;
+                    steps = 0;
+                    runStart = budgetStart();
+                } else {
+                    // wait step
+                    final Future<?> future = this.stepFuture;
+                    final List<? extends ListenableFuture<?>> futures = stepFutures;
+                    final boolean stage = stepStage;
+                    @SuppressWarnings("unchecked") final Function<Object, StepResult> handler = (Function<Object, StepResult>) stepFutureHandler;
+                    final long timeout = stepTimeout;
+                    pendingHandler = handler;
+                    pendingReact = stepReact;
+                    pendingTimeoutState = stepTimeoutState;
+                    this.stepFuture = null;
+                    this.stepFutureHandler = null;
+                    this.stepReact = null;
+                    this.stepTimeout = 0;
+                    this.stepTimeoutState = null;
+                    this.stepFutures = null;
+                    this.stepStage = false;
+                    pendingTimer = null;
+                    if (futures == null) {
+                        pendingFutures = null;
+                        pendingFuture = future;
+                    } else {
+                        pendingFuture = null;
+                        pendingNeeded = stepNeeded;
+                        reactCountdown = stepNeeded;
+                        pendingFutures = futures;
+                    }
+                    if (listener != null || timeout > 0) {
+                        pendingSince = currentClock();
+                    }
+                    sched.reactParked();
+                    beginPark(REACT);
+                    if (timeout > 0 && !future.isDone()) {
+                        pendingTimer = sched.submitReactTimer(new ReactDeadline(runState & SEQ), timeout,
+                                TimeUnit.NANOSECONDS, timerSlack);
+                    }
+                    if (stage) {
+                        sched.addListener((CompletableFuture<?>) future, reactListener.stageCallback());
+                    } else if (futures == null) {
+                        sched.addListener((ListenableFuture<?>) future, reactListener);
+                    } else {
+                        for (int i = 0, n = futures.size(); i < n; i++) {
+                            sched.addListener(futures.get(i), reactListener);
+                        }
+                    }
+                    if (park()) {
+                        return;
+                    }
+                    reacted = true;
+                    doStep = false;
+                }
+            } catch (AutomatonStateException ase) {
+                // non-recoverable
+                log.error("Automaton inner logic disaster", ase);
+                notifyStop(StopReason.ERROR, ase);
+                return;
+            } catch (Throwable error) {
+                runState = (runState & SEQ) | RUNNING;
+                stepFailed(error);
+                if (isEndState()) {
+                    return;
+                }
+                // if error was recovered;
+                doStep = true;
+                reacted = false;
+            }
+        }
+    }
+
+    /**
+     * start of a run for budgetSpent(), 0 if there is no time budget;
+     */
+    final long budgetStart() {
+        return timeBudget > 0 ? currentClock() : 0;
+    }
+
+    /**
+     * steps (or time) of the run which started at runStart are over the
+     * budget, counted as a yield: the caller continues the join step as a
+     * zero-delay step;
+     */
+    final boolean budgetSpent(int steps, long runStart) {
+        if (steps >= stepBudget || (timeBudget > 0 && currentClock() - runStart >= timeBudget)) {
+            budgetYields++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * runs the step of the current state (reported to listener);
+     */
+    final void runStep() {
+        final AutomatonListener l = listener;
+        if (l == null) {
+            afterStep(stepCurrent());
+            return;
+        }
+        final S state = checkpointState();
+        final long t0 = currentClock();
+        afterStep(stepCurrent());
+        l.onStep(this, state, checkpointState(), currentClock() - t0);
+    }
+
+    /**
+     * @return false if react future failed and handler can't handle errors
+     *         (onError() was called);
+     */
+    @SuppressWarnings("unchecked") private boolean handleReact() {
+        currentSched.reactResumed();
+        final Future<?> future = pendingFuture;
+        final List<? extends ListenableFuture<?>> futures = pendingFutures;
+        final Function<Object, StepResult> handler = pendingHandler;
+        final Object react = pendingReact;
+        final Object timeoutState = pendingTimeoutState;
+        pendingFuture = null;
+        pendingFutures = null;
+        pendingHandler = null;
+        pendingReact = null;
+        pendingTimeoutState = null;
+        final Cancellable deadline = pendingTimer;
+        if (deadline != null) {
+            pendingTimer = null;
+            if (!future.isDone()) {
+                return reactTimedOut(handler, timeoutState);
+            }
+            deadline.cancel();
+        }
+        Object result = null;
+        Throwable failure = null;
+        if (futures != null) {
+            if (doneCount(futures) < futures.size()) {
+                // wait-any/first-n: the rest may never complete;
+                reactListener.owner = null;
+                reactListener = new ReactListener(this);
+            }
+            result = futures;
+        } else {
+            try {
+                result = Uninterruptibles.getUninterruptibly(future);
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (RuntimeException | Error e) {
+                failure = e; // cancelled;
+            }
+        }
+        if (failure == null) {
+            beforeStep();
+            final AutomatonListener l = listener;
+            if (l == null) {
+                afterStep(react != null ? stepReact(react, result) : handler.apply(result));
+                return true;
+            }
+            final S state = checkpointState();
+            final long t0 = currentClock();
+            l.onReact(this, state, t0 - pendingSince);
+            afterStep(react != null ? stepReact(react, result) : handler.apply(result));
+            l.onStep(this, state, checkpointState(), currentClock() - t0);
+            return true;
+        }
+        if (handler instanceof FunctionWithError) {
+            beforeStep();
+            afterStep(((FunctionWithError<Object, StepResult>) handler).error(failure));
+            return true;
+        }
+        stepFailed(failure);
+        return false;
+    }
+
+    /**
+     * deadline of react step has won: the listener left on the future is
+     * detached (the future may never complete, it mustn't keep automaton),
+     * then timeout state or TimeoutException;
+     */
+    @SuppressWarnings("unchecked") private boolean reactTimedOut(Function<Object, StepResult> handler,
+            @Nullable Object timeoutState) {
+        reactListener.owner = null;
+        reactListener = new ReactListener(this);
+        reactTimeouts++;
+        if (fleet != null) {
+            fleet.reactTimedOut();
+        }
+        final AutomatonListener l = listener;
+        final S state = checkpointState();
+        final long t0 = currentClock();
+        if (l != null) {
+            l.onReactTimeout(this, state, t0 - pendingSince);
+        }
+        if (timeoutState != null) {
+            restoreState((S) timeoutState);
+            setNext(JOIN_PSEUDO_DELAY, TimeUnit.NANOSECONDS);
+            if (l != null) {
+                l.onStep(this, state, checkpointState(), 0);
+            }
+            return true;
+        }
+        final TimeoutException timeout = new TimeoutException("react step of " + state + " timed out");
+        if (handler instanceof FunctionWithError) {
+            beforeStep();
+            afterStep(((FunctionWithError<Object, StepResult>) handler).error(timeout));
+            if (l != null) {
+                l.onStep(this, state, checkpointState(), currentClock() - t0);
+            }
+            return true;
+        }
+        stepFailed(timeout);
+        return false;
+    }
+
+    // ensure that client will never be able to write his/her own nextXXXX()
+    // method;
+    protected static class StepResult {
+        final static StepResult OK = new StepResult();
+    }
+
+    /**
+     * options of the engine, common for builders of all automaton kinds;
+     */
+    protected static abstract class EngineBuilder<This extends EngineBuilder<?>> {
+        @Nullable Long maxAge; // null = forever;
+        String name;
+        Ticker ticker = Ticker.systemTicker();
+        TimeUnit defaultUnit = TimeUnit.MILLISECONDS;
+        boolean supportsManualStop;
+        long timerSlack; // nanos
+        int priority = AutomatonScheduler.PRIORITY_NORMAL;
+        int stepBudget = Integer.MAX_VALUE;
+        long timeBudget; // nanos
+        @Nullable AutomatonListener listener;
+
+        EngineBuilder() {
+        }
+
+        public final This maxAge(long duration, TimeUnit unit) {
+            this.maxAge = unit.toNanos(duration);
+            return getThis();
+        }
+
+        public final This name(String name) {
+            this.name = name;
+            return getThis();
+        }
+
+        public final This ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return getThis();
+        }
+
+        public final This defaultDelayUnit(TimeUnit unit) {
+        	this.defaultUnit = unit;
+        	return getThis();
+        }
+
+        /**
+         * delayed steps may fire up to slack later than requested, this lets
+         * scheduler fire nearby timers as one batch, see
+         * {@link AutomatonScheduler#submit(Runnable, long, TimeUnit, long)}
+         */
+        public final This timerSlack(long slack, TimeUnit unit) {
+            checkArgument(slack >= 0);
+            this.timerSlack = unit.toNanos(slack);
+            return getThis();
+        }
+
+        /**
+         * priority class, AutomatonScheduler.PRIORITY_XXX or any value >= 0
+         * (lower is more urgent); ignored by schedulers without priorities,
+         * see {@link automatons.automatons.sched.PriorityLaneScheduler}
+         */
+        public final This priority(int priority) {
+            checkArgument(priority >= 0);
+            this.priority = priority;
+            return getThis();
+        }
+
+        /**
+         * max steps executed in a row by one thread (the first step plus
+         * nextJoin() chain), then automaton yields: the rest of the chain
+         * continues as zero-delay steps, so that long join chains can't
+         * starve other automatons of the thread; default is unbounded;
+         */
+        public final This stepBudget(int steps) {
+            checkArgument(steps > 0);
+            this.stepBudget = steps;
+            return getThis();
+        }
+
+        /**
+         * same as stepBudget(), but measured by ticker;
+         */
+        public final This timeBudget(long duration, TimeUnit unit) {
+            checkArgument(duration > 0);
+            this.timeBudget = unit.toNanos(duration);
+            return getThis();
+        }
+
+        /**
+         * engine events (steps, react waits, timer lags, stops), see
+         * {@link automatons.automatons.metrics.AutomatonMetrics}; listeners
+         * of repeated calls are called in order of calls;
+         */
+        public final This listener(AutomatonListener listener) {
+            checkNotNull(listener);
+            this.listener = this.listener == null ? listener : new CompositeListener(this.listener, listener);
+            return getThis();
+        }
+
+        public final This enableManualStop() {
+        	this.supportsManualStop = true;
+        	return getThis();
+        }
+
+        /**
+         * to eat unchecked warnings in one place;
+         */
+        @SuppressWarnings("unchecked") protected final This getThis() {
+            return (This) this;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package automatons.automatons;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nullable;
+
+import automatons.automatons.Automaton.StopDescription;
+import automatons.automatons.Automaton.StopReason;
+import automatons.automatons.sched.AutomatonScheduler;
+
+/**
+ * Bulk start/stop of automatons with aggregated stop statistics: members of
+ * a fleet have no stop futures (unless stop() is called on a member), their
+ * stops are counted by the fleet: stop reasons, ages (log2 histogram) and
+ * last states; the fleet keeps no references to its members, its memory
+ * depends on the number of distinct last states only; <br>
+ * a fleet can be reused: statistics are cumulative, awaitAll() waits for
+ * the members started so far;
+ *
+ * @param <S>
+ *            state type of members
+ */
+public final class AutomatonFleet<S> {
+    /**
+     * age histogram buckets: bucket i counts ages in [2^i, 2^(i+1)) nanos,
+     * bucket 0 also counts age 0;
+     */
+    public static final int AGE_BUCKETS = 64;
+
+    private final AutomatonScheduler sched;
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong running = new AtomicLong();
+    private final AtomicLongArray reasons = new AtomicLongArray(StopReason.values().length);
+    private final AtomicLongArray ages = new AtomicLongArray(AGE_BUCKETS);
+    private final ConcurrentMap<S, AtomicLong> lastStates = new ConcurrentHashMap<>();
+    private final AtomicLong noLastState = new AtomicLong();
+    private final AtomicLong reactTimeouts = new AtomicLong();
+    private final Object allStopped = new Object();
+    volatile @Nullable PassivationStore<S, ?> passivation;
+
+    public AutomatonFleet(AutomatonScheduler sched) {
+        this.sched = checkNotNull(sched);
+    }
+
+    /**
+     * starts automaton as a member of this fleet, see
+     * {@link Automaton#start(AutomatonScheduler)};
+     */
+    public void start(AutomatonEngine<S> automaton) {
+        automaton.start(sched, this);
+    }
+
+    public void startAll(Iterable<? extends AutomatonEngine<S>> automatons) {
+        for (AutomatonEngine<S> a : automatons) {
+            a.start(sched, this);
+        }
+    }
+
+    /**
+     * manual stop of automatons (manual stop must be enabled), their stops
+     * are reported to the fleet as usual;
+     */
+    public void stopAll(Iterable<? extends AutomatonEngine<S>> automatons) {
+        for (AutomatonEngine<S> a : automatons) {
+            a.stopMember();
+        }
+    }
+
+    /**
+     * waits until all members started so far have stopped;
+     */
+    public void awaitAll() throws InterruptedException {
+        synchronized (allStopped) {
+            while (running.get() > 0) {
+                allStopped.wait();
+            }
+        }
+    }
+
+    /**
+     * @return false if timeout has elapsed before all members have stopped;
+     */
+    public boolean awaitAll(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (allStopped) {
+            while (running.get() > 0) {
+                final long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(allStopped, left);
+            }
+        }
+        return true;
+    }
+
+    final AutomatonScheduler scheduler() {
+        return sched;
+    }
+
+    final void started() {
+        started.incrementAndGet();
+        running.incrementAndGet();
+    }
+
+    final void started(long count) {
+        started.addAndGet(count);
+        running.addAndGet(count);
+    }
+
+    final void reactTimedOut() {
+        reactTimeouts.incrementAndGet();
+    }
+
+    final void stopped(StopDescription<S> d) {
+        reasons.incrementAndGet(d.getReason().ordinal());
+        final long age = d.getAge(TimeUnit.NANOSECONDS);
+        ages.incrementAndGet(age <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(age));
+        final S last = d.getLastState();
+        if (last == null) {
+            noLastState.incrementAndGet();
+        } else {
+            AtomicLong count = lastStates.get(last);
+            if (count == null) {
+                final AtomicLong c = lastStates.putIfAbsent(last, count = new AtomicLong());
+                if (c != null) {
+                    count = c;
+                }
+            }
+            count.incrementAndGet();
+        }
+        if (running.decrementAndGet() == 0) {
+            synchronized (allStopped) {
+                allStopped.notifyAll();
+            }
+        }
+    }
+
+    public long getStarted() {
+        return started.get();
+    }
+
+    public long getRunning() {
+        return running.get();
+    }
+
+    /**
+     * react steps of members whose deadline has expired (see nextReact()
+     * with timeout);
+     */
+    public long getReactTimeouts() {
+        return reactTimeouts.get();
+    }
+
+    public long getStopped(StopReason reason) {
+        return reasons.get(reason.ordinal());
+    }
+
+    /**
+     * @return copy of the age histogram, see {@link #AGE_BUCKETS};
+     */
+    public long[] getAgeHistogram() {
+        final long[] h = new long[AGE_BUCKETS];
+        for (int i = 0; i < h.length; i++) {
+            h[i] = ages.get(i);
+        }
+        return h;
+    }
+
+    /**
+     * approximate (upper bound of histogram bucket) age percentile of
+     * stopped members;
+     *
+     * @param p
+     *            0..1
+     * @return 0 if there are no stopped members;
+     */
+    public long getAgePercentile(double p, TimeUnit unit) {
+        final long[] h = getAgeHistogram();
+        long total = 0;
+        for (long c : h) {
+            total += c;
+        }
+        final long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < h.length; i++) {
+            seen += h[i];
+            if (seen >= rank && h[i] > 0) {
+                return unit.convert(i == 63 ? Long.MAX_VALUE : (2L << i) - 1, TimeUnit.NANOSECONDS);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return copy of last states distribution, the members without last
+     *         state (natural stop: the end state is null) are counted by
+     *         {@link #getStoppedWithoutLastState()};
+     */
+    public Map<S, Long> getLastStates() {
+        final Map<S, Long> m = new HashMap<>();
+        for (Map.Entry<S, AtomicLong> e : lastStates.entrySet()) {
+            m.put(e.getKey(), e.getValue().get());
+        }
+        return m;
+    }
+
+    public long getStoppedWithoutLastState() {
+        return noLastState.get();
+    }
+
+    public long getLastStateCount(@Nullable S state) {
+        if (state == null) {
+            return noLastState.get();
+        }
+        final AtomicLong count = lastStates.get(state);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override public String toString() {
+        final StringBuilder sb = new StringBuilder("AutomatonFleet [started=").append(started.get())
+                .append(", running=").append(running.get());
+        for (StopReason r : StopReason.values()) {
+            sb.append(", ").append(r).append('=').append(reasons.get(r.ordinal()));
+        }
+        return sb.append("]").toString();
+    }
+}
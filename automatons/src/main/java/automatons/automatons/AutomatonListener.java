@@ -0,0 +1,45 @@
+package automatons.automatons;
+
+import javax.annotation.Nullable;
+
+import automatons.automatons.Automaton.StopDescription;
+import automatons.automatons.sched.AutomatonScheduler;
+
+/**
+ * Engine events, see EngineBuilder.listener(); methods are called in the
+ * threads of automaton steps, they must be fast and must not throw; an
+ * automaton without listener pays one null check per event; <br>
+ * states are as seen by {@link Automaton} (boxed ints of
+ * {@link IntAutomaton}, null = end);
+ *
+ * @see automatons.automatons.metrics.AutomatonMetrics
+ */
+public interface AutomatonListener {
+    /**
+     * step of state (or react step of state) has run and chose nextState;
+     */
+    void onStep(AutomatonEngine<?> automaton, Object state, @Nullable Object nextState, long nanos);
+
+    /**
+     * react future of state is done, the automaton waited for it waitNanos;
+     */
+    void onReact(AutomatonEngine<?> automaton, Object state, long waitNanos);
+
+    /**
+     * deadline of react step of state has expired after waitNanos;
+     */
+    void onReactTimeout(AutomatonEngine<?> automaton, Object state, long waitNanos);
+
+    /**
+     * timer of delayed (or zero-delay) step has fired lagNanos after the
+     * requested time;
+     */
+    void onTimer(AutomatonEngine<?> automaton, AutomatonScheduler sched, long lagNanos);
+
+    /**
+     * jump of {@link JumpAutomaton} is fired;
+     */
+    void onJump(JumpAutomaton<?> automaton, Object source, @Nullable Object target);
+
+    void onStop(AutomatonEngine<?> automaton, StopDescription<?> description);
+}
@@ -0,0 +1,50 @@
+package automatons.automatons;
+
+import javax.annotation.Nullable;
+
+import automatons.automatons.Automaton.StopDescription;
+import automatons.automatons.sched.AutomatonScheduler;
+
+/**
+ * two listeners of one automaton (EngineBuilder.listener() called twice),
+ * more listeners are nested composites;
+ */
+final class CompositeListener implements AutomatonListener {
+    private final AutomatonListener first;
+    private final AutomatonListener second;
+
+    CompositeListener(AutomatonListener first, AutomatonListener second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override public void onStep(AutomatonEngine<?> automaton, Object state, @Nullable Object nextState, long nanos) {
+        first.onStep(automaton, state, nextState, nanos);
+        second.onStep(automaton, state, nextState, nanos);
+    }
+
+    @Override public void onReact(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+        first.onReact(automaton, state, waitNanos);
+        second.onReact(automaton, state, waitNanos);
+    }
+
+    @Override public void onReactTimeout(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+        first.onReactTimeout(automaton, state, waitNanos);
+        second.onReactTimeout(automaton, state, waitNanos);
+    }
+
+    @Override public void onTimer(AutomatonEngine<?> automaton, AutomatonScheduler sched, long lagNanos) {
+        first.onTimer(automaton, sched, lagNanos);
+        second.onTimer(automaton, sched, lagNanos);
+    }
+
+    @Override public void onJump(JumpAutomaton<?> automaton, Object source, @Nullable Object target) {
+        first.onJump(automaton, source, target);
+        second.onJump(automaton, source, target);
+    }
+
+    @Override public void onStop(AutomatonEngine<?> automaton, StopDescription<?> description) {
+        first.onStop(automaton, description);
+        second.onStop(automaton, description);
+    }
+}
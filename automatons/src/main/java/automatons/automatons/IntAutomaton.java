@@ -0,0 +1,225 @@
+package automatons.automatons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Automaton with primitive int states, the same engine as
+ * {@link AbstractAutomaton} without boxing of states; <br>
+ * States are ints >= 0, {@link #END} is a total stop of automaton; to
+ * describe steps either override {@link #step(int)} (switch-case) or pass a
+ * step table indexed by state to the builder, see BuilderBase.steps(); <br>
+ * nextInt()/nextJoinInt() are the int versions of next()/nextJoin(), react
+ * steps are the usual nextReact();
+ */
+public abstract class IntAutomaton extends AutomatonEngine<Integer> {
+    private static final Logger log = LoggerFactory.getLogger(IntAutomaton.class);
+
+    public static final int END = -1;
+
+    private int currentState = END;
+    private int initialState;
+    private final @Nullable IntStep<IntAutomaton>[] steps;
+
+    @SuppressWarnings("unchecked") protected IntAutomaton(
+            BuilderBase<? extends BuilderBase<?, ?>, ? extends IntAutomaton> b) {
+        super(b);
+        checkArgument(b.initialState >= 0, "initialState?");
+        this.initialState = b.initialState;
+        this.steps = (IntStep<IntAutomaton>[]) b.steps;
+    }
+
+    protected final int getInitialIntState() {
+        return initialState;
+    }
+
+    @Override public void setInitialState(Integer s1) {
+        checkArgument(s1 >= 0);
+        this.initialState = s1;
+    }
+
+    protected final int getCurrentIntState() {
+        return currentState;
+    }
+
+    /**
+     * you can redefine step method to use switch-case instead of the step
+     * table;
+     */
+    protected StepResult step(int currentState) {
+        if (steps == null || currentState < 0 || currentState >= steps.length || steps[currentState] == null) {
+            throw errorStateUndefined(currentState);
+        }
+        return steps[currentState].step(this);
+    }
+
+    /**
+     * think twice if you want recover any errors(!) it's not advised you
+     * override this method
+     */
+    protected void onError(int state, Throwable error) {
+        if (log.isTraceEnabled())
+            log.trace("automaton error, state = " + state, error);
+
+        notifyStop(StopReason.ERROR, error);
+    }
+
+    // / "NEXT"-methods, see AbstractAutomaton;
+
+    protected final StepResult nextInt(int nextState, long delay, TimeUnit unit) {
+        currentState = nextState;
+        return setNext(delay, unit);
+    }
+
+    protected final StepResult nextInt(int nextState, long delay) {
+        return nextInt(nextState, delay, defaulDelaytUnit);
+    }
+
+    protected final StepResult nextInt(int nextState) {
+        return nextInt(nextState, 0);
+    }
+
+    /**
+     * @param nextState will be run in the same runnable (same thread)
+     */
+    protected final StepResult nextJoinInt(int nextState) {
+        return nextInt(nextState, JOIN_PSEUDO_DELAY);
+    }
+
+    /**
+     * next state = END, stops the automaton;
+     */
+    protected final StepResult nextEnd() {
+        return nextInt(END);
+    }
+
+    protected final StepResult nextSameState() {
+        return nextInt(currentState);
+    }
+
+    protected final StepResult nextJoinSameState() {
+        return nextJoinInt(currentState);
+    }
+
+    @Override final void resetState() {
+        currentState = initialState;
+    }
+
+    @Override final boolean isEndState() {
+        return currentState == END;
+    }
+
+    @Override final StepResult stepCurrent() {
+        return step(currentState);
+    }
+
+    @Override final StepResult stepReact(Object reactStep, @Nullable Object result) {
+        throw new AssertionError("int automatons have no react step kinds");
+    }
+
+    @Override final void stepFailed(Throwable error) {
+        onError(currentState, error);
+    }
+
+    @Override final StopDescription<Integer> stopDescription(StopReason reason, @Nullable Throwable error) {
+        return new IntStopDescription(reason, error, currentState);
+    }
+
+    @Override final void clearState() {
+        currentState = END;
+    }
+
+    @Override final Integer checkpointState() {
+        return currentState;
+    }
+
+    @Override final void restoreState(Integer state) {
+        checkArgument(state >= 0);
+        currentState = state;
+    }
+
+    protected final IllegalStateException errorStateUndefined(int state) {
+        return new AutomatonStateException("[Automaton error: " + this + "] state undefined:" + state);
+    }
+
+    public class IntStopDescription implements StopDescription<Integer> {
+        private final @Nullable Throwable error;
+        private final StopReason reason;
+        private final long age;
+        private final int lastState;
+
+        public IntStopDescription(StopReason reason, @Nullable Throwable error, int lastState) {
+            this.error = error;
+            this.reason = reason;
+            this.age = age();
+            this.lastState = lastState;
+        }
+
+        @Override public @Nullable Throwable getError() {
+            return error;
+        }
+
+        @Override public StopReason getReason() {
+            return reason;
+        }
+
+        @Override public long getAge(TimeUnit unit) {
+            return unit.convert(age, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * boxed getLastIntState(), null for END;
+         */
+        @Override public @Nullable Integer getLastState() {
+            return lastState == END ? null : lastState;
+        }
+
+        public int getLastIntState() {
+            return lastState;
+        }
+
+        @Override public String toString() {
+            return "IntStopDescription [error=" + error + ", reason=" + reason + ", age=" + age + ", lastState="
+                    + lastState + "]";
+        }
+    }
+
+    protected static abstract class BuilderBase<This extends BuilderBase<?, ?>, A extends IntAutomaton> extends
+            EngineBuilder<This> {
+        int initialState;
+        IntStep<?>[] steps;
+
+        protected BuilderBase(int initialState) {
+            this.initialState = initialState;
+        }
+
+        public This initialState(int initialState) {
+            this.initialState = initialState;
+            return getThis();
+        }
+
+        /**
+         * step table: steps.get(state) is the step of state, null = undefined
+         * (e.g. Arrays.asList(STEP0, null, STEP2));
+         */
+        public This steps(List<? extends IntStep<? super A>> steps) {
+            this.steps = steps.toArray(new IntStep<?>[steps.size()]);
+            return getThis();
+        }
+    }
+
+    public static abstract class IntStep<A extends IntAutomaton> {
+        public abstract StepResult step(A self);
+    }
+
+    public String toString() {
+        return "[ " + super.toString() + " name: " + getName() + "]";
+    }
+}
@@ -115,6 +115,14 @@ public class JumpAutomaton<S> extends AbstractAutomaton<S> {
         return (T) assoc;
     }
 
+    final void setAssoc(@Nullable Object assoc) {
+        this.assoc = assoc;
+    }
+
+    final @Nullable Supplier<Object> getAssocSupplier() {
+        return assocSupplier;
+    }
+
     public static final class Jump<TState, A extends JumpAutomaton<TState>> {
         public final TState source;
         public final @Nullable TState target; // null-state is automaton total
@@ -136,6 +144,10 @@ public class JumpAutomaton<S> extends AbstractAutomaton<S> {
         }
 
         final @Nullable StepResult fire(A automaton) {
+            final AutomatonListener listener = automaton.listener();
+            if (listener != null) {
+                listener.onJump(automaton, source, target);
+            }
             if (action != null) {
                 action.action(automaton, source, target);
             }
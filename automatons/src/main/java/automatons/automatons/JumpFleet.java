@@ -0,0 +1,380 @@
+package automatons.automatons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import automatons.automatons.Automaton.StopDescription;
+import automatons.automatons.Automaton.StopReason;
+import automatons.automatons.random.AbstractRandomizer;
+import automatons.automatons.random.Randomizer;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+
+/**
+ * Many bots of one jump definition without an object per bot: state
+ * ordinal, next step time (in ticks) and random generator state of every
+ * bot live in primitive arrays, the steps are run by one {@link JumpAutomaton}
+ * per shard (the cursor) which is loaded with the state, random generator
+ * and assoc of a bot right before its step; so steps, jumps, predicates,
+ * maybe() probabilities, delays and actions are the same as with
+ * JumpAutomaton objects; <br>
+ * differences: fields of the automaton object are shared by all bots of the
+ * shard, per bot data is the assoc (see assocSupplier() of builder); delays
+ * are rounded up to ticks, zero delay is the next tick; react and blocking
+ * steps are not supported (the bot stops with ERROR); stepBudget/timeBudget
+ * of the cursor limit join chains of one bot per tick, steps are reported to
+ * the listener of the cursor (the automaton argument is the cursor); <br>
+ * every shard is a timer wheel stepped once per tick by the scheduler of
+ * the fleet, due bots are stepped in one batch; stops are reported to the
+ * fleet; {@link #bot(int)} gives a handle to inspect/stop a bot, reads are
+ * approximate while the fleet runs;
+ *
+ * @param <S>
+ *            enum of states
+ * @param <A>
+ *            jump automaton of the definition
+ */
+public final class JumpFleet<S extends Enum<S>, A extends JumpAutomaton<S>> {
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final int WHEEL = 4096; // slots per shard, power of 2;
+    private static final short STOPPED = -1;
+
+    private final int size;
+    private final long tick; // nanos;
+    private final int perShard;
+    private final S[] constants;
+    private final short initial;
+    private final @Nullable Long maxAge;
+    private final short[] state; // ordinals, STOPPED;
+    private final long[] fireTick;
+    private final long[] seed;
+    private final int[] next; // wheel slot lists;
+    private final @Nullable Object[] assocs;
+    private final @Nullable Supplier<Object> assocSupplier;
+    private final List<Shard> shards = new ArrayList<>();
+    private volatile @Nullable AutomatonFleet<S> fleet;
+    private long startTime;
+
+    /**
+     * @param tick
+     *            resolution of delays
+     * @param cursors
+     *            builds the automaton which runs the steps of one shard, it
+     *            must use the given randomizer (randomizer of bot), e.g.
+     *            builder.randomizer(r).build()
+     */
+    public JumpFleet(int size, int shards, long tick, TimeUnit unit, long seed,
+            Function<? super Randomizer, ? extends A> cursors) {
+        checkArgument(size > 0 && shards > 0 && tick > 0, "size/shards/tick?");
+        this.size = size;
+        this.tick = unit.toNanos(tick);
+        this.perShard = (size + shards - 1) / shards;
+        this.state = new short[size];
+        this.fireTick = new long[size];
+        this.seed = new long[size];
+        this.next = new int[size];
+        Arrays.fill(state, STOPPED);
+        for (int i = 0; i < size; i++) {
+            this.seed[i] = mix(seed + i);
+        }
+        for (int from = 0; from < size; from += perShard) {
+            final BotRandomizer r = new BotRandomizer(this.seed);
+            final A cursor = checkNotNull(cursors.apply(r));
+            checkArgument(cursor.getRandomizer() == r, "cursor must use the given randomizer");
+            this.shards.add(new Shard(from, Math.min(size, from + perShard), cursor, r));
+        }
+        final A cursor = this.shards.get(0).cursor;
+        final S s0 = checkNotNull(cursor.getInitialState());
+        this.constants = s0.getDeclaringClass().getEnumConstants();
+        checkArgument(constants.length <= Short.MAX_VALUE, "too many states");
+        this.initial = (short) s0.ordinal();
+        this.maxAge = cursor.maxAge();
+        this.assocSupplier = cursor.getAssocSupplier();
+        this.assocs = assocSupplier != null ? new Object[size] : null;
+    }
+
+    /**
+     * starts all bots on the scheduler of fleet, once;
+     */
+    public void start(AutomatonFleet<S> fleet) {
+        checkState(this.fleet == null, "started already");
+        this.fleet = checkNotNull(fleet);
+        for (int i = 0; i < size; i++) {
+            state[i] = initial;
+            fireTick[i] = 0;
+            if (assocs != null) {
+                assocs[i] = assocSupplier.get();
+            }
+        }
+        fleet.started(size);
+        startTime = shards.get(0).cursor.currentClock();
+        for (Shard s : shards) {
+            s.begin();
+        }
+        for (Shard s : shards) {
+            fleet.scheduler().submit(s, 0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * manual stop of all bots (at the next tick);
+     */
+    public void stopAll() {
+        for (Shard s : shards) {
+            s.stopAll = true;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Bot bot(int index) {
+        checkArgument(index >= 0 && index < size, "index?");
+        return new Bot(index);
+    }
+
+    /**
+     * handle of one bot;
+     */
+    public final class Bot {
+        private final int index;
+
+        private Bot(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return null if bot has stopped (or hasn't started yet);
+         */
+        public @Nullable S getState() {
+            final short o = state[index];
+            return o == STOPPED ? null : constants[o];
+        }
+
+        public boolean isStopped() {
+            return fleet != null && state[index] == STOPPED;
+        }
+
+        public @Nullable <T> T getAssoc() {
+            @SuppressWarnings("unchecked") final T assoc = assocs == null ? null : (T) assocs[index];
+            return assoc;
+        }
+
+        /**
+         * @return time left till the next step of bot;
+         */
+        public long getNextStepIn(TimeUnit unit) {
+            final long left = fireTick[index] * tick - (shards.get(0).cursor.currentClock() - startTime);
+            return unit.convert(Math.max(0, left), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * manual stop at the next tick;
+         */
+        public void stop() {
+            shards.get(index / perShard).stops.add(index);
+        }
+
+        @Override public String toString() {
+            return "Bot [index=" + index + ", state=" + getState() + "]";
+        }
+    }
+
+    /**
+     * bots [from, to), stepped by one task at a time;
+     */
+    private final class Shard implements Runnable {
+        final int from, to;
+        final A cursor;
+        final BotRandomizer random;
+        final int[] head = new int[WHEEL];
+        final ConcurrentLinkedQueue<Integer> stops = new ConcurrentLinkedQueue<>();
+        volatile boolean stopAll;
+        long lastTick;
+        int running;
+
+        Shard(int from, int to, A cursor, BotRandomizer random) {
+            this.from = from;
+            this.to = to;
+            this.cursor = cursor;
+            this.random = random;
+        }
+
+        void begin() {
+            Arrays.fill(head, -1);
+            for (int i = to - 1; i >= from; i--) {
+                link(i);
+            }
+            lastTick = -1;
+            running = to - from;
+        }
+
+        @Override public void run() {
+            final long now = cursor.currentClock() - startTime;
+            final long target = now / tick;
+            if (stopAll) {
+                for (int i = from; i < to && running > 0; i++) {
+                    if (state[i] != STOPPED) {
+                        stop(i, StopReason.MANUAL, null, lastTick);
+                    }
+                }
+            }
+            Integer s;
+            while ((s = stops.poll()) != null) {
+                if (state[s] != STOPPED) {
+                    stop(s, StopReason.MANUAL, null, lastTick);
+                }
+            }
+            for (long t = lastTick + 1; t <= target && running > 0; t++) {
+                runSlot(t);
+            }
+            lastTick = target;
+            if (running > 0) {
+                fleet.scheduler().submit(this, (target + 1) * tick - now, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void link(int i) {
+            final int slot = (int) (fireTick[i] & (WHEEL - 1));
+            next[i] = head[slot];
+            head[slot] = i;
+        }
+
+        private void runSlot(long t) {
+            final int slot = (int) (t & (WHEEL - 1));
+            int i = head[slot];
+            head[slot] = -1;
+            while (i >= 0) {
+                final int n = next[i];
+                if (state[i] != STOPPED) {
+                    if (fireTick[i] <= t) {
+                        step(i, t);
+                    } else {
+                        link(i); // next round of wheel;
+                    }
+                }
+                i = n;
+            }
+        }
+
+        private void step(int i, long t) {
+            final A c = cursor;
+            c.restoreState(constants[state[i]]);
+            if (assocs != null) {
+                c.setAssoc(assocs[i]);
+            }
+            random.index = i;
+            int steps = 0; // of this bot in this tick, see stepBudget/timeBudget of the cursor;
+            final long runStart = c.budgetStart();
+            try {
+                while (true) {
+                    if (maxAge != null && t * tick > maxAge) {
+                        stop(i, StopReason.AGE, null, t);
+                        return;
+                    }
+                    steps++;
+                    c.beforeStep();
+                    c.runStep();
+                    final S s = c.checkpointState();
+                    if (s == null) {
+                        stop(i, StopReason.NATURAL, null, t);
+                        return;
+                    }
+                    state[i] = (short) s.ordinal();
+                    final long delay = c.nextDelay();
+                    if (delay >= 0 || c.budgetSpent(steps, runStart)) {
+                        // budget is over: the join step is a zero-delay step;
+                        fireTick[i] = t + Math.max(1, (Math.max(0, delay) + tick - 1) / tick);
+                        link(i);
+                        return;
+                    }
+                    // join: the next step in the same tick;
+                }
+            } catch (Throwable error) {
+                stop(i, StopReason.ERROR, error, t);
+            }
+        }
+
+        private void stop(int i, StopReason reason, @Nullable Throwable error, long t) {
+            final S last = reason == StopReason.NATURAL ? null : constants[state[i]];
+            state[i] = STOPPED;
+            running--;
+            if (assocs != null) {
+                assocs[i] = null;
+            }
+            fleet.stopped(new BotStop<>(reason, error, last, Math.max(0, t) * tick));
+        }
+    }
+
+    /**
+     * splitmix64 over the seed of the current bot;
+     */
+    private static final class BotRandomizer extends AbstractRandomizer {
+        final long[] seeds;
+        int index;
+
+        BotRandomizer(long[] seeds) {
+            this.seeds = seeds;
+        }
+
+        @Override public double nextDouble() {
+            return (mix(seeds[index] += GOLDEN) >>> 11) * 0x1.0p-53;
+        }
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class BotStop<S> implements StopDescription<S> {
+        private final StopReason reason;
+        private final @Nullable Throwable error;
+        private final @Nullable S lastState;
+        private final long age;
+
+        BotStop(StopReason reason, @Nullable Throwable error, @Nullable S lastState, long age) {
+            this.reason = reason;
+            this.error = error;
+            this.lastState = lastState;
+            this.age = age;
+        }
+
+        @Override public StopReason getReason() {
+            return reason;
+        }
+
+        @Override public @Nullable Throwable getError() {
+            return error;
+        }
+
+        @Override public long getAge(TimeUnit unit) {
+            return unit.convert(age, TimeUnit.NANOSECONDS);
+        }
+
+        @Override public @Nullable S getLastState() {
+            return lastState;
+        }
+
+        @Override public String toString() {
+            return "BotStop [reason=" + reason + ", error=" + error + ", lastState=" + lastState + ", age=" + age
+                    + "]";
+        }
+    }
+}
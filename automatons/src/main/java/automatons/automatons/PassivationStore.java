@@ -0,0 +1,439 @@
+package automatons.automatons;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import automatons.automatons.Automaton.StopDescription;
+import automatons.automatons.Automaton.StopReason;
+import automatons.automatons.AutomatonCheckpoint.Codec;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.Cancellable;
+
+import com.google.common.base.Ticker;
+
+/**
+ * Passivation of fleet members: a member which schedules its next step
+ * further than threshold is written to an off-heap record (state, age,
+ * maxAge and user data by codec, see {@link AutomatonCheckpoint.Codec}) and
+ * dropped from the heap, only a small rehydration task stays in the
+ * scheduler; when the timer fires, codec creates the automaton again and it
+ * runs the step right away; <br>
+ * passivated automaton is a new object after rehydration, so members must
+ * not be referenced by user code (use the statistics of the fleet), the
+ * passivated ones are stopped by {@link #stopAll()}; <br>
+ * records are appended to direct buffer chunks, a chunk is reused when all
+ * its records are rehydrated; a member whose record can't be read back
+ * (codec failure) stops with ERROR; <br>
+ * chunks are kept in stripes (by automaton id), each stripe has its own
+ * lock, so members passivated and rehydrated by different threads rarely
+ * contend;
+ *
+ * @param <S>
+ *            state type of members
+ * @param <A>
+ *            automaton type of members
+ */
+public final class PassivationStore<S, A extends AutomatonEngine<S>> {
+    private static final Logger log = LoggerFactory.getLogger(PassivationStore.class);
+    private static final int CHUNK = 1 << 20;
+    private static final int TICKER = 4 + 1 + 8 + 1 + 8; // length, live, startTime, hasMaxAge, maxAge;
+    private static final int HEADER = TICKER + 4;
+    private static final int SAMPLE = 64; // every SAMPLE-th rehydration measures heap of automaton;
+    private static final int STRIPES = Math.min(64,
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    final long threshold; // nanos;
+    private final AutomatonFleet<S> fleet;
+    private final Codec<S, A> codec;
+    private final Stripe[] stripes;
+    private final List<Ticker> tickers = new CopyOnWriteArrayList<>(); // of members, records keep the index;
+    private final AtomicLong passivated = new AtomicLong(); // now;
+    private final AtomicLong passivatedTotal = new AtomicLong();
+    private final AtomicLong rehydratedTotal = new AtomicLong();
+    private final AtomicLong sampledBytes = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+
+    /**
+     * passivation of fleet members, one store per fleet;
+     *
+     * @param threshold
+     *            automatons waiting longer are passivated
+     */
+    public PassivationStore(AutomatonFleet<S> fleet, Codec<S, A> codec, long threshold, TimeUnit unit) {
+        checkArgument(threshold > 0, "threshold?");
+        this.fleet = checkNotNull(fleet);
+        this.codec = checkNotNull(codec);
+        this.threshold = unit.toNanos(threshold);
+        synchronized (fleet) {
+            checkState(fleet.passivation == null, "fleet has passivation store already");
+            fleet.passivation = this;
+        }
+        stripes = new PassivationStore.Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * chunks of one stripe, guarded by the stripe;
+     */
+    private final class Stripe {
+        final List<Chunk> chunks = new ArrayList<>(); // with live records and the current one;
+        final ArrayDeque<Chunk> free = new ArrayDeque<>();
+        @Nullable Chunk current; // allocated by the first passivation;
+
+        Chunk newChunk(int capacity) {
+            final Chunk c = capacity == CHUNK && !free.isEmpty() ? free.poll() : new Chunk(this,
+                    ByteBuffer.allocateDirect(capacity));
+            c.buf.clear();
+            c.tasks.clear();
+            c.generation++;
+            c.listed = true;
+            chunks.add(c);
+            return c;
+        }
+
+        /**
+         * chunk without live records goes to the pool (or to gc if it's
+         * bigger);
+         */
+        void release(Chunk c) {
+            if (c.listed && c.live == 0 && c != current) {
+                c.listed = false;
+                chunks.remove(c);
+                if (c.buf.capacity() == CHUNK) {
+                    free.push(c);
+                }
+            }
+        }
+    }
+
+    private final class Chunk {
+        final Stripe stripe;
+        final ByteBuffer buf;
+        final List<Passivated> tasks = new ArrayList<>(); // null once rehydrated or stopped;
+        int live;
+        int generation; // ++ on reuse, tasks of stopped records find another generation;
+        boolean listed;
+
+        Chunk(Stripe stripe, ByteBuffer buf) {
+            this.stripe = stripe;
+            this.buf = buf;
+        }
+    }
+
+    /**
+     * rehydration task, all that stays on heap;
+     */
+    private final class Passivated implements Runnable {
+        final Chunk chunk;
+        final int generation;
+        final int offset;
+        final int index; // in chunk.tasks;
+        volatile @Nullable Cancellable timer;
+
+        Passivated(Chunk chunk, int offset) {
+            this.chunk = chunk;
+            this.generation = chunk.generation;
+            this.offset = offset;
+            this.index = chunk.tasks.size();
+        }
+
+        @Override public void run() {
+            rehydrate(this);
+        }
+    }
+
+    /**
+     * @param sched
+     *            bound scheduler of automaton, the wake timer goes there (with
+     *            automaton's timer slack)
+     */
+    final void passivate(AutomatonEngine<S> automaton, AutomatonScheduler sched, long delay, long slack) {
+        final Passivated task;
+        final Stripe stripe = stripes[(int) automaton.getId() & (STRIPES - 1)];
+        final int ticker = tickerIndex(automaton.ticker());
+        synchronized (stripe) {
+            final int offset = append(stripe, automaton, ticker);
+            task = new Passivated(stripe.current, offset);
+            stripe.current.tasks.add(task);
+            stripe.current.live++;
+        }
+        passivated.incrementAndGet();
+        passivatedTotal.incrementAndGet();
+        task.timer = sched.submit(task, delay, TimeUnit.NANOSECONDS, slack);
+    }
+
+    /**
+     * tickers are only appended, so an index stays valid;
+     */
+    private int tickerIndex(Ticker ticker) {
+        for (int i = 0; i < tickers.size(); i++) {
+            if (tickers.get(i) == ticker) {
+                return i;
+            }
+        }
+        synchronized (tickers) {
+            for (int i = 0; i < tickers.size(); i++) {
+                if (tickers.get(i) == ticker) {
+                    return i;
+                }
+            }
+            tickers.add(ticker);
+            return tickers.size() - 1;
+        }
+    }
+
+    /**
+     * @return offset of the record in the current chunk of the stripe;
+     */
+    @SuppressWarnings("unchecked") private int append(Stripe stripe, AutomatonEngine<S> automaton, int ticker) {
+        if (stripe.current == null) {
+            stripe.current = stripe.newChunk(CHUNK);
+        }
+        while (true) {
+            final ByteBuffer buf = stripe.current.buf;
+            final int start = buf.position();
+            try {
+                final Long maxAge = automaton.maxAge();
+                buf.putInt(0); // length;
+                buf.put((byte) 1);
+                buf.putLong(automaton.startTime());
+                buf.put(maxAge != null ? (byte) 1 : 0);
+                buf.putLong(maxAge != null ? maxAge : 0);
+                buf.putInt(ticker);
+                codec.writeState(automaton.checkpointState(), buf);
+                codec.writeAssoc((A) automaton, buf);
+                buf.putInt(start, buf.position() - start - 4);
+                return start;
+            } catch (BufferOverflowException e) {
+                // record doesn't fit the rest of chunk (or an empty chunk);
+                buf.position(start);
+                final Chunk full = stripe.current;
+                stripe.current = stripe.newChunk(start == 0 ? buf.capacity() * 2 : CHUNK);
+                stripe.release(full);
+            }
+        }
+    }
+
+    private void rehydrate(Passivated task) {
+        final Chunk chunk = task.chunk;
+        final int offset = task.offset;
+        final ByteBuffer in;
+        final Ticker ticker;
+        final boolean sample;
+        synchronized (chunk.stripe) {
+            if (chunk.generation != task.generation || chunk.buf.get(offset + 4) == 0) {
+                return; // stopped by stopAll();
+            }
+            chunk.buf.put(offset + 4, (byte) 0);
+            chunk.tasks.set(task.index, null);
+            ticker = tickers.get(chunk.buf.getInt(offset + TICKER));
+            sample = (rehydratedTotal.get() & (SAMPLE - 1)) == 0;
+            in = chunk.buf.duplicate();
+        }
+        final Cancellable timer = task.timer;
+        if (timer != null) {
+            timer.cancel(); // early rehydration, nothing if the timer runs us;
+        }
+        A a = null;
+        S state = null;
+        long startTime = 0;
+        Long maxAge = null;
+        Throwable failure = null;
+        try {
+            in.position(offset + 5);
+            startTime = in.getLong();
+            final boolean hasMaxAge = in.get() != 0;
+            final long m = in.getLong();
+            maxAge = hasMaxAge ? Long.valueOf(m) : null;
+            in.position(offset + HEADER);
+            state = codec.readState(in);
+            final ThreadMXBean mx = sample ? ManagementFactory.getThreadMXBean() : null;
+            final long before = allocatedBytes(mx);
+            a = codec.create(in);
+            final long bytes = allocatedBytes(mx) - before;
+            if (bytes > 0) {
+                sampledBytes.addAndGet(bytes);
+                samples.incrementAndGet();
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        } finally {
+            synchronized (chunk.stripe) {
+                chunk.live--;
+                chunk.stripe.release(chunk);
+            }
+            passivated.decrementAndGet();
+            rehydratedTotal.incrementAndGet();
+        }
+        if (failure != null) {
+            log.error("passivated automaton can't be rehydrated", failure);
+            fleet.stopped(new PassivatedStop<>(StopReason.ERROR, failure, state, startTime, ticker));
+            return;
+        }
+        a.resume(fleet.scheduler(), fleet, state, 0, a.currentClock() - startTime, maxAge, false);
+    }
+
+    private static long allocatedBytes(@Nullable ThreadMXBean mx) {
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * stops passivated automatons (MANUAL), their wake timers are cancelled
+     * and their stops are reported to the fleet; active members are stopped
+     * by {@link AutomatonFleet#stopAll}, a member may be passivated in
+     * between, so call both until fleet.getRunning() is 0;
+     */
+    public void stopAll() {
+        final List<StopDescription<S>> stops = new ArrayList<>();
+        final List<Cancellable> timers = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stopAll(stripe, stops, timers);
+            }
+        }
+        for (Cancellable timer : timers) {
+            timer.cancel();
+        }
+        for (StopDescription<S> d : stops) {
+            fleet.stopped(d);
+        }
+    }
+
+    /**
+     * under the lock of the stripe;
+     */
+    private void stopAll(Stripe stripe, List<StopDescription<S>> stops, List<Cancellable> timers) {
+        for (Chunk c : stripe.chunks) {
+            final ByteBuffer in = c.buf.duplicate();
+            for (int i = 0; i < c.tasks.size(); i++) {
+                final Passivated task = c.tasks.get(i);
+                if (task == null || in.get(task.offset + 4) == 0) {
+                    continue;
+                }
+                c.tasks.set(i, null);
+                in.put(task.offset + 4, (byte) 0);
+                final Cancellable timer = task.timer;
+                if (timer != null) {
+                    timers.add(timer);
+                }
+                final long startTime = in.getLong(task.offset + 5);
+                final Ticker ticker = tickers.get(in.getInt(task.offset + TICKER));
+                in.position(task.offset + HEADER);
+                stops.add(new PassivatedStop<>(StopReason.MANUAL, null, codec.readState(in), startTime, ticker));
+                c.live--;
+                passivated.decrementAndGet();
+            }
+        }
+        for (Chunk c : new ArrayList<>(stripe.chunks)) {
+            stripe.release(c);
+        }
+    }
+
+    private static final class PassivatedStop<S> implements StopDescription<S> {
+        private final StopReason reason;
+        private final @Nullable Throwable error;
+        private final @Nullable S lastState;
+        private final long startTime;
+        private final long age;
+
+        PassivatedStop(StopReason reason, @Nullable Throwable error, @Nullable S lastState, long startTime,
+                Ticker ticker) {
+            this.reason = reason;
+            this.error = error;
+            this.lastState = lastState;
+            this.startTime = startTime;
+            this.age = ticker.read() - startTime; // ticker of the member;
+        }
+
+        @Override public StopReason getReason() {
+            return reason;
+        }
+
+        @Override public @Nullable Throwable getError() {
+            return error;
+        }
+
+        @Override public long getAge(TimeUnit unit) {
+            return unit.convert(age, TimeUnit.NANOSECONDS);
+        }
+
+        @Override public @Nullable S getLastState() {
+            return lastState;
+        }
+
+        @Override public String toString() {
+            return "PassivatedStop [reason=" + reason + ", lastState=" + lastState + ", startTime=" + startTime
+                    + "]";
+        }
+    }
+
+    /**
+     * @return automatons passivated now;
+     */
+    public long getPassivated() {
+        return passivated.get();
+    }
+
+    public long getPassivatedTotal() {
+        return passivatedTotal.get();
+    }
+
+    public long getRehydratedTotal() {
+        return rehydratedTotal.get();
+    }
+
+    /**
+     * @return direct memory of chunks in use;
+     */
+    public long getOffHeapBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Chunk c : stripe.chunks) {
+                    bytes += c.buf.capacity();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * approximate heap saved per passivated automaton: bytes allocated by
+     * codec.create() (sampled on rehydration, 0 until the first sample or if
+     * jvm can't measure it) minus the rehydration task and its slot in the
+     * chunk;
+     */
+    public long getHeapSavedPerAutomaton() {
+        final long n = samples.get();
+        return n == 0 ? 0 : Math.max(0, sampledBytes.get() / n - 40);
+    }
+
+    /**
+     * approximate heap saved by all automatons passivated now;
+     */
+    public long getHeapSaved() {
+        return getHeapSavedPerAutomaton() * passivated.get();
+    }
+}
@@ -0,0 +1,20 @@
+package automatons.automatons;
+
+import java.util.function.BiConsumer;
+
+/**
+ * callback of react steps on CompletionStage, wraps the react listener of
+ * automaton (one per listener); a class of its own, so that the engine still
+ * loads on java 7 unless stages are used;
+ */
+final class StageCallback implements BiConsumer<Object, Throwable> {
+    private final Runnable listener;
+
+    StageCallback(Runnable listener) {
+        this.listener = listener;
+    }
+
+    @Override public void accept(Object result, Throwable error) {
+        listener.run(); // result is read from the future by the engine;
+    }
+}
@@ -0,0 +1,225 @@
+package automatons.automatons.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import automatons.automatons.Automaton.StopDescription;
+import automatons.automatons.Automaton.StopReason;
+import automatons.automatons.AutomatonEngine;
+import automatons.automatons.AutomatonListener;
+import automatons.automatons.JumpAutomaton;
+import automatons.automatons.sched.AutomatonScheduler;
+
+/**
+ * Default {@link AutomatonListener}: step duration and react wait
+ * histograms per state, react timeouts per state, transition counters
+ * (state -> next state), jump counters of jump automatons, timer lag
+ * histograms per scheduler and stop counters; one instance is shared by any number of automatons (pass it to
+ * their builders); counters and histograms are striped, so automatons of
+ * different threads don't contend; <br>
+ * the end state (null) is the key {@link #END};
+ */
+public final class AutomatonMetrics implements AutomatonListener {
+    public static final Object END = new Object() {
+        @Override public String toString() {
+            return "END";
+        }
+    };
+
+    private final ConcurrentMap<Object, LogHistogram> steps = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object, LogHistogram> reactWaits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object, StripedCounter> reactTimeouts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AutomatonScheduler, LogHistogram> timerLags = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object, ConcurrentMap<Object, StripedCounter>> transitions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object, ConcurrentMap<Object, StripedCounter>> jumps = new ConcurrentHashMap<>();
+    private final StripedCounter[] stops = new StripedCounter[StopReason.values().length];
+
+    public AutomatonMetrics() {
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = new StripedCounter();
+        }
+    }
+
+    @Override public void onStep(AutomatonEngine<?> automaton, Object state, @Nullable Object nextState, long nanos) {
+        histogram(steps, state).record(nanos);
+        counter(transitions, state, nextState).increment();
+    }
+
+    @Override public void onReact(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+        histogram(reactWaits, state).record(waitNanos);
+    }
+
+    @Override public void onReactTimeout(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+        StripedCounter c = reactTimeouts.get(state);
+        if (c == null) {
+            final StripedCounter c1 = reactTimeouts.putIfAbsent(state, c = new StripedCounter());
+            if (c1 != null) {
+                c = c1;
+            }
+        }
+        c.increment();
+    }
+
+    @Override public void onTimer(AutomatonEngine<?> automaton, AutomatonScheduler sched, long lagNanos) {
+        histogram(timerLags, sched).record(lagNanos);
+    }
+
+    @Override public void onJump(JumpAutomaton<?> automaton, Object source, @Nullable Object target) {
+        counter(jumps, source, target).increment();
+    }
+
+    @Override public void onStop(AutomatonEngine<?> automaton, StopDescription<?> description) {
+        stops[description.getReason().ordinal()].increment();
+    }
+
+    private static <K> LogHistogram histogram(ConcurrentMap<K, LogHistogram> map, K key) {
+        LogHistogram h = map.get(key);
+        if (h == null) {
+            final LogHistogram h1 = map.putIfAbsent(key, h = new LogHistogram());
+            if (h1 != null) {
+                h = h1;
+            }
+        }
+        return h;
+    }
+
+    private static StripedCounter counter(ConcurrentMap<Object, ConcurrentMap<Object, StripedCounter>> map,
+            Object from, @Nullable Object to) {
+        ConcurrentMap<Object, StripedCounter> m = map.get(from);
+        if (m == null) {
+            final ConcurrentMap<Object, StripedCounter> m1 = map.putIfAbsent(from,
+                    m = new ConcurrentHashMap<Object, StripedCounter>());
+            if (m1 != null) {
+                m = m1;
+            }
+        }
+        final Object key = to == null ? END : to;
+        StripedCounter c = m.get(key);
+        if (c == null) {
+            final StripedCounter c1 = m.putIfAbsent(key, c = new StripedCounter());
+            if (c1 != null) {
+                c = c1;
+            }
+        }
+        return c;
+    }
+
+    private static Map<Object, Map<Object, Long>> snapshot(
+            ConcurrentMap<Object, ConcurrentMap<Object, StripedCounter>> map) {
+        final Map<Object, Map<Object, Long>> s = new HashMap<>();
+        for (Map.Entry<Object, ConcurrentMap<Object, StripedCounter>> e : map.entrySet()) {
+            final Map<Object, Long> to = new HashMap<>();
+            for (Map.Entry<Object, StripedCounter> c : e.getValue().entrySet()) {
+                to.put(c.getKey(), c.getValue().get());
+            }
+            s.put(e.getKey(), to);
+        }
+        return s;
+    }
+
+    private static long count(ConcurrentMap<Object, ConcurrentMap<Object, StripedCounter>> map, Object from,
+            @Nullable Object to) {
+        final ConcurrentMap<Object, StripedCounter> m = map.get(from);
+        final StripedCounter c = m == null ? null : m.get(to == null ? END : to);
+        return c == null ? 0 : c.get();
+    }
+
+    /**
+     * @return step durations by state (live view);
+     */
+    public Map<Object, LogHistogram> getStepDurations() {
+        return Collections.unmodifiableMap(steps);
+    }
+
+    public @Nullable LogHistogram getStepDuration(Object state) {
+        return steps.get(state);
+    }
+
+    /**
+     * @return react wait times by state of the react step (live view);
+     */
+    public Map<Object, LogHistogram> getReactWaits() {
+        return Collections.unmodifiableMap(reactWaits);
+    }
+
+    /**
+     * @return timed out react steps of state;
+     */
+    public long getReactTimeouts(Object state) {
+        final StripedCounter c = reactTimeouts.get(state);
+        return c == null ? 0 : c.get();
+    }
+
+    public long getReactTimeouts() {
+        long sum = 0;
+        for (StripedCounter c : reactTimeouts.values()) {
+            sum += c.get();
+        }
+        return sum;
+    }
+
+    /**
+     * @return timer lags (actual - requested fire time) by scheduler the
+     *         automatons are bound to (live view);
+     */
+    public Map<AutomatonScheduler, LogHistogram> getTimerLags() {
+        return Collections.unmodifiableMap(timerLags);
+    }
+
+    /**
+     * @return copy of state -> next state -> count;
+     */
+    public Map<Object, Map<Object, Long>> getTransitions() {
+        return snapshot(transitions);
+    }
+
+    public long getTransitions(Object from, @Nullable Object to) {
+        return count(transitions, from, to);
+    }
+
+    /**
+     * @return copy of jump source -> target -> count;
+     */
+    public Map<Object, Map<Object, Long>> getJumps() {
+        return snapshot(jumps);
+    }
+
+    public long getJumps(Object source, @Nullable Object target) {
+        return count(jumps, source, target);
+    }
+
+    public long getStops(StopReason reason) {
+        return stops[reason.ordinal()].get();
+    }
+
+    /**
+     * @return state with the most time spent in its steps, null if none;
+     */
+    public @Nullable Object getSlowestState() {
+        Object slowest = null;
+        long max = -1;
+        for (Map.Entry<Object, LogHistogram> e : steps.entrySet()) {
+            final long total = e.getValue().getTotal(TimeUnit.NANOSECONDS);
+            if (total > max) {
+                max = total;
+                slowest = e.getKey();
+            }
+        }
+        return slowest;
+    }
+
+    @Override public String toString() {
+        final StringBuilder sb = new StringBuilder("AutomatonMetrics [steps=").append(steps).append(", reactWaits=")
+                .append(reactWaits).append(", reactTimeouts=").append(reactTimeouts).append(", timerLags=").append(timerLags).append(", stops={");
+        for (StopReason r : StopReason.values()) {
+            sb.append(r).append('=').append(stops[r.ordinal()].get()).append(r.ordinal() + 1 < stops.length ? ", " : "");
+        }
+        return sb.append("}]").toString();
+    }
+}
@@ -0,0 +1,216 @@
+package automatons.automatons.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import automatons.automatons.Automaton.StopDescription;
+import automatons.automatons.Automaton.StopReason;
+import automatons.automatons.AutomatonEngine;
+import automatons.automatons.AutomatonListener;
+import automatons.automatons.JumpAutomaton;
+import automatons.automatons.sched.AutomatonScheduler;
+
+/**
+ * {@link AutomatonListener} which keeps the last transitions (automaton id
+ * and name, state, next state, delay, ticker time) of all its automatons in
+ * preallocated rings, one ring per stripe of threads; recording doesn't lock
+ * and doesn't allocate (boxed states of {@link automatons.automatons.IntAutomaton}
+ * above 127 do); <br>
+ * when an automaton stops with {@link StopReason#ERROR} its last transitions
+ * are logged; dump() reads the rings at any time, entries overwritten while
+ * read are skipped; <br>
+ * rings keep ids and names of automatons, not the automatons, see
+ * {@link AutomatonEngine#getId()};
+ */
+public final class FlightRecorder implements AutomatonListener {
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorder.class);
+
+    private static final int LONGS = 4; // stamp (index + 1, 0 while written), time, delay, automaton id;
+    private static final int REFS = 3; // automaton name, state, next state;
+
+    private final Ring[] rings = new Ring[Stripes.COUNT];
+    private final int mask;
+    private final int errorDump;
+
+    /**
+     * @param capacity
+     *            entries of all rings (at least), rounded up to power of 2
+     *            per ring
+     * @param errorDump
+     *            entries logged on error stop, 0 = don't log
+     */
+    public FlightRecorder(int capacity, int errorDump) {
+        checkArgument(capacity > 0 && errorDump >= 0, "capacity?");
+        final int size = Integer.highestOneBit(Math.max(1, (capacity + Stripes.COUNT - 1) / Stripes.COUNT) * 2 - 1);
+        this.mask = size - 1;
+        this.errorDump = errorDump;
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = new Ring(size);
+        }
+    }
+
+    private static final class Ring {
+        final AtomicLong cursor = new AtomicLong();
+        final AtomicLongArray longs;
+        final AtomicReferenceArray<Object> refs;
+
+        Ring(int size) {
+            longs = new AtomicLongArray(size * LONGS);
+            refs = new AtomicReferenceArray<>(size * REFS);
+        }
+    }
+
+    public static final class Entry {
+        public final long automatonId; // AutomatonEngine.getId();
+        public final @Nullable String name;
+        public final Object state;
+        public final @Nullable Object nextState;
+        public final long delay; // nanos, AutomatonEngine.JOIN_PSEUDO_DELAY or REACT_PSEUDO_DELAY;
+        public final long time; // ticker of automaton, nanos;
+
+        Entry(long automatonId, @Nullable String name, Object state, @Nullable Object nextState, long delay,
+                long time) {
+            this.automatonId = automatonId;
+            this.name = name;
+            this.state = state;
+            this.nextState = nextState;
+            this.delay = delay;
+            this.time = time;
+        }
+
+        @Override public String toString() {
+            return time + " " + name + "#" + automatonId + ": " + state + " -> "
+                    + (nextState == null ? "END" : nextState)
+                    + (delay == AutomatonEngine.JOIN_PSEUDO_DELAY ? " (join)"
+                            : delay == AutomatonEngine.REACT_PSEUDO_DELAY ? " (react)" : " in "
+                                    + TimeUnit.NANOSECONDS.toMicros(delay) + "us");
+        }
+    }
+
+    private static final Comparator<Entry> byTime = new Comparator<Entry>() {
+        @Override public int compare(Entry o1, Entry o2) {
+            return Long.compare(o1.time, o2.time);
+        }
+    };
+
+    @Override public void onStep(AutomatonEngine<?> automaton, Object state, @Nullable Object nextState, long nanos) {
+        final Ring ring = rings[Stripes.current()];
+        final long index = ring.cursor.getAndIncrement();
+        final int slot = (int) index & mask;
+        ring.longs.set(slot * LONGS, 0); // readers skip the slot until stamp is back;
+        ring.refs.lazySet(slot * REFS, automaton.getName());
+        ring.refs.lazySet(slot * REFS + 1, state);
+        ring.refs.lazySet(slot * REFS + 2, nextState);
+        ring.longs.lazySet(slot * LONGS + 1, automaton.currentClock());
+        ring.longs.lazySet(slot * LONGS + 2, automaton.getLastDelay());
+        ring.longs.lazySet(slot * LONGS + 3, automaton.getId());
+        ring.longs.lazySet(slot * LONGS, index + 1);
+    }
+
+    @Override public void onReact(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+    }
+
+    @Override public void onReactTimeout(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+    }
+
+    @Override public void onTimer(AutomatonEngine<?> automaton, AutomatonScheduler sched, long lagNanos) {
+    }
+
+    @Override public void onJump(JumpAutomaton<?> automaton, Object source, @Nullable Object target) {
+    }
+
+    @Override public void onStop(AutomatonEngine<?> automaton, StopDescription<?> description) {
+        if (errorDump > 0 && description.getReason() == StopReason.ERROR) {
+            final StringBuilder sb = new StringBuilder();
+            for (Entry e : dump(automaton.getId(), errorDump)) {
+                sb.append("\n  ").append(e);
+            }
+            log.error("automaton {} stopped with error {}, last transitions:{}", automaton.getName(),
+                    description.getError(), sb);
+        }
+    }
+
+    private @Nullable Entry read(Ring ring, long index) {
+        final int slot = (int) index & mask;
+        if (ring.longs.get(slot * LONGS) != index + 1) {
+            return null;
+        }
+        final Entry e = new Entry(ring.longs.get(slot * LONGS + 3), (String) ring.refs.get(slot * REFS),
+                ring.refs.get(slot * REFS + 1), ring.refs.get(slot * REFS + 2), ring.longs.get(slot * LONGS + 2),
+                ring.longs.get(slot * LONGS + 1));
+        return ring.longs.get(slot * LONGS) == index + 1 ? e : null;
+    }
+
+    /**
+     * @param automatonId
+     *            0 = all automatons
+     * @return the last n (at most) transitions, oldest first;
+     */
+    private List<Entry> collect(long automatonId, int n) {
+        final List<Entry> entries = new ArrayList<>();
+        for (Ring ring : rings) {
+            final long end = ring.cursor.get();
+            int found = 0;
+            for (long i = end - 1; i >= Math.max(0, end - mask - 1) && found < n; i--) {
+                final Entry e = read(ring, i);
+                if (e != null && (automatonId == 0 || e.automatonId == automatonId)) {
+                    entries.add(e);
+                    found++;
+                }
+            }
+        }
+        Collections.sort(entries, byTime);
+        return entries.size() > n ? new ArrayList<>(entries.subList(entries.size() - n, entries.size())) : entries;
+    }
+
+    /**
+     * @return the last n (at most) transitions of all automatons, oldest
+     *         first;
+     */
+    public List<Entry> dump(int n) {
+        return collect(0, n);
+    }
+
+    /**
+     * @return the last n (at most) transitions of the automaton, oldest
+     *         first;
+     */
+    public List<Entry> dump(AutomatonEngine<?> automaton, int n) {
+        return collect(automaton.getId(), n);
+    }
+
+    /**
+     * @param automatonId
+     *            see {@link AutomatonEngine#getId()}
+     * @return the last n (at most) transitions of the automaton, oldest
+     *         first;
+     */
+    public List<Entry> dump(long automatonId, int n) {
+        checkArgument(automatonId > 0, "automatonId?");
+        return collect(automatonId, n);
+    }
+
+    /**
+     * @return transitions recorded since creation (including overwritten);
+     */
+    public long getRecorded() {
+        long sum = 0;
+        for (Ring ring : rings) {
+            sum += ring.cursor.get();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,84 @@
+package automatons.automatons.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * striped histogram of nanos with log2 buckets: bucket i counts values in
+ * [2^i, 2^(i+1)), bucket 0 also counts 0 and negative values; percentiles
+ * are upper bounds of buckets (within x2 of the real value);
+ */
+public final class LogHistogram {
+    public static final int BUCKETS = 64;
+
+    private final AtomicLongArray counts = new AtomicLongArray(Stripes.COUNT * BUCKETS);
+    private final AtomicLongArray sums = new AtomicLongArray(Stripes.COUNT * Stripes.PAD);
+
+    public void record(long nanos) {
+        final int stripe = Stripes.current();
+        counts.incrementAndGet(stripe * BUCKETS + (nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos)));
+        if (nanos > 0) {
+            sums.addAndGet(stripe * Stripes.PAD, nanos);
+        }
+    }
+
+    /**
+     * @return counts by bucket;
+     */
+    public long[] snapshot() {
+        final long[] h = new long[BUCKETS];
+        for (int i = 0; i < counts.length(); i++) {
+            h[i & (BUCKETS - 1)] += counts.get(i);
+        }
+        return h;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (long c : snapshot()) {
+            count += c;
+        }
+        return count;
+    }
+
+    public long getTotal(TimeUnit unit) {
+        long sum = 0;
+        for (int i = 0; i < Stripes.COUNT; i++) {
+            sum += sums.get(i * Stripes.PAD);
+        }
+        return unit.convert(sum, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMean(TimeUnit unit) {
+        final long count = getCount();
+        return count == 0 ? 0 : getTotal(unit) / count;
+    }
+
+    /**
+     * @param p
+     *            0..1
+     * @return 0 if histogram is empty;
+     */
+    public long getPercentile(double p, TimeUnit unit) {
+        final long[] h = snapshot();
+        long total = 0;
+        for (long c : h) {
+            total += c;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        for (int i = 0; i < h.length; i++) {
+            seen += h[i];
+            if (seen >= rank) {
+                return unit.convert(i == 63 ? Long.MAX_VALUE : (2L << i) - 1, TimeUnit.NANOSECONDS);
+            }
+        }
+        return 0;
+    }
+
+    @Override public String toString() {
+        return "LogHistogram [count=" + getCount() + ", mean=" + getMean(TimeUnit.MICROSECONDS) + "us, p50="
+                + getPercentile(0.5, TimeUnit.MICROSECONDS) + "us, p99=" + getPercentile(0.99, TimeUnit.MICROSECONDS)
+                + "us]";
+    }
+}
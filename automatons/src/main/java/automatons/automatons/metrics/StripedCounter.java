@@ -0,0 +1,31 @@
+package automatons.automatons.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * counter for many writer threads: every thread adds to its own stripe, get()
+ * sums the stripes (approximate while counter is updated);
+ */
+public final class StripedCounter {
+    private final AtomicLongArray cells = new AtomicLongArray(Stripes.COUNT * Stripes.PAD);
+
+    public void increment() {
+        cells.incrementAndGet(Stripes.current() * Stripes.PAD);
+    }
+
+    public void add(long delta) {
+        cells.addAndGet(Stripes.current() * Stripes.PAD, delta);
+    }
+
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < Stripes.COUNT; i++) {
+            sum += cells.get(i * Stripes.PAD);
+        }
+        return sum;
+    }
+
+    @Override public String toString() {
+        return Long.toString(get());
+    }
+}
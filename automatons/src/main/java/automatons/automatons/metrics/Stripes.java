@@ -0,0 +1,18 @@
+package automatons.automatons.metrics;
+
+/**
+ * stripe of the current thread: threads update different stripes (cache
+ * lines) of striped counters/histograms, readers sum the stripes;
+ */
+final class Stripes {
+    static final int COUNT = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+    static final int PAD = 8; // longs per stripe of a counter (64 bytes);
+
+    private Stripes() {
+    }
+
+    static int current() {
+        final long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) & (COUNT - 1);
+    }
+}
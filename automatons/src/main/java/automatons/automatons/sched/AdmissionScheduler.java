@@ -0,0 +1,373 @@
+package automatons.automatons.sched;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import automatons.automatons.Automaton;
+import automatons.automatons.Automaton.StopDescription;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Admission control on top of any scheduler; <br>
+ *
+ * 1. at most maxActive automatons started through {@link #start(Automaton)}
+ * run at once (started and not yet stopped), the rest wait in the admission
+ * queue and are started (on the delegate's executor) as running ones stop; <br>
+ * 2. while maxInFlightReacts react steps wait for their futures, new steps
+ * are not dispatched, they wait in the deferred queue until some react
+ * wait ends (react callbacks and deadlines themselves are never held); <br>
+ * So a large wave of bots costs one queue entry per bot instead of flooding
+ * executors' queues with first steps; see getXXX() gauges;
+ */
+public class AdmissionScheduler extends AutomatonScheduler {
+    private static final Logger log = LoggerFactory.getLogger(AdmissionScheduler.class);
+
+    private final AutomatonScheduler delegate;
+    private final Shared shared;
+
+    /**
+     * counters and queues shared by the scheduler and its bound views;
+     */
+    private static final class Shared {
+        final int maxActive;
+        final int maxInFlightReacts;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicInteger inFlightReacts = new AtomicInteger();
+        final AtomicInteger deferred = new AtomicInteger();
+        final Queue<PendingStart<?>> startQueue = new ConcurrentLinkedQueue<>();
+        final Queue<DeferredStep> deferredQueue = new ConcurrentLinkedQueue<>();
+        // one view per bound scheduler of the delegate (loop, lane), so
+        // automatons of one loop share their view;
+        final ConcurrentMap<AutomatonScheduler, AdmissionScheduler> views = new ConcurrentHashMap<>();
+
+        Shared(int maxActive, int maxInFlightReacts) {
+            this.maxActive = maxActive;
+            this.maxInFlightReacts = maxInFlightReacts;
+        }
+    }
+
+    private static final class PendingStart<S> {
+        final Automaton<S> automaton;
+        final SettableFuture<StopDescription<S>> stopFuture = SettableFuture.create();
+
+        PendingStart(Automaton<S> automaton) {
+            this.automaton = automaton;
+        }
+    }
+
+    private static final int PENDING = 0, DISPATCHED = 1, CANCELLED = 2;
+
+    /**
+     * step in the deferred queue: PENDING -> DISPATCHED (submitted to the
+     * delegate, cancel() is forwarded to its handle) or PENDING -> CANCELLED;
+     */
+    private static final class DeferredStep implements Cancellable {
+        private static final AtomicIntegerFieldUpdater<DeferredStep> STATE = AtomicIntegerFieldUpdater.newUpdater(
+                DeferredStep.class, "state");
+
+        final AutomatonScheduler sched;
+        final Shared shared;
+        final Runnable runnable;
+        final long deadline; // System.nanoTime();
+        final long slackNanos;
+        volatile int state;
+        volatile @Nullable Cancellable handle; // of the delegate, once dispatched;
+        volatile boolean cancelRequested; // after dispatch, before the handle is known;
+
+        DeferredStep(AutomatonScheduler sched, Shared shared, Runnable runnable, long delay, TimeUnit unit,
+                long slackNanos) {
+            this.sched = sched;
+            this.shared = shared;
+            this.runnable = runnable;
+            this.deadline = System.nanoTime() + unit.toNanos(delay);
+            this.slackNanos = slackNanos;
+        }
+
+        /**
+         * submits the step to the delegate with the rest of its delay;
+         *
+         * @return false if the step was cancelled;
+         */
+        boolean dispatch() {
+            if (!STATE.compareAndSet(this, PENDING, DISPATCHED)) {
+                return false;
+            }
+            final Cancellable h = sched.submit(runnable, Math.max(0, deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS, slackNanos);
+            handle = h;
+            if (cancelRequested) {
+                h.cancel();
+            }
+            return true;
+        }
+
+        @Override public boolean cancel() {
+            if (STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                shared.deferred.decrementAndGet(); // the entry is dropped by the next dispatch;
+                return true;
+            }
+            if (state == CANCELLED) {
+                return false;
+            }
+            cancelRequested = true;
+            final Cancellable h = handle;
+            // no handle yet: dispatch() cancels it right after the submit;
+            return h == null || h.cancel();
+        }
+    }
+
+    /**
+     * @param maxActive
+     *            max automatons running at once, Integer.MAX_VALUE = unbounded
+     * @param maxInFlightReacts
+     *            max react steps waiting for their futures,
+     *            Integer.MAX_VALUE = unbounded
+     */
+    public AdmissionScheduler(AutomatonScheduler delegate, int maxActive, int maxInFlightReacts) {
+        checkArgument(maxActive > 0 && maxInFlightReacts > 0);
+        this.delegate = checkNotNull(delegate);
+        this.shared = new Shared(maxActive, maxInFlightReacts);
+    }
+
+    private AdmissionScheduler(AutomatonScheduler delegate, Shared shared) {
+        this.delegate = delegate;
+        this.shared = shared;
+    }
+
+    /**
+     * starts automaton on this scheduler if it's admitted right now,
+     * otherwise automaton waits in the admission queue; returned future is
+     * completed when automaton stops, cancel it to drop a queued automaton;
+     */
+    public <S> ListenableFuture<? extends StopDescription<S>> start(Automaton<S> automaton) {
+        checkNotNull(automaton);
+        if (tryAcquire()) {
+            return startAdmitted(automaton);
+        }
+        final PendingStart<S> pending = new PendingStart<>(automaton);
+        shared.queued.incrementAndGet();
+        shared.startQueue.add(pending);
+        admitQueued(); // permit could be released while we were queueing;
+        return pending.stopFuture;
+    }
+
+    /**
+     * @return null if automaton isn't admitted right now (nothing is queued);
+     */
+    public @Nullable <S> ListenableFuture<? extends StopDescription<S>> tryStart(Automaton<S> automaton) {
+        checkNotNull(automaton);
+        return tryAcquire() ? startAdmitted(automaton) : null;
+    }
+
+    @Override public AutomatonScheduler bind() {
+        return view(delegate.bind());
+    }
+
+    @Override public AutomatonScheduler bind(int priority) {
+        return view(delegate.bind(priority));
+    }
+
+    private AdmissionScheduler view(AutomatonScheduler bound) {
+        if (bound == delegate) {
+            return this;
+        }
+        final AdmissionScheduler view = shared.views.get(bound);
+        if (view != null) {
+            return view;
+        }
+        final AdmissionScheduler created = new AdmissionScheduler(bound, shared);
+        final AdmissionScheduler raced = shared.views.putIfAbsent(bound, created);
+        return raced != null ? raced : created;
+    }
+
+    @Override public boolean inScheduler() {
+        return delegate.inScheduler();
+    }
+
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit) {
+        return submit(runnable, delay, unit, 0);
+    }
+
+    /**
+     * deferred step keeps its deadline: once dispatched it waits only for the
+     * rest of its delay; cancel() drops a deferred step, a dispatched one is
+     * cancelled in the delegate;
+     */
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit, long slackNanos) {
+        if (shared.inFlightReacts.get() < shared.maxInFlightReacts) {
+            return delegate.submit(runnable, delay, unit, slackNanos);
+        }
+        final DeferredStep step = new DeferredStep(delegate, shared, runnable, delay, unit, slackNanos);
+        shared.deferred.incrementAndGet();
+        shared.deferredQueue.add(step);
+        dispatchDeferred(); // react could complete while we were deferring;
+        return step;
+    }
+
+    @Override public @Nullable Executor futuresExecutor() {
+        return delegate.futuresExecutor();
+    }
+
+    @Override public void addListener(ListenableFuture<?> future, Runnable listener) {
+        delegate.addListener(future, listener);
+    }
+
+    @Override public void addListener(CompletionStage<?> stage, BiConsumer<Object, Throwable> callback) {
+        delegate.addListener(stage, callback);
+    }
+
+    /**
+     * one in-flight react per parked react step (however many futures it
+     * waits for), released when the wait ends, even if the future never
+     * completes (deadline, stop);
+     */
+    @Override public void reactParked() {
+        shared.inFlightReacts.incrementAndGet();
+    }
+
+    @Override public void reactResumed() {
+        shared.inFlightReacts.decrementAndGet();
+        dispatchDeferred();
+    }
+
+    /**
+     * deadlines are never deferred, they end react waits;
+     */
+    @Override public Cancellable submitReactTimer(Runnable runnable, long delay, TimeUnit unit, long slackNanos) {
+        return delegate.submitReactTimer(runnable, delay, unit, slackNanos);
+    }
+
+    @Override public @Nullable TimerCounters timerCounters() {
+        return delegate.timerCounters();
+    }
+
+    /**
+     * automatons which are running now (admitted and not stopped);
+     */
+    public final int getActive() {
+        return shared.active.get();
+    }
+
+    /**
+     * automatons waiting for admission;
+     */
+    public final int getQueuedStarts() {
+        return shared.queued.get();
+    }
+
+    public final int getInFlightReacts() {
+        return shared.inFlightReacts.get();
+    }
+
+    /**
+     * steps held back because of too many in-flight react steps;
+     */
+    public final int getDeferredSteps() {
+        return shared.deferred.get();
+    }
+
+    private boolean tryAcquire() {
+        int active;
+        do {
+            active = shared.active.get();
+            if (active >= shared.maxActive) {
+                return false;
+            }
+        } while (!shared.active.compareAndSet(active, active + 1));
+        return true;
+    }
+
+    private void release() {
+        shared.active.decrementAndGet();
+        admitQueued();
+    }
+
+    private <S> ListenableFuture<? extends StopDescription<S>> startAdmitted(Automaton<S> automaton) {
+        final ListenableFuture<? extends StopDescription<S>> stopFuture;
+        try {
+            stopFuture = automaton.start(this);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        stopFuture.addListener(new Runnable() {
+            @Override public void run() {
+                release();
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return stopFuture;
+    }
+
+    private void admitQueued() {
+        while (!shared.startQueue.isEmpty() && tryAcquire()) {
+            final PendingStart<?> pending = shared.startQueue.poll();
+            if (pending == null) {
+                shared.active.decrementAndGet();
+                continue;
+            }
+            shared.queued.decrementAndGet();
+            if (pending.stopFuture.isCancelled()) {
+                shared.active.decrementAndGet();
+                continue;
+            }
+            // never start in the thread of a stopping automaton: stop -> start
+            // chains would grow the stack;
+            delegate.submit(new Runnable() {
+                @Override public void run() {
+                    startQueued(pending);
+                }
+            }, 0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <S> void startQueued(final PendingStart<S> pending) {
+        try {
+            Futures.addCallback(startAdmitted(pending.automaton), new FutureCallback<StopDescription<S>>() {
+                @Override public void onSuccess(StopDescription<S> result) {
+                    pending.stopFuture.set(result);
+                }
+
+                @Override public void onFailure(Throwable t) {
+                    pending.stopFuture.setException(t);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("admitted automaton failed to start", e);
+            pending.stopFuture.setException(e);
+        }
+    }
+
+    private void dispatchDeferred() {
+        while (shared.inFlightReacts.get() < shared.maxInFlightReacts) {
+            final DeferredStep step = shared.deferredQueue.poll();
+            if (step == null) {
+                return;
+            }
+            if (step.dispatch()) {
+                shared.deferred.decrementAndGet(); // cancel() counts cancelled ones;
+            }
+        }
+    }
+}
@@ -1,52 +1,145 @@
 package automatons.automatons.sched;
 
-import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkNotNull;
-
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import javax.annotation.Nullable;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 
 /**
  * @author denis.lepekhin@gmail.com
  */
 public abstract class AutomatonScheduler {
+    // sameThreadExecutor() allocates per call and locks per task;
+    static final Executor DIRECT = new Executor() {
+        @Override public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * automaton priorities, see {@link #bind(int)}; lower value is more
+     * urgent, schedulers without priorities ignore them;
+     */
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
     /**
      * delay == 0 => immediate;
      * 
      * @param delay
      *            units of delay - are scheduler-dependent (though usually
      *            milliseconds)
+     * @return handle which cancels the pending step (zero-delay steps are
+     *         usually not cancellable: {@link Cancellable#NONE})
      */
-    public abstract void submit(final Runnable runnable, final long delay, TimeUnit unit);
+    public abstract Cancellable submit(final Runnable runnable, final long delay, TimeUnit unit);
     
     
     public abstract @Nullable Executor futuresExecutor();
     
+    /**
+     * registers the listener of a react step on its future; listener runs
+     * through futuresExecutor() (or in the completing thread if there is
+     * none); listener is the same object for all react steps of an automaton,
+     * overrides must not allocate per call unless they have to;
+     */
+    public void addListener(ListenableFuture<?> future, Runnable listener) {
+        final Executor exec = futuresExecutor();
+        future.addListener(listener, exec != null ? exec : DIRECT);
+    }
+
+    /**
+     * same as {@link #addListener(ListenableFuture, Runnable)} for react
+     * steps on CompletionStage (java 8+): callback runs through
+     * futuresExecutor() (whenCompleteAsync()) or in the completing thread
+     * (whenComplete());
+     */
+    public void addListener(CompletionStage<?> stage, BiConsumer<Object, Throwable> callback) {
+        final Executor exec = futuresExecutor();
+        if (exec != null) {
+            stage.whenCompleteAsync(callback, exec);
+        } else {
+            stage.whenComplete(callback);
+        }
+    }
+
+    /**
+     * a react step of an automaton bound to this scheduler starts waiting
+     * (once per react park, before its listeners are registered);
+     * reactResumed() ends the wait: future done, deadline fired, automaton
+     * stopped or suspended (once, by whoever ends it); by default nothing,
+     * see {@link AdmissionScheduler};
+     */
+    public void reactParked() {
+    }
+
+    public void reactResumed() {
+    }
+
+    /**
+     * deadline timer of a react step, by default
+     * {@link #submit(Runnable, long, TimeUnit, long)}; schedulers which hold
+     * steps back must not hold it, it ends a react wait;
+     */
+    public Cancellable submitReactTimer(Runnable runnable, long delay, TimeUnit unit, long slackNanos) {
+        return submit(runnable, delay, unit, slackNanos);
+    }
+
+    /**
+     * same as {@link #submit(Runnable, long, TimeUnit)}, but the step may run
+     * up to slackNanos later than requested, so that timers with overlapping
+     * windows fire as one batch (one wakeup); by default slack is ignored;
+     */
+    public Cancellable submit(final Runnable runnable, final long delay, TimeUnit unit, long slackNanos) {
+        return submit(runnable, delay, unit);
+    }
+
+    /**
+     * @return null if scheduler doesn't coalesce timers;
+     */
+    public @Nullable TimerCounters timerCounters() {
+        return null;
+    }
+
+    /**
+     * called once per automaton start(); all the steps, timers and future
+     * callbacks of that automaton go through the returned scheduler;
+     * schedulers with thread affinity return a scheduler pinned to one thread
+     * (automaton's home);
+     */
+    public AutomatonScheduler bind() {
+        return this;
+    }
+
+    /**
+     * same as {@link #bind()}, but the automaton asks for a priority class
+     * (PRIORITY_XXX or any value >= 0), see {@link PriorityLaneScheduler};
+     */
+    public AutomatonScheduler bind(int priority) {
+        return bind();
+    }
+
+    /**
+     * @return false if current thread must not run steps of automatons bound
+     *         to this scheduler (first step is submitted instead of being run
+     *         by the caller of start());
+     */
+    public boolean inScheduler() {
+        return true;
+    }
     
     
     
     public static AutomatonScheduler make(final Executor instantExec, @Nullable final Executor futuresExec,
     		@Nullable final ScheduledExecutorService sched) {
-    	
-    	return new AutomatonScheduler() {
-			@Override public void submit(Runnable runnable, long delay, TimeUnit unit) {
-				if (delay == 0) {
-					instantExec.execute(runnable);
-				} else {
-					checkArgument(delay > 0);
-					checkNotNull(sched, "sched?").schedule(runnable, delay, unit);
-				}
-				
-			}
-			@Override public @Nullable Executor futuresExecutor() {
-				return futuresExec;
-			}
-		};
-    	
+    	return new ExecutorScheduler(instantExec, futuresExec, sched);
     }
     
     
@@ -55,4 +148,51 @@ public abstract class AutomatonScheduler {
                 : null;
         return make(exec, exec, sched);
     }
+
+    /**
+     * each automaton is pinned to one of the single threaded loops, see
+     * {@link EventLoopScheduler};
+     */
+    public static EventLoopScheduler eventLoops(int loops) {
+        return new EventLoopScheduler(loops);
+    }
+
+    /**
+     * zero-delay steps are forked to the local deques of ForkJoin workers,
+     * see {@link ForkJoinScheduler};
+     */
+    public static ForkJoinScheduler forkJoin(int parallelism) {
+        return new ForkJoinScheduler(parallelism);
+    }
+
+    /**
+     * steps run on virtual threads and may block, see
+     * {@link VirtualThreadScheduler};
+     */
+    public static VirtualThreadScheduler virtualThreads() {
+        return new VirtualThreadScheduler();
+    }
+
+    /**
+     * virtual time scheduler for simulations and tests, see
+     * {@link SimulatedScheduler};
+     */
+    public static SimulatedScheduler simulated() {
+        return new SimulatedScheduler();
+    }
+
+    /**
+     * ready steps wait in per priority lanes, see {@link PriorityLaneScheduler};
+     */
+    public static PriorityLaneScheduler priorityLanes(int threads, PriorityLaneScheduler.Dispatch dispatch,
+            int... weights) {
+        return new PriorityLaneScheduler(threads, dispatch, weights);
+    }
+
+    /**
+     * delayed steps are kept in a timing wheel, see {@link HashedWheelScheduler};
+     */
+    public static HashedWheelScheduler timingWheel(final Executor exec, long tick, TimeUnit unit) {
+        return new HashedWheelScheduler(exec, exec, tick, unit);
+    }
 }
@@ -0,0 +1,24 @@
+package automatons.automatons.sched;
+
+/**
+ * handle of a submitted step, see
+ * {@link AutomatonScheduler#submit(Runnable, long, java.util.concurrent.TimeUnit)}
+ */
+public interface Cancellable {
+
+    /**
+     * for steps which can't be cancelled (i.e. zero-delay ones);
+     */
+    Cancellable NONE = new Cancellable() {
+        @Override public boolean cancel() {
+            return false;
+        }
+    };
+
+    /**
+     * cancels pending step and releases its runnable;
+     * 
+     * @return false if step has already run (or is running) or was cancelled
+     */
+    boolean cancel();
+}
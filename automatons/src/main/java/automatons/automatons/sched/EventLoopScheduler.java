@@ -0,0 +1,210 @@
+package automatons.automatons.sched;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * N single threaded loops, each automaton is pinned to one loop (its home) at
+ * start(), see {@link #bind()}; <br>
+ *
+ * All the steps of a bound automaton: timers, zero-delay continuations and
+ * future callbacks run on its home loop, so automaton fields never migrate
+ * between cores and steps need no synchronization at all; every loop owns its
+ * own {@link TimerWheel}, so loops share nothing but their inboxes; <br>
+ * Note, that a blocking step blocks every automaton of its loop;
+ */
+public class EventLoopScheduler extends AutomatonScheduler {
+    private static final Logger log = LoggerFactory.getLogger(EventLoopScheduler.class);
+    private static final int BATCH = 1024; // tasks per loop iteration, between timer checks;
+
+    private final Loop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final long tickNanos;
+    private final long startNanos;
+    private final ThreadLocal<Loop> currentLoop = new ThreadLocal<>();
+    private volatile boolean running = true;
+
+    public EventLoopScheduler(int loops) {
+        this(loops, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param tick
+     *            timer wheel tick of each loop
+     */
+    public EventLoopScheduler(int loops, long tick, TimeUnit unit) {
+        checkArgument(loops > 0, "loops > 0");
+        this.tickNanos = unit.toNanos(tick);
+        checkArgument(tickNanos > 0, "tick is too small");
+        this.startNanos = System.nanoTime();
+        this.loops = new Loop[loops];
+        for (int i = 0; i < loops; i++) {
+            this.loops[i] = new Loop(i);
+        }
+        for (Loop loop : this.loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * round robin choice of automaton's home loop;
+     */
+    @Override public AutomatonScheduler bind() {
+        return loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+    }
+
+    /**
+     * unbound submit: current loop if called from a loop, otherwise any;
+     */
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit) {
+        return loop().submit(runnable, delay, unit);
+    }
+
+    @Override public Executor futuresExecutor() {
+        return loop();
+    }
+
+    @Override public boolean inScheduler() {
+        return currentLoop.get() != null;
+    }
+
+    public final int loopsCount() {
+        return loops.length;
+    }
+
+    /**
+     * stops all loops, pending tasks and timers are dropped;
+     */
+    public void shutdown() {
+        running = false;
+        for (Loop loop : loops) {
+            LockSupport.unpark(loop.thread);
+        }
+    }
+
+    private Loop loop() {
+        final Loop loop = currentLoop.get();
+        return loop != null ? loop : (Loop) bind();
+    }
+
+    private final class Loop extends AutomatonScheduler implements Executor, Runnable {
+        final Thread thread;
+        private final Queue<Runnable> local = new ArrayDeque<>(); // loop thread only;
+        private final Queue<Runnable> inbox = new ConcurrentLinkedQueue<>();
+        private final AtomicReference<TimerWheel.Timeout> timersInbox = new AtomicReference<>();
+        private final TimerWheel wheel = new TimerWheel(HashedWheelScheduler.DEFAULT_WHEEL_BITS,
+                HashedWheelScheduler.DEFAULT_LEVELS, 0);
+        private volatile boolean sleeping;
+
+        Loop(int index) {
+            thread = new Thread(this, "automaton-loop-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit) {
+            if (delay == 0) {
+                execute(runnable);
+                return Cancellable.NONE;
+            }
+            checkArgument(delay > 0);
+            final long deadline = System.nanoTime() - startNanos + unit.toNanos(delay);
+            final TimerWheel.Timeout t = new TimerWheel.Timeout(wheel, checkNotNull(runnable),
+                    (deadline + tickNanos - 1) / tickNanos);
+            if (Thread.currentThread() == thread) {
+                wheel.schedule(t);
+                return t;
+            }
+            TimerWheel.Timeout head;
+            do {
+                head = timersInbox.get();
+                t.next = head;
+            } while (!timersInbox.compareAndSet(head, t));
+            wakeup();
+            return t;
+        }
+
+        @Override public void execute(Runnable task) {
+            if (Thread.currentThread() == thread) {
+                local.add(task);
+            } else {
+                inbox.add(checkNotNull(task));
+                wakeup();
+            }
+        }
+
+        @Override public @Nullable Executor futuresExecutor() {
+            return this;
+        }
+
+        @Override public boolean inScheduler() {
+            return Thread.currentThread() == thread;
+        }
+
+        private void wakeup() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override public void run() {
+            currentLoop.set(this);
+            final Executor sink = new Executor() {
+                @Override public void execute(Runnable task) {
+                    local.add(task);
+                }
+            };
+            while (running) {
+                TimerWheel.Timeout t = timersInbox.getAndSet(null);
+                while (t != null) {
+                    final TimerWheel.Timeout next = t.next;
+                    t.next = null;
+                    wheel.schedule(t);
+                    t = next;
+                }
+                final long now = System.nanoTime() - startNanos;
+                wheel.purgeCancelled();
+                wheel.advanceTo(now / tickNanos, sink);
+
+                int done = 0;
+                Runnable task;
+                while (done < BATCH && ((task = local.poll()) != null || (task = inbox.poll()) != null)) {
+                    done++;
+                    try {
+                        task.run();
+                    } catch (Throwable e) {
+                        log.error("loop task failed", e);
+                    }
+                }
+                if (done == 0) {
+                    sleep(now);
+                }
+            }
+        }
+
+        private void sleep(long now) {
+            sleeping = true;
+            if (inbox.isEmpty() && timersInbox.get() == null && running) {
+                if (wheel.size() > 0) {
+                    LockSupport.parkNanos(this, (wheel.currentTick() + 1) * tickNanos - now);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            sleeping = false;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package automatons.automatons.sched;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import javax.annotation.Nullable;
+
+/**
+ * Scheduler on top of plain executors, see
+ * {@link AutomatonScheduler#make(Executor, Executor, ScheduledExecutorService)}
+ * <br>
+ * Timers submitted with slack are coalesced: deadline is rounded up to the
+ * slack grid and all the timers of one grid point share one scheduled task,
+ * which is cancelled with the last of its timers; timerCounters() count all
+ * the timers with delay, cancelled wakeups are not counted;
+ */
+final class ExecutorScheduler extends AutomatonScheduler {
+    private final Executor instantExec;
+    private final @Nullable Executor futuresExec;
+    private final @Nullable ScheduledExecutorService sched;
+    private final long originNanos = System.nanoTime();
+    private final ConcurrentMap<Long, Batch> batches = new ConcurrentHashMap<>();
+    private final TimerCounters counters = new TimerCounters();
+
+    ExecutorScheduler(Executor instantExec, @Nullable Executor futuresExec, @Nullable ScheduledExecutorService sched) {
+        this.instantExec = checkNotNull(instantExec);
+        this.futuresExec = futuresExec;
+        this.sched = sched;
+    }
+
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit) {
+        if (delay == 0) {
+            instantExec.execute(runnable);
+            return Cancellable.NONE;
+        }
+        checkArgument(delay > 0);
+        checkNotNull(sched, "sched?");
+        counters.timers.incrementAndGet();
+        counters.wakeups.incrementAndGet();
+        final ScheduledFuture<?> future = sched.schedule(runnable, delay, unit);
+        return new Cancellable() {
+            @Override public boolean cancel() {
+                if (!unschedule(future)) {
+                    return false;
+                }
+                counters.wakeups.decrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    private boolean unschedule(ScheduledFuture<?> future) {
+        if (!future.cancel(false)) {
+            return false;
+        }
+        // unless removeOnCancelPolicy is set, cancelled tasks stay in the queue until their time;
+        if (sched instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) sched).remove((Runnable) future);
+        }
+        return true;
+    }
+
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit, long slackNanos) {
+        if (delay == 0 || slackNanos <= 0) {
+            return submit(runnable, delay, unit);
+        }
+        checkArgument(delay > 0);
+        checkNotNull(sched, "sched?");
+        counters.timers.incrementAndGet();
+        final long now = System.nanoTime() - originNanos;
+        final long deadline = now + unit.toNanos(delay);
+        final long fireAt = ((deadline + slackNanos - 1) / slackNanos) * slackNanos;
+        final Task task = new Task(runnable);
+        while (true) {
+            Batch batch = batches.get(fireAt);
+            if (batch == null) {
+                final Batch created = new Batch(fireAt);
+                batch = batches.putIfAbsent(fireAt, created);
+                if (batch == null) {
+                    batch = created;
+                    counters.wakeups.incrementAndGet();
+                    created.scheduled(sched.schedule(created, fireAt - now, TimeUnit.NANOSECONDS));
+                }
+            }
+            if (batch.add(task)) {
+                return task;
+            }
+            // batch has already fired: its time (and our deadline) has come;
+            batches.remove(fireAt, batch);
+            if (System.nanoTime() - originNanos >= fireAt) {
+                instantExec.execute(runnable);
+                return Cancellable.NONE;
+            }
+        }
+    }
+
+    @Override public @Nullable Executor futuresExecutor() {
+        return futuresExec;
+    }
+
+    @Override public TimerCounters timerCounters() {
+        return counters;
+    }
+
+    private static final class Task implements Cancellable {
+        volatile Runnable runnable; // null = cancelled or fired;
+        Task next;
+        @Nullable Batch batch;
+
+        Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override public boolean cancel() {
+            if (take() == null) {
+                return false;
+            }
+            batch.cancelled();
+            return true;
+        }
+
+        Runnable take() {
+            final Runnable r = runnable;
+            return (r != null && RUNNABLE.compareAndSet(this, r, null)) ? r : null;
+        }
+    }
+
+    private static final AtomicReferenceFieldUpdater<Task, Runnable> RUNNABLE = AtomicReferenceFieldUpdater
+            .newUpdater(Task.class, Runnable.class, "runnable");
+
+    private static final Task FIRED = new Task(null);
+
+    /**
+     * timers of one grid point; head is FIRED once the batch has run or its
+     * last timer was cancelled (then its scheduled task is cancelled too);
+     */
+    private final class Batch implements Runnable {
+        private final long fireAt;
+        private final AtomicReference<Task> head = new AtomicReference<>();
+        private final AtomicInteger live = new AtomicInteger(); // added - cancelled;
+        private volatile @Nullable ScheduledFuture<?> future;
+
+        Batch(long fireAt) {
+            this.fireAt = fireAt;
+        }
+
+        void scheduled(ScheduledFuture<?> f) {
+            future = f;
+            if (head.get() == FIRED && unschedule(f)) {
+                counters.wakeups.decrementAndGet(); // retired before we got here;
+            }
+        }
+
+        boolean add(Task task) {
+            Task h;
+            task.batch = this;
+            do {
+                h = head.get();
+                if (h == FIRED) {
+                    return false;
+                }
+                task.next = h;
+            } while (!head.compareAndSet(h, task));
+            live.incrementAndGet();
+            return true;
+        }
+
+        /**
+         * one of the timers was cancelled: the last one retires the batch,
+         * unless a timer has been added meanwhile (then head has changed or
+         * one of its tasks is alive);
+         */
+        void cancelled() {
+            if (live.decrementAndGet() > 0) {
+                return;
+            }
+            final Task h = head.get();
+            for (Task t = h; t != null; t = t.next) {
+                if (t.runnable != null) {
+                    return;
+                }
+            }
+            if (h == FIRED || !head.compareAndSet(h, FIRED)) {
+                return;
+            }
+            batches.remove(fireAt, this);
+            final ScheduledFuture<?> f = future;
+            if (f != null && unschedule(f)) {
+                counters.wakeups.decrementAndGet();
+            }
+        }
+
+        @Override public void run() {
+            batches.remove(fireAt, this);
+            Task t = head.getAndSet(FIRED);
+            while (t != null) {
+                final Runnable r = t.take();
+                if (r != null) {
+                    instantExec.execute(r);
+                }
+                t = t.next;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package automatons.automatons.sched;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zero-delay continuations (and future callbacks) issued by a worker of the
+ * pool are forked to that worker's own deque: the next step of a ping-pong
+ * chain runs on the same core (LIFO), idle workers steal the rest; <br>
+ * Submissions from foreign threads go to the pool's shared queue, delays are
+ * served by a {@link HashedWheelScheduler} whose expired timers are handed to
+ * the pool;
+ */
+public class ForkJoinScheduler extends AutomatonScheduler {
+    private final ForkJoinPool pool;
+    private final HashedWheelScheduler timers;
+
+    private final Executor instantExec = new Executor() {
+        @Override public void execute(Runnable command) {
+            final Thread thread = Thread.currentThread();
+            if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool) {
+                ForkJoinTask.adapt(command).fork();
+            } else {
+                pool.execute(command);
+            }
+        }
+    };
+
+    public ForkJoinScheduler(int parallelism) {
+        this(new ForkJoinPool(parallelism), 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param pool
+     *            should be created with asyncMode = false (LIFO local deques)
+     * @param tick
+     *            timer wheel tick
+     */
+    public ForkJoinScheduler(ForkJoinPool pool, long tick, TimeUnit unit) {
+        this.pool = checkNotNull(pool);
+        this.timers = new HashedWheelScheduler(pool, instantExec, tick, unit);
+    }
+
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit) {
+        return submit(runnable, delay, unit, 0);
+    }
+
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit, long slackNanos) {
+        if (delay == 0) {
+            instantExec.execute(runnable);
+            return Cancellable.NONE;
+        }
+        return timers.submit(runnable, delay, unit, slackNanos);
+    }
+
+    @Override public Executor futuresExecutor() {
+        return instantExec;
+    }
+
+    @Override public TimerCounters timerCounters() {
+        return timers.timerCounters();
+    }
+
+    public final ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void shutdown() {
+        timers.shutdown();
+        pool.shutdown();
+    }
+}
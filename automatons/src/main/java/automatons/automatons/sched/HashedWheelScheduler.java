@@ -0,0 +1,164 @@
+package automatons.automatons.sched;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduler which keeps delayed steps in a hierarchical timing wheel instead
+ * of ScheduledExecutorService's heap; <br>
+ *
+ * submit() is O(1) and lock free (one CAS), expiry is O(1) per timer; the
+ * price is precision: timers fire on the first tick boundary after their
+ * deadline, i.e. up to one tick late (never early); <br>
+ * Wheel is served by one daemon thread which only moves timers around, expired
+ * steps are executed by instantExec;
+ */
+public class HashedWheelScheduler extends AutomatonScheduler {
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelScheduler.class);
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    public static final int DEFAULT_WHEEL_BITS = 9; // 512 slots per level
+    public static final int DEFAULT_LEVELS = 4; // 512^4 ticks, ~2 years for 1 ms tick
+
+    private final Executor instantExec;
+    private final @Nullable Executor futuresExec;
+    private final long tickNanos;
+    private final long startNanos;
+    private final TimerWheel wheel;
+    private final AtomicReference<TimerWheel.Timeout> inbox = new AtomicReference<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile int pending; // written by worker only;
+    private final TimerCounters counters = new TimerCounters();
+
+    public HashedWheelScheduler(Executor instantExec, @Nullable Executor futuresExec, long tick, TimeUnit unit) {
+        this(instantExec, futuresExec, tick, unit, DEFAULT_WHEEL_BITS, DEFAULT_LEVELS);
+    }
+
+    public HashedWheelScheduler(Executor instantExec, @Nullable Executor futuresExec, long tick, TimeUnit unit,
+            int wheelBits, int levels) {
+        checkArgument(tick > 0, "tick > 0");
+        this.instantExec = checkNotNull(instantExec);
+        this.futuresExec = futuresExec;
+        this.tickNanos = unit.toNanos(tick);
+        checkArgument(tickNanos > 0, "tick is too small");
+        this.startNanos = System.nanoTime();
+        this.wheel = new TimerWheel(wheelBits, levels, 0);
+        this.worker = new Thread(new Runnable() {
+            @Override public void run() {
+                work();
+            }
+        }, "automaton-wheel-" + threadCount.incrementAndGet());
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit) {
+        return submit(runnable, delay, unit, 0);
+    }
+
+    /**
+     * slack rounds the deadline up to the slack grid, so timers of one grid
+     * point expire in the same tick;
+     */
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit, long slackNanos) {
+        if (delay == 0) {
+            instantExec.execute(runnable);
+            return Cancellable.NONE;
+        }
+        checkArgument(delay > 0);
+        final long deadline = System.nanoTime() - startNanos + unit.toNanos(delay);
+        // ceil: timer must never fire before its deadline;
+        long tick = (deadline + tickNanos - 1) / tickNanos;
+        final long slackTicks = slackNanos / tickNanos;
+        if (slackTicks > 1) {
+            tick = ((tick + slackTicks - 1) / slackTicks) * slackTicks;
+        }
+        final TimerWheel.Timeout t = new TimerWheel.Timeout(wheel, checkNotNull(runnable), tick);
+        TimerWheel.Timeout head;
+        do {
+            head = inbox.get();
+            t.next = head;
+        } while (!inbox.compareAndSet(head, t));
+        return t;
+    }
+
+    @Override public @Nullable Executor futuresExecutor() {
+        return futuresExec;
+    }
+
+    /**
+     * wakeups are ticks which have expired at least one timer;
+     */
+    @Override public TimerCounters timerCounters() {
+        return counters;
+    }
+
+    public final long getTick(TimeUnit unit) {
+        return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * approximate number of timers in the wheel (updated once per tick);
+     */
+    public final int pendingTimers() {
+        return pending;
+    }
+
+    /**
+     * stops the wheel thread, pending timers are dropped;
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    private void work() {
+        final Executor sink = new Executor() {
+            @Override public void execute(Runnable task) {
+                try {
+                    instantExec.execute(task);
+                } catch (Throwable e) {
+                    log.error("expired timer was rejected", e);
+                }
+            }
+        };
+        while (running) {
+            final long nextTick = wheel.currentTick() + 1;
+            long now;
+            while ((now = System.nanoTime() - startNanos) < nextTick * tickNanos) {
+                LockSupport.parkNanos(this, nextTick * tickNanos - now);
+                if (!running) {
+                    return;
+                }
+            }
+            TimerWheel.Timeout t = inbox.getAndSet(null);
+            int drained = 0;
+            while (t != null) {
+                final TimerWheel.Timeout next = t.next;
+                t.next = null;
+                wheel.schedule(t);
+                t = next;
+                drained++;
+            }
+            wheel.purgeCancelled();
+            wheel.advanceTo(now / tickNanos, sink);
+            pending = wheel.size();
+            if (drained > 0) {
+                counters.timers.addAndGet(drained);
+            }
+            counters.wakeups.lazySet(wheel.expiringTicks());
+        }
+    }
+}
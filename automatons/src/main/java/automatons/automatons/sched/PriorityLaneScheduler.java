@@ -0,0 +1,284 @@
+package automatons.automatons.sched;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduler with priority lanes: lane 0 is the most urgent one; automatons
+ * are bound to lane min(priority, lanes - 1) at start(), see
+ * {@link #bind(int)} and BuilderBase.priority(); <br>
+ *
+ * All the ready steps of a lane (zero-delay steps, expired timers and future
+ * callbacks) wait in the lane's own queue; workers pick the next lane either
+ * strictly by priority (lower lanes run only when upper ones are empty and
+ * may starve) or by weights (lane i gets weights[i] of every sum(weights)
+ * dispatches while it has work, idle lanes give their turns away); <br>
+ * Delays are served by one shared {@link HashedWheelScheduler}, expired timers
+ * are queued into their lanes, so a flood of background timers can't delay
+ * urgent ones; see getXXX(lane) for queue depth and lag (enqueue to dispatch)
+ * metrics;
+ */
+public class PriorityLaneScheduler extends AutomatonScheduler {
+    private static final Logger log = LoggerFactory.getLogger(PriorityLaneScheduler.class);
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    public enum Dispatch {
+        STRICT, WEIGHTED
+    }
+
+    private final Lane[] lanes;
+    private final int[] schedule; // weighted order of lanes, one round;
+    private final Dispatch dispatch;
+    private final Semaphore ready = new Semaphore(0); // one permit per queued task;
+    private final HashedWheelScheduler timers;
+    private final Thread[] workers;
+    private volatile boolean running = true;
+
+    /**
+     * @param weights
+     *            one per lane; with STRICT dispatch only their count matters
+     */
+    public PriorityLaneScheduler(int threads, Dispatch dispatch, int... weights) {
+        checkArgument(threads > 0, "threads > 0");
+        checkArgument(weights.length > 0, "at least one lane");
+        this.dispatch = checkNotNull(dispatch);
+        this.lanes = new Lane[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            checkArgument(weights[i] > 0, "weight > 0");
+            lanes[i] = new Lane(i);
+        }
+        this.schedule = smoothRoundRobin(weights);
+        this.timers = new HashedWheelScheduler(DIRECT, null, 1, TimeUnit.MILLISECONDS);
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Runnable() {
+                @Override public void run() {
+                    work();
+                }
+            }, "automaton-lanes-" + threadCount.incrementAndGet());
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * lanes interleaved by weights, e.g. {3, 1} -> [0, 0, 1, 0];
+     */
+    private static int[] smoothRoundRobin(int[] weights) {
+        int total = 0;
+        for (int w : weights) {
+            total += w;
+        }
+        final int[] order = new int[total];
+        final int[] current = new int[weights.length];
+        for (int k = 0; k < total; k++) {
+            int best = 0;
+            for (int i = 0; i < weights.length; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            order[k] = best;
+        }
+        return order;
+    }
+
+    @Override public AutomatonScheduler bind(int priority) {
+        checkArgument(priority >= 0, "priority >= 0");
+        return lanes[Math.min(priority, lanes.length - 1)];
+    }
+
+    /**
+     * unbound automatons run in the lane of PRIORITY_NORMAL;
+     */
+    @Override public AutomatonScheduler bind() {
+        return bind(PRIORITY_NORMAL);
+    }
+
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit) {
+        return bind().submit(runnable, delay, unit);
+    }
+
+    @Override public Executor futuresExecutor() {
+        return bind().futuresExecutor();
+    }
+
+    @Override public boolean inScheduler() {
+        return false;
+    }
+
+    public final int lanesCount() {
+        return lanes.length;
+    }
+
+    public final Dispatch getDispatch() {
+        return dispatch;
+    }
+
+    /**
+     * ready steps waiting in the lane;
+     */
+    public final int getDepth(int lane) {
+        return lanes[lane].depth.get();
+    }
+
+    /**
+     * steps executed by the lane so far;
+     */
+    public final long getDispatched(int lane) {
+        return lanes[lane].dispatched.get();
+    }
+
+    /**
+     * sum of enqueue to dispatch delays of the lane, divide by
+     * getDispatched() for the mean;
+     */
+    public final long getLag(int lane, TimeUnit unit) {
+        return unit.convert(lanes[lane].lagNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * max enqueue to dispatch delay of the lane since the previous call;
+     */
+    public final long getMaxLagAndReset(int lane, TimeUnit unit) {
+        return unit.convert(lanes[lane].maxLagNanos.getAndSet(0), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * stops workers and the timer wheel, pending steps are dropped;
+     */
+    public void shutdown() {
+        running = false;
+        timers.shutdown();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void work() {
+        int cursor = 0;
+        while (running) {
+            try {
+                ready.acquire();
+            } catch (InterruptedException e) {
+                continue; // shutdown;
+            }
+            final int preferred = dispatch == Dispatch.STRICT ? 0 : schedule[cursor++ % schedule.length];
+            Task task = lanes[preferred].queue.poll();
+            while (task == null) {
+                // preferred lane is empty, the most urgent non-empty one is next;
+                for (int i = 0; i < lanes.length && task == null; i++) {
+                    task = lanes[i].queue.poll();
+                }
+                if (task == null) {
+                    // our task was queued into a lane we have already passed
+                    // (another worker took the one we were about to poll);
+                    LockSupport.parkNanos(BACKOFF_NANOS);
+                }
+            }
+            task.lane.dispatched(task);
+            try {
+                task.runnable.run();
+            } catch (Throwable e) {
+                log.error("lane task failed", e);
+            }
+        }
+    }
+
+    /**
+     * ready step; as a Runnable it is the timer callback which queues the step
+     * into its lane;
+     */
+    private static final class Task implements Runnable {
+        final Lane lane;
+        final Runnable runnable;
+        long enqueuedAt;
+
+        Task(Lane lane, Runnable runnable) {
+            this.lane = lane;
+            this.runnable = runnable;
+        }
+
+        @Override public void run() {
+            lane.enqueue(this);
+        }
+    }
+
+    private final class Lane extends AutomatonScheduler implements Executor {
+        final int index;
+        final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicLong dispatched = new AtomicLong();
+        final AtomicLong lagNanos = new AtomicLong();
+        final AtomicLong maxLagNanos = new AtomicLong();
+
+        Lane(int index) {
+            this.index = index;
+        }
+
+        @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit) {
+            return submit(runnable, delay, unit, 0);
+        }
+
+        @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit, long slackNanos) {
+            final Task task = new Task(this, checkNotNull(runnable));
+            if (delay == 0) {
+                enqueue(task);
+                return Cancellable.NONE;
+            }
+            return timers.submit(task, delay, unit, slackNanos);
+        }
+
+        @Override public void execute(Runnable command) {
+            enqueue(new Task(this, checkNotNull(command)));
+        }
+
+        @Override public Executor futuresExecutor() {
+            return this;
+        }
+
+        @Override public boolean inScheduler() {
+            return false;
+        }
+
+        @Override public TimerCounters timerCounters() {
+            return timers.timerCounters();
+        }
+
+        void enqueue(Task task) {
+            task.enqueuedAt = System.nanoTime();
+            depth.incrementAndGet();
+            queue.add(task);
+            ready.release();
+        }
+
+        void dispatched(Task task) {
+            depth.decrementAndGet();
+            dispatched.incrementAndGet();
+            final long lag = System.nanoTime() - task.enqueuedAt;
+            lagNanos.addAndGet(lag);
+            long max;
+            while ((max = maxLagNanos.get()) < lag && !maxLagNanos.compareAndSet(max, lag)) {
+            }
+        }
+
+        @Override public String toString() {
+            return "lane-" + index;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package automatons.automatons.sched;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Ticker;
+
+/**
+ * Discrete-event scheduler with a virtual clock: nothing runs until one of
+ * run-methods is called, which then executes events in (time, submission)
+ * order jumping the clock straight to the next due event; <br>
+ *
+ * Automatons must use {@link #ticker()} (see BuilderBase.ticker()), so that
+ * maxAge and currentClock() follow simulated time; future callbacks are
+ * queued as events at the current simulated time, so react steps whose
+ * futures are completed inside the simulation are deterministic as well;
+ * futures completed by foreign threads are picked up by the next run; <br>
+ * Everything runs in the thread which calls run-methods, hours of simulated
+ * time take as long as their steps do;
+ */
+public class SimulatedScheduler extends AutomatonScheduler {
+    private static final Logger log = LoggerFactory.getLogger(SimulatedScheduler.class);
+
+    private static final class Event implements Comparable<Event>, Cancellable {
+        final long time;
+        final long seq;
+        volatile Runnable runnable; // null = cancelled, stays in the queue until its time;
+
+        Event(long time, long seq, Runnable runnable) {
+            this.time = time;
+            this.seq = seq;
+            this.runnable = runnable;
+        }
+
+        @Override public int compareTo(Event o) {
+            if (time != o.time) {
+                return time < o.time ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+
+        @Override public boolean cancel() {
+            final Runnable r = runnable;
+            return r != null && RUNNABLE.compareAndSet(this, r, null);
+        }
+    }
+
+    private static final AtomicReferenceFieldUpdater<Event, Runnable> RUNNABLE = AtomicReferenceFieldUpdater
+            .newUpdater(Event.class, Runnable.class, "runnable");
+
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    private long seq;
+    private volatile long now;
+
+    private final Ticker ticker = new Ticker() {
+        @Override public long read() {
+            return now;
+        }
+    };
+
+    private final Executor futuresExecutor = new Executor() {
+        @Override public void execute(Runnable command) {
+            submit(command, 0, TimeUnit.NANOSECONDS);
+        }
+    };
+
+    public SimulatedScheduler() {
+        this(0);
+    }
+
+    /**
+     * @param startNanos
+     *            initial simulated time
+     */
+    public SimulatedScheduler(long startNanos) {
+        this.now = startNanos;
+    }
+
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit) {
+        checkArgument(delay >= 0);
+        checkNotNull(runnable);
+        synchronized (queue) {
+            final Event e = new Event(now + unit.toNanos(delay), seq++, runnable);
+            queue.add(e);
+            return e;
+        }
+    }
+
+    @Override public Executor futuresExecutor() {
+        return futuresExecutor;
+    }
+
+    /**
+     * simulated clock, nanos;
+     */
+    public final Ticker ticker() {
+        return ticker;
+    }
+
+    public final long now(TimeUnit unit) {
+        return unit.convert(now, TimeUnit.NANOSECONDS);
+    }
+
+    public final int pending() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * executes the next event (if any) moving the clock to its time,
+     * cancelled events are dropped on the way and don't move the clock;
+     *
+     * @return false if there are no events;
+     */
+    public boolean step() {
+        while (true) {
+            final int r = runNext(Long.MAX_VALUE);
+            if (r != 0) {
+                return r > 0;
+            }
+        }
+    }
+
+    /**
+     * @param limit
+     *            simulated time, nanos, events after it stay in the queue
+     * @return 1 if an event has run, 0 if a cancelled one was dropped, -1 if
+     *         there are no events until limit;
+     */
+    private int runNext(long limit) {
+        final Event e;
+        synchronized (queue) {
+            final Event head = queue.peek();
+            if (head == null || head.time > limit) {
+                return -1;
+            }
+            e = queue.poll();
+        }
+        final Runnable r = e.runnable;
+        if (r == null || !RUNNABLE.compareAndSet(e, r, null)) {
+            return 0; // cancelled;
+        }
+        if (e.time > now) {
+            now = e.time;
+        }
+        try {
+            r.run();
+        } catch (Throwable error) {
+            log.error("simulated event failed", error);
+        }
+        return 1;
+    }
+
+    /**
+     * runs until there is nothing to do: all the automatons have stopped or
+     * wait for foreign futures;
+     *
+     * @return number of executed events (cancelled ones are not counted)
+     */
+    public long runUntilIdle() {
+        long count = 0;
+        while (step()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * runs all the events due before (or at) now + duration, clock is set to
+     * now + duration afterwards;
+     *
+     * @return number of executed events (cancelled ones are not counted)
+     */
+    public long runFor(long duration, TimeUnit unit) {
+        checkArgument(duration >= 0);
+        return runUntil(now + unit.toNanos(duration));
+    }
+
+    /**
+     * @param time
+     *            simulated time, nanos
+     * @return number of executed events (cancelled ones are not counted)
+     */
+    public long runUntil(long time) {
+        long count = 0;
+        int r;
+        while ((r = runNext(time)) >= 0) {
+            count += r;
+        }
+        if (time > now) {
+            now = time;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,33 @@
+package automatons.automatons.sched;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * how many timers (with or without slack) were submitted and how many times
+ * the scheduler actually woke up (or will wake up) to fire them, see
+ * {@link AutomatonScheduler#submit(Runnable, long, java.util.concurrent.TimeUnit, long)}
+ */
+public final class TimerCounters {
+    final AtomicLong timers = new AtomicLong();
+    final AtomicLong wakeups = new AtomicLong();
+
+    public long getTimers() {
+        return timers.get();
+    }
+
+    public long getWakeups() {
+        return wakeups.get();
+    }
+
+    /**
+     * wakeups which were saved by coalescing: timers - wakeups;
+     */
+    public long getSavedWakeups() {
+        return Math.max(0, getTimers() - getWakeups());
+    }
+
+    @Override public String toString() {
+        return "TimerCounters [timers=" + getTimers() + ", wakeups=" + getWakeups() + ", saved=" + getSavedWakeups()
+                + "]";
+    }
+}
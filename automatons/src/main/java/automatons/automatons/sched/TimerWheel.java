@@ -0,0 +1,211 @@
+package automatons.automatons.sched;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Hierarchical hashed timing wheel (Varghese & Lauck, scheme 7); <br>
+ *
+ * Level 0 has one slot per tick, each next level has slots which are
+ * wheelSize times wider; timers are inserted into the level which covers
+ * their remaining delay and cascaded down to lower levels when their slot
+ * comes up, so both insert and expiry are O(1) regardless of the number of
+ * pending timers; <br>
+ *
+ * NOT thread safe: the wheel is owned by a single thread, see
+ * {@link HashedWheelScheduler}
+ */
+final class TimerWheel {
+
+    private static final int PENDING = 0, CANCELLED = 1, EXPIRED = 2;
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(
+            Timeout.class, "state");
+
+    /**
+     * intrusive node of a wheel bucket (doubly linked list); may be cancelled
+     * from any thread, cancelled timeouts are unlinked by the owner thread
+     * at {@link TimerWheel#purgeCancelled()}
+     */
+    static final class Timeout implements Cancellable {
+        private final TimerWheel wheel;
+        private Runnable task;
+        final long deadlineTick;
+        volatile int state;
+        Timeout prev, next;
+        int level = -1, slot;
+
+        Timeout(TimerWheel wheel, Runnable task, long deadlineTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        @Override public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            task = null;
+            wheel.cancelled.add(this);
+            return true;
+        }
+    }
+
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private final int bits;
+    private final int mask;
+    private final int levels;
+    private final Timeout[][] wheels;
+    private long currentTick;
+    private int size;
+    private long expiringTicks; // ticks with at least one timer expired;
+
+    /**
+     * @param wheelBits
+     *            log2 of slots count per level
+     * @param levels
+     *            number of levels, wheel spans 2^(wheelBits * levels) ticks,
+     *            longer timers are cascaded from the top level
+     */
+    TimerWheel(int wheelBits, int levels, long startTick) {
+        checkArgument(wheelBits > 0 && levels > 0 && wheelBits * levels < 63, "wheel is too large");
+        this.bits = wheelBits;
+        this.mask = (1 << wheelBits) - 1;
+        this.levels = levels;
+        this.wheels = new Timeout[levels][1 << wheelBits];
+        this.currentTick = startTick;
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long expiringTicks() {
+        return expiringTicks;
+    }
+
+    /**
+     * timer will fire at the first advance which reaches its deadline tick,
+     * but never before the next tick;
+     */
+    void schedule(Timeout t) {
+        if (t.state == CANCELLED) {
+            return;
+        }
+        place(t, currentTick + 1);
+        size++;
+    }
+
+    /**
+     * unlinks cancelled timeouts, owner thread only;
+     */
+    void purgeCancelled() {
+        Timeout t;
+        while ((t = cancelled.poll()) != null) {
+            remove(t);
+        }
+    }
+
+    boolean remove(Timeout t) {
+        if (t.level < 0) {
+            return false;
+        }
+        unlink(t);
+        size--;
+        return true;
+    }
+
+    /**
+     * moves wheel to the targetTick, expired timers are passed to sink in
+     * tick order;
+     */
+    void advanceTo(long targetTick, Executor sink) {
+        while (currentTick < targetTick) {
+            final long tick = ++currentTick;
+            for (int l = 1; l < levels; l++) {
+                if ((tick & ((1L << (bits * l)) - 1)) != 0) {
+                    break;
+                }
+                cascade(l, (int) ((tick >>> (bits * l)) & mask));
+            }
+            final int slot = (int) (tick & mask);
+            Timeout t = wheels[0][slot];
+            wheels[0][slot] = null;
+            if (t != null) {
+                expiringTicks++;
+            }
+            while (t != null) {
+                final Timeout next = t.next;
+                t.prev = t.next = null;
+                t.level = -1;
+                size--;
+                if (STATE.compareAndSet(t, PENDING, EXPIRED)) {
+                    final Runnable task = t.task;
+                    t.task = null;
+                    sink.execute(task);
+                }
+                t = next;
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout t = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (t != null) {
+            final Timeout next = t.next;
+            t.prev = t.next = null;
+            // cascade runs before slot 0 of this tick expires: a timer due
+            // now goes to that slot;
+            place(t, currentTick);
+            t = next;
+        }
+    }
+
+    /**
+     * @param earliest
+     *            tick the timer may expire at, currentTick + 1 for new timers
+     */
+    private void place(Timeout t, long earliest) {
+        final long due = Math.max(t.deadlineTick, earliest);
+        final long delta = due - currentTick;
+        int level = 0;
+        while (level < levels - 1 && delta >= (1L << (bits * (level + 1)))) {
+            level++;
+        }
+        // beyond the wheel span: park in the farthest top slot, cascade will
+        // re-place it using its real deadline;
+        final long at = (delta >= (1L << (bits * levels))) ? currentTick + (1L << (bits * levels)) - 1 : due;
+        final int slot = (int) ((at >>> (bits * level)) & mask);
+        final Timeout head = wheels[level][slot];
+        t.next = head;
+        t.prev = null;
+        if (head != null) {
+            head.prev = t;
+        }
+        wheels[level][slot] = t;
+        t.level = level;
+        t.slot = slot;
+    }
+
+    private void unlink(Timeout t) {
+        if (t.prev != null) {
+            t.prev.next = t.next;
+        } else {
+            wheels[t.level][t.slot] = t.next;
+        }
+        if (t.next != null) {
+            t.next.prev = t.prev;
+        }
+        t.prev = t.next = null;
+        t.level = -1;
+    }
+}
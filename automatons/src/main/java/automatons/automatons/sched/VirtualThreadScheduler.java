@@ -0,0 +1,113 @@
+package automatons.automatons.sched;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Every step (and every future callback) runs on its own virtual thread, so
+ * steps are free to block: call blocking clients, sleep, wait on locks; see
+ * {@link automatons.automatons.AbstractAutomaton.BlockingStep} <br>
+ *
+ * Delays are served by a {@link HashedWheelScheduler}, join steps still run
+ * in the same (virtual) thread; <br>
+ * Virtual threads are looked up reflectively (java 21+), on older runtimes
+ * the scheduler falls back to a cached pool of daemon platform threads, which
+ * keeps the semantics but not the cost, see {@link #isVirtual()};
+ */
+public class VirtualThreadScheduler extends AutomatonScheduler {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadScheduler.class);
+
+    private final ExecutorService threads;
+    private final boolean virtual;
+    private final HashedWheelScheduler timers;
+
+    public VirtualThreadScheduler() {
+        this(1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param tick
+     *            timer wheel tick
+     */
+    public VirtualThreadScheduler(long tick, TimeUnit unit) {
+        this(tick, unit, true);
+    }
+
+    /**
+     * @param virtualThreads
+     *            false = platform threads even if the runtime has virtual
+     *            ones (e.g. to compare them)
+     */
+    public VirtualThreadScheduler(long tick, TimeUnit unit, boolean virtualThreads) {
+        ExecutorService exec = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtual = exec != null;
+        if (exec == null) {
+            if (virtualThreads) {
+                log.info("virtual threads are not supported by this runtime, falling back to platform threads");
+            }
+            exec = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "automaton-blocking-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        this.threads = exec;
+        this.timers = new HashedWheelScheduler(exec, exec, tick, unit);
+    }
+
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit) {
+        return timers.submit(runnable, delay, unit);
+    }
+
+    @Override public Cancellable submit(Runnable runnable, long delay, TimeUnit unit, long slackNanos) {
+        return timers.submit(runnable, delay, unit, slackNanos);
+    }
+
+    @Override public Executor futuresExecutor() {
+        return threads;
+    }
+
+    /**
+     * first step of an automaton never runs in the caller of start(), it may
+     * block;
+     */
+    @Override public boolean inScheduler() {
+        return false;
+    }
+
+    /**
+     * false if runtime has no virtual threads and platform threads are used;
+     */
+    public final boolean isVirtual() {
+        return virtual;
+    }
+
+    public void shutdown() {
+        timers.shutdown();
+        threads.shutdown();
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            log.warn("virtual threads are unavailable", e);
+            return null;
+        }
+    }
+}
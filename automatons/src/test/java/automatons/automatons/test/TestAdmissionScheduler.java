@@ -0,0 +1,281 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.metrics.AutomatonMetrics;
+import automatons.automatons.sched.AdmissionScheduler;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.EventLoopScheduler;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class TestAdmissionScheduler {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    /**
+     * sleeps a little and stops, remembers how many automatons were running
+     * at once;
+     */
+    protected static class NapAutomaton extends AbstractAutomaton<Integer> {
+        static final AtomicInteger running = new AtomicInteger();
+        static final AtomicInteger maxRunning = new AtomicInteger();
+
+        protected NapAutomaton(Builder b) {
+            super(b);
+        }
+
+        @Override protected StepResult step(Integer currentState) {
+            switch (currentState) {
+            case 1: {
+                final int now = running.incrementAndGet();
+                int max;
+                while ((max = maxRunning.get()) < now && !maxRunning.compareAndSet(max, now)) {
+                }
+                return next(2, 5);
+            }
+            case 2:
+                running.decrementAndGet();
+                return nextEnd();
+            default:
+                throw errorStateUndefined(currentState);
+            }
+        }
+
+        public static class Builder extends BuilderBase<Builder, Integer, NapAutomaton> {
+            protected Builder() {
+                super(1);
+            }
+
+            public NapAutomaton build() {
+                return new NapAutomaton(this);
+            }
+        }
+    }
+
+    @Test(timeout = 20000) public void testMaxActive() throws Throwable {
+        final AdmissionScheduler sched = new AdmissionScheduler(AutomatonScheduler.fromExecutor(exec), 10,
+                Integer.MAX_VALUE);
+        final List<ListenableFuture<? extends Automaton.StopDescription<Integer>>> stops = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            stops.add(sched.start(new NapAutomaton.Builder().build()));
+        }
+        assertTrue(sched.getQueuedStarts() > 0);
+        for (ListenableFuture<? extends Automaton.StopDescription<Integer>> stop : stops) {
+            assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        }
+        assertTrue(NapAutomaton.maxRunning.get() <= 10);
+        assertEquals(0, sched.getQueuedStarts());
+        while (sched.getActive() > 0) {
+            Thread.sleep(1); // permits are released by stop listeners;
+        }
+    }
+
+    /**
+     * 1 waits for a future which never completes (deadline 10 ms, or none)
+     * -> 2 (timer step) -> end;
+     */
+    protected static class HangAutomaton extends AbstractAutomaton<Integer> {
+        final SettableFuture<String> never = SettableFuture.create();
+        final boolean deadline;
+
+        private final Function<String, StepResult> handler = new Function<String, StepResult>() {
+            @Override public StepResult apply(String input) {
+                return nextEnd();
+            }
+        };
+
+        protected HangAutomaton(Builder b, boolean deadline) {
+            super(b);
+            this.deadline = deadline;
+        }
+
+        @Override protected StepResult step(Integer currentState) {
+            switch (currentState) {
+            case 1:
+                return deadline ? nextReact(never, 10, TimeUnit.MILLISECONDS, 2, handler) : nextReact(never, handler);
+            case 2:
+                return next(3, 1);
+            case 3:
+                return nextEnd();
+            default:
+                throw errorStateUndefined(currentState);
+            }
+        }
+
+        public static class Builder extends BuilderBase<Builder, Integer, HangAutomaton> {
+            protected Builder() {
+                super(1);
+            }
+
+            public HangAutomaton build(boolean deadline) {
+                return new HangAutomaton(this, deadline);
+            }
+        }
+    }
+
+    @Test(timeout = 20000) public void testTimedOutReactsReleaseSlots() throws Throwable {
+        final AdmissionScheduler sched = new AdmissionScheduler(AutomatonScheduler.fromExecutor(exec),
+                Integer.MAX_VALUE, 2);
+        final List<ListenableFuture<? extends Automaton.StopDescription<Integer>>> stops = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            stops.add(sched.start(new HangAutomaton.Builder().build(true)));
+        }
+        for (ListenableFuture<? extends Automaton.StopDescription<Integer>> stop : stops) {
+            assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        }
+        assertEquals(0, sched.getInFlightReacts());
+        assertEquals(0, sched.getDeferredSteps());
+    }
+
+    @Test(timeout = 20000) public void testStopReleasesSlot() throws Throwable {
+        final AdmissionScheduler sched = new AdmissionScheduler(AutomatonScheduler.fromExecutor(exec),
+                Integer.MAX_VALUE, 1);
+        final HangAutomaton hung = new HangAutomaton.Builder().enableManualStop().build(false);
+        sched.start(hung);
+        while (sched.getInFlightReacts() == 0) {
+            Thread.sleep(1);
+        }
+        assertEquals(Automaton.StopReason.MANUAL, hung.stop().get().getReason());
+        assertEquals(0, sched.getInFlightReacts());
+        // steps aren't held back any more;
+        assertEquals(Automaton.StopReason.NATURAL, sched.start(new NapAutomaton.Builder().build()).get()
+                .getReason());
+    }
+
+    @Test(timeout = 20000) public void testOneViewPerLoop() throws Throwable {
+        final EventLoopScheduler loops = AutomatonScheduler.eventLoops(2);
+        try {
+            final AdmissionScheduler sched = new AdmissionScheduler(loops, 10, Integer.MAX_VALUE);
+            final AutomatonMetrics metrics = new AutomatonMetrics();
+            final List<ListenableFuture<? extends Automaton.StopDescription<Integer>>> stops = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                stops.add(sched.start(new NapAutomaton.Builder().listener(metrics).build()));
+            }
+            for (ListenableFuture<? extends Automaton.StopDescription<Integer>> stop : stops) {
+                assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+            }
+            assertTrue(metrics.getTimerLags().size() <= 2);
+        } finally {
+            loops.shutdown();
+        }
+    }
+
+    /**
+     * 1 -> 2 after delay millis (elapsed is measured) -> end;
+     */
+    protected static class DelayAutomaton extends AbstractAutomaton<Integer> {
+        final long delay;
+        long start;
+        volatile long elapsed = -1;
+
+        protected DelayAutomaton(Builder b, long delay) {
+            super(b);
+            this.delay = delay;
+        }
+
+        @Override protected StepResult step(Integer currentState) {
+            switch (currentState) {
+            case 1:
+                start = System.nanoTime();
+                return next(2, delay);
+            case 2:
+                elapsed = System.nanoTime() - start;
+                return nextEnd();
+            default:
+                throw errorStateUndefined(currentState);
+            }
+        }
+
+        public static class Builder extends BuilderBase<Builder, Integer, DelayAutomaton> {
+            protected Builder() {
+                super(1);
+                enableManualStop();
+            }
+
+            public DelayAutomaton build(long delay) {
+                return new DelayAutomaton(this, delay);
+            }
+        }
+    }
+
+    @Test(timeout = 20000) public void testDeferredStepKeepsDeadline() throws Throwable {
+        final AdmissionScheduler sched = new AdmissionScheduler(AutomatonScheduler.fromExecutor(exec),
+                Integer.MAX_VALUE, 1);
+        final HangAutomaton hung = new HangAutomaton.Builder().enableManualStop().build(false);
+        sched.start(hung);
+        while (sched.getInFlightReacts() == 0) {
+            Thread.sleep(1);
+        }
+        final DelayAutomaton delayed = new DelayAutomaton.Builder().build(300);
+        final ListenableFuture<? extends Automaton.StopDescription<Integer>> stop = sched.start(delayed);
+        assertEquals(1, sched.getDeferredSteps());
+        Thread.sleep(200);
+        hung.stop().get();
+        assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(delayed.elapsed);
+        // 300 ms since the step, not 200 ms deferred + 300 ms;
+        assertTrue("elapsed " + elapsed, elapsed >= 300 && elapsed < 450);
+    }
+
+    @Test(timeout = 20000) public void testCancelledDeferredStep() throws Throwable {
+        final AdmissionScheduler sched = new AdmissionScheduler(AutomatonScheduler.fromExecutor(exec),
+                Integer.MAX_VALUE, 1);
+        final HangAutomaton hung = new HangAutomaton.Builder().enableManualStop().build(false);
+        sched.start(hung);
+        while (sched.getInFlightReacts() == 0) {
+            Thread.sleep(1);
+        }
+        final DelayAutomaton delayed = new DelayAutomaton.Builder().build(TimeUnit.HOURS.toMillis(1));
+        sched.start(delayed);
+        assertEquals(1, sched.getDeferredSteps());
+        assertEquals(Automaton.StopReason.MANUAL, delayed.stop().get().getReason());
+        assertEquals(0, sched.getDeferredSteps());
+        hung.stop().get();
+        assertEquals(0, sched.getDeferredSteps());
+    }
+
+    @Test(timeout = 20000) public void testCancelDispatchedStep() throws Throwable {
+        final ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(2);
+        try {
+            final AdmissionScheduler sched = new AdmissionScheduler(AutomatonScheduler.fromExecutor(pool),
+                    Integer.MAX_VALUE, 1);
+            final HangAutomaton hung = new HangAutomaton.Builder().enableManualStop().build(false);
+            sched.start(hung);
+            while (sched.getInFlightReacts() == 0) {
+                Thread.sleep(1);
+            }
+            final DelayAutomaton delayed = new DelayAutomaton.Builder().build(TimeUnit.HOURS.toMillis(1));
+            sched.start(delayed);
+            assertEquals(1, sched.getDeferredSteps());
+            hung.stop().get();
+            // dispatched: the delegate holds the step for the rest of the hour;
+            assertEquals(0, sched.getDeferredSteps());
+            assertEquals(1, pool.getQueue().size());
+            assertEquals(Automaton.StopReason.MANUAL, delayed.stop().get().getReason());
+            assertEquals(0, pool.getQueue().size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
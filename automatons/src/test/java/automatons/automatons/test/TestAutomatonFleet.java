@@ -0,0 +1,114 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.AutomatonFleet;
+import automatons.automatons.sched.AutomatonScheduler;
+
+public class TestAutomatonFleet {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    /**
+     * 1 -> 2 -> 3 -> 1 ... rounds times, then end; rounds < 0 = forever in
+     * state 2 (sleeps);
+     */
+    protected static class AbcAutomaton extends AbstractAutomaton<Integer> {
+        int rounds;
+
+        protected AbcAutomaton(Builder b, int rounds) {
+            super(b);
+            this.rounds = rounds;
+        }
+
+        @Override protected StepResult step(Integer currentState) {
+            switch (currentState) {
+            case 1:
+                return rounds-- == 0 ? nextEnd() : next(2);
+            case 2:
+                return rounds < 0 ? next(2, 1, TimeUnit.HOURS) : nextJoin(3);
+            case 3:
+                return next(1);
+            default:
+                throw errorStateUndefined(currentState);
+            }
+        }
+
+        protected static class Builder extends BuilderBase<Builder, Integer, AbcAutomaton> {
+            protected Builder() {
+                super(1);
+                enableManualStop();
+            }
+
+            public AbcAutomaton build(int rounds) {
+                return new AbcAutomaton(this, rounds);
+            }
+        }
+    }
+
+    @Test(timeout = 20000) public void testCounts() throws Throwable {
+        final AutomatonFleet<Integer> fleet = new AutomatonFleet<>(sched);
+        final List<AbcAutomaton> bots = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            bots.add(new AbcAutomaton.Builder().build(10));
+        }
+        fleet.startAll(bots);
+        fleet.awaitAll();
+        assertEquals(10000, fleet.getStarted());
+        assertEquals(0, fleet.getRunning());
+        assertEquals(10000, fleet.getStopped(Automaton.StopReason.NATURAL));
+        assertEquals(10000, fleet.getStoppedWithoutLastState());
+        long total = 0;
+        for (long c : fleet.getAgeHistogram()) {
+            total += c;
+        }
+        assertEquals(10000, total);
+        assertTrue(bots.get(0).isStopped());
+
+        // restart the same bots in the same fleet;
+        for (AbcAutomaton a : bots) {
+            a.rounds = 10;
+        }
+        fleet.startAll(bots);
+        assertTrue(fleet.awaitAll(10, TimeUnit.SECONDS));
+        assertEquals(20000, fleet.getStopped(Automaton.StopReason.NATURAL));
+    }
+
+    @Test(timeout = 20000) public void testStopAll() throws Throwable {
+        final AutomatonFleet<Integer> fleet = new AutomatonFleet<>(sched);
+        final List<AbcAutomaton> sleepers = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            sleepers.add(new AbcAutomaton.Builder().build(-1));
+        }
+        fleet.startAll(sleepers);
+        assertFalse(fleet.awaitAll(50, TimeUnit.MILLISECONDS));
+        assertFalse(sleepers.get(0).isStopped());
+        fleet.stopAll(sleepers);
+        fleet.awaitAll();
+        assertEquals(1000, fleet.getStopped(Automaton.StopReason.MANUAL));
+        assertEquals(1000, fleet.getLastStateCount(2));
+        assertEquals(1, fleet.getLastStates().size());
+        assertTrue(fleet.getAgePercentile(0.5, TimeUnit.MILLISECONDS) >= 50);
+        // stop of already stopped member;
+        assertEquals(null, sleepers.get(0).stop().get());
+    }
+}
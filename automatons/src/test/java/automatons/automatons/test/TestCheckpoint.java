@@ -0,0 +1,209 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.AutomatonCheckpoint;
+import automatons.automatons.AutomatonFleet;
+import automatons.automatons.sched.AutomatonScheduler;
+
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class TestCheckpoint {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    /**
+     * BEGIN -> WAIT (sleeps "sleep" millis) -> DONE -> end; step of WAIT
+     * blocks till the gate opens (if there is one);
+     */
+    protected static class SleepBot extends AbstractAutomaton<SleepBot.SleepState> {
+        final int id;
+        final long sleep;
+        volatile boolean done;
+        volatile CountDownLatch gate;
+
+        protected SleepBot(Builder b, int id, long sleep) {
+            super(b);
+            this.id = id;
+            this.sleep = sleep;
+        }
+
+        enum SleepState implements Supplier<AbstractStep<SleepBot>> {
+            BEGIN, WAIT, DONE;
+
+            private static final Step<SleepBot> begin = new Step<SleepBot>() {
+                @Override public StepResult step(SleepBot self) {
+                    return self.next(WAIT, self.sleep, TimeUnit.MILLISECONDS);
+                }
+            };
+
+            private static final Step<SleepBot> wait = new Step<SleepBot>() {
+                @Override public StepResult step(SleepBot self) {
+                    if (self.gate != null) {
+                        Uninterruptibles.awaitUninterruptibly(self.gate);
+                    }
+                    return self.next(DONE);
+                }
+            };
+
+            private static final Step<SleepBot> done = new Step<SleepBot>() {
+                @Override public StepResult step(SleepBot self) {
+                    self.done = true;
+                    return self.nextEnd();
+                }
+            };
+
+            @Override public AbstractStep<SleepBot> get() {
+                return this == BEGIN ? begin : this == WAIT ? wait : done;
+            }
+        }
+
+        protected static class Builder extends BuilderBase<Builder, SleepState, SleepBot> {
+            protected Builder() {
+                super(SleepState.BEGIN);
+                enableManualStop();
+            }
+
+            public SleepBot build(int id, long sleep) {
+                return new SleepBot(this, id, sleep);
+            }
+        }
+    }
+
+    static final AutomatonCheckpoint.Codec<SleepBot.SleepState, SleepBot> codec = new AutomatonCheckpoint.Codec<SleepBot.SleepState, SleepBot>() {
+        @Override public void writeState(SleepBot.SleepState state, ByteBuffer out) {
+            out.put((byte) state.ordinal());
+        }
+
+        @Override public SleepBot.SleepState readState(ByteBuffer in) {
+            return SleepBot.SleepState.values()[in.get()];
+        }
+
+        @Override public void writeAssoc(SleepBot bot, ByteBuffer out) {
+            out.putInt(bot.id);
+            out.putLong(bot.sleep);
+        }
+
+        @Override public SleepBot create(ByteBuffer in) {
+            return new SleepBot.Builder().build(in.getInt(), in.getLong());
+        }
+    };
+
+    @Test(timeout = 20000) public void testRemainingDelay() throws Throwable {
+        final List<SleepBot> bots = new ArrayList<>();
+        final AutomatonFleet<SleepBot.SleepState> fleet = new AutomatonFleet<>(sched);
+        for (int i = 0; i < 10000; i++) {
+            bots.add(new SleepBot.Builder().build(i, 500));
+        }
+        fleet.startAll(bots);
+        Thread.sleep(250);
+        final Path file = Files.createTempFile("automatons", ".checkpoint");
+        try {
+            assertEquals(10000, AutomatonCheckpoint.write(file, bots, codec));
+            fleet.awaitAll();
+            assertEquals(10000, fleet.getStopped(Automaton.StopReason.MANUAL));
+            assertEquals(10000, fleet.getLastStateCount(SleepBot.SleepState.WAIT));
+            assertEquals(10000, AutomatonCheckpoint.count(file));
+
+            final AutomatonFleet<SleepBot.SleepState> restoredFleet = new AutomatonFleet<>(sched);
+            final long restoreTime = System.nanoTime();
+            final List<SleepBot> restored = AutomatonCheckpoint.restore(file, restoredFleet, codec);
+            assertEquals(10000, restored.size());
+            for (int i = 0; i < restored.size(); i++) {
+                assertEquals(i, restored.get(i).id);
+            }
+            final long restoreEnd = System.nanoTime();
+            restoredFleet.awaitAll();
+            final long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - restoreTime);
+            final long waitedAfterRestore = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - restoreEnd);
+            // ~250 ms of 500 ms are left, not 500 and not 0 (restore() of
+            // 10000 bots itself may take a while);
+            assertTrue("waited " + waited, waited >= 150);
+            assertTrue("waited after restore " + waitedAfterRestore, waitedAfterRestore < 450);
+            assertEquals(10000, restoredFleet.getStopped(Automaton.StopReason.NATURAL));
+            assertTrue(restored.get(0).done);
+            // age is preserved: the bots lived ~500 ms in total;
+            assertTrue(restoredFleet.getAgePercentile(0.5, TimeUnit.MILLISECONDS) >= 256);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(timeout = 20000) public void testMaxAge() throws Throwable {
+        final SleepBot bot = new SleepBot.Builder().maxAge(300, TimeUnit.MILLISECONDS).build(7, 1000);
+        final AutomatonFleet<SleepBot.SleepState> fleet = new AutomatonFleet<>(sched);
+        fleet.start(bot);
+        Thread.sleep(100);
+        final Path file = Files.createTempFile("automatons", ".checkpoint");
+        try {
+            final List<SleepBot> bots = new ArrayList<>();
+            bots.add(bot);
+            assertEquals(1, AutomatonCheckpoint.write(file, bots, codec));
+            final AutomatonFleet<SleepBot.SleepState> restoredFleet = new AutomatonFleet<>(sched);
+            AutomatonCheckpoint.restore(file, restoredFleet, codec);
+            // step after 900 ms finds the age (1000 ms) above maxAge;
+            restoredFleet.awaitAll();
+            assertEquals(1, restoredFleet.getStopped(Automaton.StopReason.AGE));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(timeout = 20000) public void testRunningStepTimeout() throws Throwable {
+        final SleepBot parked = new SleepBot.Builder().build(1, 5000);
+        final SleepBot blocked = new SleepBot.Builder().build(2, 10);
+        final SleepBot left = new SleepBot.Builder().build(3, 5000);
+        blocked.gate = new CountDownLatch(1);
+        final List<SleepBot> bots = new ArrayList<>();
+        final List<ListenableFuture<? extends Automaton.StopDescription<SleepBot.SleepState>>> stops = new ArrayList<>();
+        for (SleepBot bot : new SleepBot[] { parked, blocked, left }) {
+            bots.add(bot);
+            stops.add(bot.start(sched));
+        }
+        Thread.sleep(100); // blocked is in the step of WAIT;
+        final Path file = Files.createTempFile("automatons", ".checkpoint");
+        try {
+            try {
+                AutomatonCheckpoint.write(file, bots, codec, 100, TimeUnit.MILLISECONDS);
+                fail("running step should time out");
+            } catch (TimeoutException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("after 1 automatons"));
+            }
+            assertEquals(Automaton.StopReason.MANUAL, stops.get(0).get().getReason());
+            assertEquals(1, AutomatonCheckpoint.count(file));
+            assertTrue(!stops.get(2).isDone());
+
+            blocked.gate.countDown();
+            assertEquals(Automaton.StopReason.NATURAL, stops.get(1).get().getReason());
+            assertEquals(Automaton.StopReason.MANUAL, left.stop().get().getReason());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
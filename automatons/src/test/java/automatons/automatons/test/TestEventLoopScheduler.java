@@ -0,0 +1,94 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.sched.EventLoopScheduler;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class TestEventLoopScheduler {
+
+    /**
+     * remembers threads of all its steps: instant, delayed and react ones;
+     */
+    protected static class HomeAutomaton extends AbstractAutomaton<Integer> {
+        final Set<Thread> threads = new HashSet<>();
+        final SettableFuture<String> future = SettableFuture.create();
+        int steps;
+
+        protected HomeAutomaton(Builder b) {
+            super(b);
+        }
+
+        @Override protected StepResult step(Integer currentState) {
+            threads.add(Thread.currentThread());
+            steps++;
+            switch (currentState) {
+            case 1:
+                return next(2);
+            case 2:
+                return next(3, 5);
+            case 3:
+                return nextReact(future, new Function<String, StepResult>() {
+                    @Override public StepResult apply(String input) {
+                        threads.add(Thread.currentThread());
+                        return next(4, 1);
+                    }
+                });
+            case 4:
+                return nextEnd();
+            default:
+                throw errorStateUndefined(currentState);
+            }
+        }
+
+        public static class Builder extends BuilderBase<Builder, Integer, HomeAutomaton> {
+            protected Builder() {
+                super(1);
+            }
+
+            public HomeAutomaton build() {
+                return new HomeAutomaton(this);
+            }
+        }
+    }
+
+    @Test(timeout = 20000) public void testAffinity() throws Throwable {
+        final EventLoopScheduler sched = new EventLoopScheduler(4);
+        final List<HomeAutomaton> automatons = new ArrayList<>();
+        final List<ListenableFuture<? extends Automaton.StopDescription<Integer>>> stops = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            HomeAutomaton a = new HomeAutomaton.Builder().build();
+            automatons.add(a);
+            stops.add(a.start(sched));
+        }
+        Thread.sleep(50);
+        for (HomeAutomaton a : automatons) {
+            a.future.set("OK"); // foreign thread completion;
+        }
+        final Set<Thread> loops = new HashSet<>();
+        for (int i = 0; i < automatons.size(); i++) {
+            assertEquals(Automaton.StopReason.NATURAL, stops.get(i).get(5, TimeUnit.SECONDS).getReason());
+            final HomeAutomaton a = automatons.get(i);
+            assertEquals(4, a.steps);
+            assertEquals(1, a.threads.size());
+            loops.addAll(a.threads);
+        }
+        assertEquals(4, loops.size());
+        assertTrue(!loops.contains(Thread.currentThread()));
+        sched.shutdown();
+    }
+}
@@ -0,0 +1,148 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.AutomatonEngine;
+import automatons.automatons.AutomatonFleet;
+import automatons.automatons.metrics.AutomatonMetrics;
+import automatons.automatons.metrics.FlightRecorder;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.test.TestCheckpoint.SleepBot;
+
+import com.google.common.base.Supplier;
+
+public class TestFlightRecorder {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    /**
+     * ONE -> TWO -> THREE, THREE throws;
+     */
+    static class FailBot extends AbstractAutomaton<FailBot.State> {
+        FailBot(Builder b) {
+            super(b);
+        }
+
+        enum State implements Supplier<AbstractStep<FailBot>> {
+            ONE, TWO, THREE;
+
+            private static final Step<FailBot> step = new Step<FailBot>() {
+                @Override public StepResult step(FailBot self) {
+                    if (self.getCurrentState() == THREE) {
+                        throw new IllegalStateException("three");
+                    }
+                    return self.next(values()[self.getCurrentState().ordinal() + 1]);
+                }
+            };
+
+            @Override public AbstractStep<FailBot> get() {
+                return step;
+            }
+        }
+
+        static class Builder extends BuilderBase<Builder, State, FailBot> {
+            Builder() {
+                super(State.ONE);
+            }
+
+            FailBot build() {
+                return new FailBot(this);
+            }
+        }
+    }
+
+    @Test(timeout = 20000) public void testDump() throws Throwable {
+        final FlightRecorder recorder = new FlightRecorder(1 << 16, 0);
+        final AutomatonMetrics metrics = new AutomatonMetrics();
+        final AutomatonFleet<SleepBot.SleepState> fleet = new AutomatonFleet<>(sched);
+        final List<SleepBot> bots = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final SleepBot.Builder b = new SleepBot.Builder();
+            b.listener(metrics).listener(recorder);
+            bots.add(b.build(i, 20));
+        }
+        fleet.startAll(bots);
+        fleet.awaitAll();
+
+        assertEquals(3000, recorder.getRecorded());
+        assertEquals(1000, metrics.getTransitions(SleepBot.SleepState.DONE, null));
+        assertEquals(100, recorder.dump(100).size());
+        final List<FlightRecorder.Entry> last = recorder.dump(bots.get(500), 10);
+        assertEquals(3, last.size());
+        assertEquals(bots.get(500).getId(), last.get(0).automatonId);
+        assertEquals(3, recorder.dump(bots.get(500).getId(), 10).size());
+        assertEquals(SleepBot.SleepState.BEGIN, last.get(0).state);
+        assertEquals(SleepBot.SleepState.WAIT, last.get(0).nextState);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), last.get(0).delay);
+        assertEquals(SleepBot.SleepState.DONE, last.get(2).state);
+        assertNull(last.get(2).nextState);
+        assertTrue(last.get(1).time - last.get(0).time >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test(timeout = 20000) public void testOverwriteAndError() throws Throwable {
+        final FlightRecorder recorder = new FlightRecorder(16, 8);
+        for (int i = 0; i < 100; i++) {
+            new FailBot.Builder().listener(recorder).build().start(sched).get();
+        }
+        final FailBot bot = new FailBot.Builder().listener(recorder).build();
+        final Automaton.StopDescription<FailBot.State> stop = bot.start(sched).get();
+        assertEquals(Automaton.StopReason.ERROR, stop.getReason());
+        assertEquals(202, recorder.getRecorded());
+        final List<FlightRecorder.Entry> last = recorder.dump(bot, 8);
+        assertEquals(2, last.size());
+        assertEquals(FailBot.State.TWO, last.get(1).state);
+        assertEquals(FailBot.State.THREE, last.get(1).nextState);
+        assertTrue(recorder.dump(1000).size() <= 16 * 64);
+    }
+
+    @Test(timeout = 20000) public void testReactTimeout() throws Throwable {
+        final FlightRecorder recorder = new FlightRecorder(64, 0);
+        final TestAdmissionScheduler.HangAutomaton bot = new TestAdmissionScheduler.HangAutomaton.Builder()
+                .listener(recorder).build(true);
+        assertEquals(Automaton.StopReason.NATURAL, bot.start(sched).get().getReason());
+        final List<FlightRecorder.Entry> last = recorder.dump(bot, 8);
+        assertEquals(4, last.size());
+        assertEquals(1, last.get(0).state);
+        assertEquals(AutomatonEngine.REACT_PSEUDO_DELAY, last.get(0).delay);
+        assertEquals(1, last.get(1).state);
+        assertEquals(2, last.get(1).nextState);
+        assertEquals(AutomatonEngine.JOIN_PSEUDO_DELAY, last.get(1).delay);
+        assertEquals(2, last.get(2).state);
+        assertEquals(3, last.get(2).nextState);
+    }
+
+    @Test(timeout = 20000) public void testNoAutomatonReferences() throws Throwable {
+        final FlightRecorder recorder = new FlightRecorder(64, 0);
+        FailBot bot = new FailBot.Builder().listener(recorder).build();
+        final long id = bot.getId();
+        final WeakReference<FailBot> ref = new WeakReference<>(bot);
+        bot.start(sched).get();
+        bot = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+        assertEquals(2, recorder.dump(id, 8).size());
+    }
+}
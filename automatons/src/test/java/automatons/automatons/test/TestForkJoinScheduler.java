@@ -0,0 +1,131 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.ForkJoinScheduler;
+
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class TestForkJoinScheduler {
+
+    private static final ForkJoinScheduler sched = AutomatonScheduler.forkJoin(4);
+
+    @AfterClass public static void tearDown() {
+        sched.shutdown();
+    }
+
+    /**
+     * PING: zero-delay steps (forked), pings times -> WAIT after 5 ms -> end;
+     * counts steps which didn't run in a worker of the pool;
+     */
+    protected static class PingBot extends AbstractAutomaton<PingBot.PingState> {
+        int pings;
+        int foreign;
+        long waitStart;
+        volatile long waited = -1;
+
+        protected PingBot(Builder b, int pings) {
+            super(b);
+            this.pings = pings;
+        }
+
+        void check() {
+            final Thread thread = Thread.currentThread();
+            if (!(thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == sched
+                    .getPool())) {
+                foreign++;
+            }
+        }
+
+        enum PingState implements Supplier<AbstractStep<PingBot>> {
+            PING, WAIT;
+
+            private static final Step<PingBot> step = new Step<PingBot>() {
+                @Override public StepResult step(PingBot self) {
+                    self.check();
+                    switch (self.getCurrentState()) {
+                    case PING:
+                        if (self.pings-- > 0) {
+                            return self.next(PING);
+                        }
+                        self.waitStart = System.nanoTime();
+                        return self.next(WAIT, 5);
+                    default:
+                        self.waited = System.nanoTime() - self.waitStart;
+                        return self.nextEnd();
+                    }
+                }
+            };
+
+            @Override public AbstractStep<PingBot> get() {
+                return step;
+            }
+        }
+
+        protected static class Builder extends BuilderBase<Builder, PingState, PingBot> {
+            protected Builder() {
+                super(PingState.PING);
+            }
+
+            public PingBot build(int pings) {
+                return new PingBot(this, pings);
+            }
+        }
+    }
+
+    private static void checkStopped(List<PingBot> bots,
+            List<ListenableFuture<? extends Automaton.StopDescription<PingBot.PingState>>> stops) throws Exception {
+        for (int i = 0; i < bots.size(); i++) {
+            assertEquals(Automaton.StopReason.NATURAL, stops.get(i).get().getReason());
+            final PingBot bot = bots.get(i);
+            assertEquals(-1, bot.pings);
+            assertTrue("waited " + bot.waited, bot.waited >= TimeUnit.MILLISECONDS.toNanos(5));
+        }
+    }
+
+    @Test(timeout = 20000) public void testStartOutsidePool() throws Exception {
+        final List<PingBot> bots = new ArrayList<>();
+        final List<ListenableFuture<? extends Automaton.StopDescription<PingBot.PingState>>> stops = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final PingBot bot = new PingBot.Builder().build(100);
+            bots.add(bot);
+            stops.add(bot.start(sched));
+        }
+        // steps may run in the caller of start() (a forked step which fires
+        // before its submitter has parked is run by the submitter);
+        checkStopped(bots, stops);
+    }
+
+    @Test(timeout = 20000) public void testStartInPoolWorker() throws Exception {
+        final List<PingBot> bots = new ArrayList<>();
+        final List<ListenableFuture<? extends Automaton.StopDescription<PingBot.PingState>>> stops = new ArrayList<>();
+        sched.getPool().submit(new Callable<Void>() {
+            @Override public Void call() {
+                for (int i = 0; i < 100; i++) {
+                    final PingBot bot = new PingBot.Builder().build(100);
+                    bots.add(bot);
+                    stops.add(bot.start(sched));
+                }
+                return null;
+            }
+        }).get();
+        checkStopped(bots, stops);
+        for (PingBot bot : bots) {
+            assertEquals(0, bot.foreign);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package automatons.automatons.test;
+
+import static automatons.automatons.JumpAutomaton.toDelay;
+import static automatons.automatons.test.TestAutomaton.RandomAutomaton.State.stateA;
+import static automatons.automatons.test.TestAutomaton.RandomAutomaton.State.stateB;
+import static automatons.automatons.test.TestAutomaton.RandomAutomaton.State.stateC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.Automaton;
+import automatons.automatons.random.Randomizers;
+import automatons.automatons.sched.HashedWheelScheduler;
+import automatons.automatons.test.TestAutomaton.RandomAutomaton;
+import automatons.automatons.utility.LongFunction;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class TestHashedWheelScheduler {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    @Test(timeout = 20000) public void testNeverEarly() throws Throwable {
+        // tiny wheel: 4 slots x 3 levels = 64 ticks, longer delays overflow and cascade;
+        final HashedWheelScheduler sched = new HashedWheelScheduler(exec, exec, 1, TimeUnit.MILLISECONDS, 2, 3);
+        final int total = 5000;
+        final CountDownLatch latch = new CountDownLatch(total);
+        final AtomicInteger early = new AtomicInteger();
+        final Random random = new Random(42);
+        for (int i = 0; i < total; i++) {
+            final long delay = 1 + random.nextInt(300);
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            sched.submit(new Runnable() {
+                @Override public void run() {
+                    if (System.nanoTime() < deadline) {
+                        early.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+        sched.shutdown();
+    }
+
+    @Test(timeout = 20000) public void testLevelBoundary() throws Throwable {
+        // 4 slots per level: delays of 4..7 ticks submitted right after a tick
+        // expire at 5..8 ticks, one of them on the boundary of level 1;
+        final long tick = TimeUnit.MILLISECONDS.toNanos(100);
+        final HashedWheelScheduler sched = new HashedWheelScheduler(MoreExecutors.sameThreadExecutor(), null, tick,
+                TimeUnit.NANOSECONDS, 2, 3);
+        final CountDownLatch latch = new CountDownLatch(4);
+        final AtomicLongArray lateness = new AtomicLongArray(4);
+        sched.submit(new Runnable() {
+            @Override public void run() {
+                // in the wheel thread, right after a tick;
+                final long start = System.nanoTime();
+                for (int i = 0; i < 4; i++) {
+                    final int index = i;
+                    final long delay = (4 + i) * tick;
+                    sched.submit(new Runnable() {
+                        @Override public void run() {
+                            lateness.set(index, System.nanoTime() - start - delay);
+                            latch.countDown();
+                        }
+                    }, delay, TimeUnit.NANOSECONDS);
+                }
+            }
+        }, 1, TimeUnit.NANOSECONDS);
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        sched.shutdown();
+        for (int i = 0; i < 4; i++) {
+            // about a tick (deadline is rounded up to the next tick), not two;
+            assertTrue(lateness.toString(), lateness.get(i) >= 0 && lateness.get(i) < tick * 3 / 2);
+        }
+    }
+
+    @Test(timeout = 20000) public void testRandomAutomaton() throws Throwable {
+        final HashedWheelScheduler sched = new HashedWheelScheduler(exec, exec, 1, TimeUnit.MILLISECONDS);
+        LongFunction<RandomAutomaton> delay = toDelay(1, 20);
+        RandomAutomaton a = RandomAutomaton.builder()
+                .randomizer(Randomizers.uniform())
+                .jumpsBegin(stateA)
+                .jump(stateA, stateB).maybe(0.5).delay(delay)
+                .loop(stateA).nodelay()
+                .jump(stateB, stateC).maybe(0.5).delay(delay)
+                .loop(stateB).nodelay()
+                .jump(stateC, null).delay(delay)
+                .jumpsEnd()
+                .build();
+        Automaton.StopDescription<?> d = a.start(sched).get();
+        assertEquals(Automaton.StopReason.NATURAL, d.getReason());
+        assertTrue(a.isStopped());
+        sched.shutdown();
+    }
+}
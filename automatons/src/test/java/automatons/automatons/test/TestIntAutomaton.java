@@ -0,0 +1,141 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.Automaton;
+import automatons.automatons.AutomatonStateException;
+import automatons.automatons.IntAutomaton;
+import automatons.automatons.sched.AutomatonScheduler;
+
+public class TestIntAutomaton {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    /**
+     * switch-based: 1000 -> 2000 -> 3000 -> 1000 ..., states beyond the
+     * Integer cache;
+     */
+    protected static class AbcIntAutomaton extends IntAutomaton {
+        int total = 100;
+
+        protected AbcIntAutomaton(Builder b) {
+            super(b);
+        }
+
+        @Override protected StepResult step(int currentState) {
+            switch (currentState) {
+            case 1000:
+                return total-- == 0 ? nextEnd() : nextInt(2000);
+            case 2000:
+                return nextJoinInt(3000);
+            case 3000:
+                return nextInt(1000, 1);
+            default:
+                throw errorStateUndefined(currentState);
+            }
+        }
+
+        public static class Builder extends BuilderBase<Builder, AbcIntAutomaton> {
+            protected Builder() {
+                super(1000);
+            }
+
+            public AbcIntAutomaton build() {
+                return new AbcIntAutomaton(this);
+            }
+        }
+    }
+
+    @Test(timeout = 10000) public void testSwitch() throws Throwable {
+        final AbcIntAutomaton a = new AbcIntAutomaton.Builder().build();
+        final Automaton.StopDescription<Integer> d = a.start(sched).get();
+        assertEquals(Automaton.StopReason.NATURAL, d.getReason());
+        assertEquals(-1, a.total);
+        assertNull(d.getLastState());
+        assertEquals(IntAutomaton.END, ((IntAutomaton.IntStopDescription) d).getLastIntState());
+    }
+
+    /**
+     * table-based: counts up and sleeps forever in state 2 (state 1 is
+     * undefined), or goes to a negative state if count starts at -1;
+     */
+    protected static class TableAutomaton extends IntAutomaton {
+        int count;
+
+        static final IntStep<TableAutomaton> COUNT = new IntStep<TableAutomaton>() {
+            @Override public StepResult step(TableAutomaton self) {
+                if (self.count < 0) {
+                    return self.nextInt(-5);
+                }
+                return ++self.count < 10 ? self.nextJoinSameState() : self.nextInt(2);
+            }
+        };
+
+        static final IntStep<TableAutomaton> SLEEP = new IntStep<TableAutomaton>() {
+            @Override public StepResult step(TableAutomaton self) {
+                return self.nextInt(2, 1, TimeUnit.HOURS);
+            }
+        };
+
+        protected TableAutomaton(Builder b) {
+            super(b);
+        }
+
+        public static class Builder extends BuilderBase<Builder, TableAutomaton> {
+            protected Builder() {
+                super(0);
+                steps(Arrays.asList(COUNT, null, SLEEP));
+                enableManualStop();
+            }
+
+            public TableAutomaton build() {
+                return new TableAutomaton(this);
+            }
+        }
+    }
+
+    @Test(timeout = 10000) public void testTable() throws Throwable {
+        final TableAutomaton a = new TableAutomaton.Builder().build();
+        a.start(sched);
+        while (a.count < 10) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(10); // let it park in state 2;
+        final Automaton.StopDescription<Integer> d = a.stop().get();
+        assertEquals(Automaton.StopReason.MANUAL, d.getReason());
+        assertEquals(2, ((IntAutomaton.IntStopDescription) d).getLastIntState());
+    }
+
+    @Test(timeout = 10000) public void testUndefinedState() throws Throwable {
+        final TableAutomaton a = new TableAutomaton.Builder().initialState(5).build();
+        final Automaton.StopDescription<Integer> d = a.start(sched).get();
+        assertEquals(Automaton.StopReason.ERROR, d.getReason());
+        assertEquals(5, ((IntAutomaton.IntStopDescription) d).getLastIntState());
+    }
+
+    @Test(timeout = 10000) public void testNegativeState() throws Throwable {
+        final TableAutomaton a = new TableAutomaton.Builder().build();
+        a.count = -1;
+        final Automaton.StopDescription<Integer> d = a.start(sched).get();
+        assertEquals(Automaton.StopReason.ERROR, d.getReason());
+        assertTrue(d.getError() instanceof AutomatonStateException);
+        assertEquals(-5, ((IntAutomaton.IntStopDescription) d).getLastIntState());
+    }
+}
@@ -0,0 +1,209 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.Automaton;
+import automatons.automatons.Automaton.StopDescription;
+import automatons.automatons.AutomatonEngine;
+import automatons.automatons.AutomatonFleet;
+import automatons.automatons.AutomatonListener;
+import automatons.automatons.JumpAutomaton;
+import automatons.automatons.JumpFleet;
+import automatons.automatons.random.Randomizer;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.utility.LongFunction;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+
+public class TestJumpFleet {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    /**
+     * A -> B (maybe 0.5) or A -> A, B -> A; assoc counts the visits of B;
+     * a/b count visits of all bots of the shard;
+     */
+    protected static class CoinBot extends JumpAutomaton<CoinBot.State> {
+        long a, b;
+
+        protected CoinBot(Builder b) {
+            super(b);
+        }
+
+        enum State implements Supplier<StepWithJump<CoinBot>> {
+            A(new StepWithJump<CoinBot>() {
+                @Override public void stepWithJump(CoinBot self) {
+                    self.a++;
+                }
+            }),
+            B(new StepWithJump<CoinBot>() {
+                @Override public void stepWithJump(CoinBot self) {
+                    self.b++;
+                    self.<int[]> getAssoc()[0]++;
+                }
+            });
+
+            private final StepWithJump<CoinBot> step;
+
+            State(StepWithJump<CoinBot> step) {
+                this.step = step;
+            }
+
+            @Override public StepWithJump<CoinBot> get() {
+                return step;
+            }
+        }
+
+        protected static class Builder extends JumpBuilder<Builder, State, CoinBot> {
+            protected Builder() {
+                super(State.class);
+                assocSupplier(new Supplier<int[]>() {
+                    @Override public int[] get() {
+                        return new int[1];
+                    }
+                });
+            }
+
+            public CoinBot build() {
+                return new CoinBot(this);
+            }
+        }
+
+        static final Predicate<CoinBot> tenVisits = new Predicate<CoinBot>() {
+            @Override public boolean apply(CoinBot self) {
+                return self.<int[]> getAssoc()[0] >= 10;
+            }
+        };
+
+        /**
+         * @param end
+         *            bots stop after 10 visits of B
+         */
+        static Function<Randomizer, CoinBot> cursors(final boolean end, final long maxAgeMillis) {
+            return new Function<Randomizer, CoinBot>() {
+                @Override public CoinBot apply(Randomizer r) {
+                    final Builder b = new Builder();
+                    if (maxAgeMillis > 0) {
+                        b.maxAge(maxAgeMillis, TimeUnit.MILLISECONDS);
+                    }
+                    return (end ? b.randomizer(r).jumpsBegin(State.A).jump(State.B, null).when(tenVisits).nodelay()
+                            : b.randomizer(r).jumpsBegin(State.A))
+                            .jump(State.A, State.B).maybe(0.5).delay(JumpAutomaton.<CoinBot> toDelay(1, 3))
+                            .loop(State.A).delay(JumpAutomaton.<CoinBot> toDelay(1, 3))
+                            .jump(State.B, State.A).delay(JumpAutomaton.<CoinBot> toDelay(1))
+                            .jumpsEnd().build();
+                }
+            };
+        }
+    }
+
+    @Test(timeout = 20000) public void testNaturalEnd() throws Throwable {
+        final AutomatonFleet<CoinBot.State> fleet = new AutomatonFleet<>(sched);
+        final JumpFleet<CoinBot.State, CoinBot> bots = new JumpFleet<>(10000, 4, 1, TimeUnit.MILLISECONDS, 42,
+                CoinBot.cursors(true, 0));
+        bots.start(fleet);
+        assertNotNull(bots.bot(0).getState());
+        fleet.awaitAll();
+        assertEquals(10000, fleet.getStopped(Automaton.StopReason.NATURAL));
+        assertEquals(10000, fleet.getStoppedWithoutLastState());
+        assertTrue(bots.bot(9999).isStopped());
+    }
+
+    @Test(timeout = 20000) public void testAgeAndManualStop() throws Throwable {
+        final AutomatonFleet<CoinBot.State> fleet = new AutomatonFleet<>(sched);
+        final JumpFleet<CoinBot.State, CoinBot> bots = new JumpFleet<>(1000, 2, 1, TimeUnit.MILLISECONDS, 42,
+                CoinBot.cursors(false, 200));
+        bots.start(fleet);
+        final JumpFleet<CoinBot.State, CoinBot>.Bot bot = bots.bot(700);
+        bot.stop();
+        while (!bot.isStopped()) {
+            Thread.sleep(1);
+        }
+        assertTrue(bot.getNextStepIn(TimeUnit.MILLISECONDS) <= 3);
+        fleet.awaitAll();
+        assertEquals(1, fleet.getStopped(Automaton.StopReason.MANUAL));
+        assertEquals(999, fleet.getStopped(Automaton.StopReason.AGE));
+        assertTrue(fleet.getAgePercentile(0.5, TimeUnit.MILLISECONDS) >= 200);
+    }
+
+    /**
+     * counts steps;
+     */
+    static class StepCounter implements AutomatonListener {
+        final AtomicLong steps = new AtomicLong();
+
+        @Override public void onStep(AutomatonEngine<?> automaton, Object state, @Nullable Object nextState, long nanos) {
+            steps.incrementAndGet();
+        }
+
+        @Override public void onReact(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+        }
+
+        @Override public void onReactTimeout(AutomatonEngine<?> automaton, Object state, long waitNanos) {
+        }
+
+        @Override public void onTimer(AutomatonEngine<?> automaton, AutomatonScheduler sched, long lagNanos) {
+        }
+
+        @Override public void onJump(JumpAutomaton<?> automaton, Object source, @Nullable Object target) {
+        }
+
+        @Override public void onStop(AutomatonEngine<?> automaton, StopDescription<?> description) {
+        }
+    }
+
+    @Test(timeout = 20000) public void testJoinLoopBudget() throws Throwable {
+        final StepCounter counter = new StepCounter();
+        final List<CoinBot> cursors = new ArrayList<>();
+        final LongFunction<CoinBot> join = new LongFunction<CoinBot>() {
+            @Override public long apply(CoinBot input) {
+                return AutomatonEngine.JOIN_PSEUDO_DELAY;
+            }
+        };
+        final AutomatonFleet<CoinBot.State> fleet = new AutomatonFleet<>(sched);
+        // A -join-> A forever: only the budget lets the ticks (and the age)
+        // advance;
+        final JumpFleet<CoinBot.State, CoinBot> bots = new JumpFleet<>(100, 2, 1, TimeUnit.MILLISECONDS, 42,
+                new Function<Randomizer, CoinBot>() {
+                    @Override public CoinBot apply(Randomizer r) {
+                        final CoinBot cursor = new CoinBot.Builder().randomizer(r).stepBudget(10).listener(counter)
+                                .maxAge(50, TimeUnit.MILLISECONDS).jumpsBegin(CoinBot.State.A).loop(CoinBot.State.A)
+                                .delay(join).jumpsEnd().build();
+                        cursors.add(cursor);
+                        return cursor;
+                    }
+                });
+        bots.start(fleet);
+        fleet.awaitAll();
+        assertEquals(100, fleet.getStopped(Automaton.StopReason.AGE));
+        long a = 0, yields = 0;
+        for (CoinBot cursor : cursors) {
+            a += cursor.a;
+            yields += cursor.getBudgetYields();
+        }
+        assertEquals(a, counter.steps.get());
+        assertTrue("yields " + yields, yields >= 100 * 50 / 3);
+    }
+}
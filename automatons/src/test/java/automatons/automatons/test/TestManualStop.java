@@ -0,0 +1,108 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.HashedWheelScheduler;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class TestManualStop {
+
+    /**
+     * state 1 sleeps for 10 minutes, state 2 waits for a future which is
+     * never completed;
+     */
+    protected static class IdleAutomaton extends AbstractAutomaton<Integer> {
+        final SettableFuture<Object> never = SettableFuture.create();
+
+        protected IdleAutomaton(Builder b) {
+            super(b);
+        }
+
+        @Override protected StepResult step(Integer currentState) {
+            switch (currentState) {
+            case 1:
+                return next(2, 10, TimeUnit.MINUTES);
+            case 2:
+                return nextEnd();
+            case 3:
+                return nextReact(never, new Function<Object, StepResult>() {
+                    @Override public StepResult apply(Object input) {
+                        return nextEnd();
+                    }
+                });
+            default:
+                throw errorStateUndefined(currentState);
+            }
+        }
+
+        public static class Builder extends BuilderBase<Builder, Integer, IdleAutomaton> {
+            protected Builder(int initialState) {
+                super(initialState);
+                enableManualStop();
+            }
+
+            public IdleAutomaton build() {
+                return new IdleAutomaton(this);
+            }
+        }
+    }
+
+    @Test(timeout = 10000) public void testStopSleeping() throws Throwable {
+        final ScheduledThreadPoolExecutor exec = new ScheduledThreadPoolExecutor(2);
+        try {
+            final IdleAutomaton a = new IdleAutomaton.Builder(1).build();
+            a.start(AutomatonScheduler.fromExecutor(exec));
+            assertEquals(1, exec.getQueue().size());
+            final Automaton.StopDescription<?> d = a.stop().get(1, TimeUnit.SECONDS);
+            assertEquals(Automaton.StopReason.MANUAL, d.getReason());
+            assertEquals(2, d.getLastState());
+            assertTrue(a.isStopped());
+            assertEquals(0, exec.getQueue().size()); // timer is released;
+        } finally {
+            exec.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000) public void testStopSleepingOnWheel() throws Throwable {
+        final ScheduledThreadPoolExecutor exec = new ScheduledThreadPoolExecutor(2);
+        final HashedWheelScheduler sched = AutomatonScheduler.timingWheel(exec, 1, TimeUnit.MILLISECONDS);
+        try {
+            final IdleAutomaton a = new IdleAutomaton.Builder(1).build();
+            a.start(sched);
+            final Automaton.StopDescription<?> d = a.stop().get(1, TimeUnit.SECONDS);
+            assertEquals(Automaton.StopReason.MANUAL, d.getReason());
+            while (sched.pendingTimers() > 0) {
+                Thread.sleep(1); // cancelled timers are purged by the wheel thread;
+            }
+        } finally {
+            sched.shutdown();
+            exec.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000) public void testStopReacting() throws Throwable {
+        final ScheduledThreadPoolExecutor exec = new ScheduledThreadPoolExecutor(2);
+        try {
+            final IdleAutomaton a = new IdleAutomaton.Builder(3).build();
+            a.start(AutomatonScheduler.fromExecutor(exec));
+            final Automaton.StopDescription<?> d = a.stop().get(1, TimeUnit.SECONDS);
+            assertEquals(Automaton.StopReason.MANUAL, d.getReason());
+            assertEquals(3, d.getLastState());
+            a.never.set("late"); // detached callback does nothing;
+            assertTrue(a.isStopped());
+        } finally {
+            exec.shutdown();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.Automaton;
+import automatons.automatons.AutomatonFleet;
+import automatons.automatons.metrics.AutomatonMetrics;
+import automatons.automatons.metrics.LogHistogram;
+import automatons.automatons.random.Randomizers;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.test.TestCheckpoint.SleepBot;
+import automatons.automatons.test.TestJumpFleet.CoinBot;
+
+public class TestMetrics {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    @Test(timeout = 20000) public void testStepsAndTimers() throws Throwable {
+        final AutomatonMetrics metrics = new AutomatonMetrics();
+        final AutomatonFleet<SleepBot.SleepState> fleet = new AutomatonFleet<>(sched);
+        final List<SleepBot> bots = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final SleepBot.Builder b = new SleepBot.Builder();
+            b.listener(metrics);
+            bots.add(b.build(i, 20));
+        }
+        fleet.startAll(bots);
+        fleet.awaitAll();
+
+        assertEquals(1000, metrics.getTransitions(SleepBot.SleepState.BEGIN, SleepBot.SleepState.WAIT));
+        assertEquals(1000, metrics.getTransitions(SleepBot.SleepState.WAIT, SleepBot.SleepState.DONE));
+        assertEquals(1000, metrics.getTransitions(SleepBot.SleepState.DONE, null));
+        assertEquals(0, metrics.getTransitions(SleepBot.SleepState.BEGIN, SleepBot.SleepState.DONE));
+        assertEquals(1000, metrics.getStepDuration(SleepBot.SleepState.WAIT).getCount());
+        assertEquals(1000, metrics.getStops(Automaton.StopReason.NATURAL));
+
+        final LogHistogram lags = metrics.getTimerLags().get(sched);
+        assertNotNull(lags);
+        assertTrue(lags.getCount() >= 1000);
+        assertTrue(lags.getPercentile(0.5, TimeUnit.MILLISECONDS) < 1000);
+        assertNotNull(metrics.getSlowestState());
+    }
+
+    @Test(timeout = 20000) public void testJumps() throws Throwable {
+        final AutomatonMetrics metrics = new AutomatonMetrics();
+        final CoinBot.Builder b = new CoinBot.Builder();
+        b.listener(metrics).randomizer(Randomizers.uniform(42));
+        final CoinBot bot = b.jumpsBegin(CoinBot.State.A).jump(CoinBot.State.B, null).when(CoinBot.tenVisits)
+                .nodelay().jump(CoinBot.State.A, CoinBot.State.B).maybe(0.5).nodelay().loop(CoinBot.State.A)
+                .nodelay().jump(CoinBot.State.B, CoinBot.State.A).nodelay().jumpsEnd().build();
+        bot.start(sched).get();
+
+        assertEquals(10, metrics.getJumps(CoinBot.State.A, CoinBot.State.B));
+        assertEquals(1, metrics.getJumps(CoinBot.State.B, null));
+        assertEquals(9, metrics.getJumps(CoinBot.State.B, CoinBot.State.A));
+        assertEquals(bot.a, metrics.getJumps(CoinBot.State.A, CoinBot.State.A) + 10);
+        assertEquals(1, metrics.getStops(Automaton.StopReason.NATURAL));
+    }
+}
@@ -0,0 +1,211 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.sched.AdmissionScheduler;
+import automatons.automatons.sched.AutomatonScheduler;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class TestMultiReact {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    // completed futures run listeners inline, all steps run in the test thread;
+    private static final AutomatonScheduler pollSched = AutomatonScheduler.make(exec, null, exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    /**
+     * FAN waits for needed of its calls (0 = all), then counts the done ones
+     * and idles 50 ms (late calls would be seen there), then ends; POLL is
+     * nextReactAll() on completed futures, repeated left times;
+     */
+    protected static class FanBot extends AbstractAutomaton<FanBot.FanState> {
+        static final List<ListenableFuture<String>> ready = ImmutableList.of(Futures.immediateFuture("a"),
+                Futures.immediateFuture("b"), Futures.<String> immediateFailedFuture(new IllegalStateException()));
+
+        final List<SettableFuture<String>> calls = ImmutableList.of(SettableFuture.<String> create(),
+                SettableFuture.<String> create(), SettableFuture.<String> create());
+        final int needed;
+        volatile int done = -1;
+        volatile int handled;
+        int left;
+
+        private final Function<List<SettableFuture<String>>, StepResult> fanHandler = new Function<List<SettableFuture<String>>, StepResult>() {
+            @Override public StepResult apply(List<SettableFuture<String>> input) {
+                handled++;
+                int n = 0;
+                for (SettableFuture<String> call : input) {
+                    n += call.isDone() ? 1 : 0;
+                }
+                done = n;
+                return next(FanState.IDLE, 50, TimeUnit.MILLISECONDS);
+            }
+        };
+
+        private final Function<List<ListenableFuture<String>>, StepResult> pollHandler = new Function<List<ListenableFuture<String>>, StepResult>() {
+            @Override public StepResult apply(List<ListenableFuture<String>> input) {
+                return left-- > 0 ? nextJoin(FanState.POLL) : nextEnd();
+            }
+        };
+
+        protected FanBot(Builder b, int needed) {
+            super(b);
+            this.needed = needed;
+        }
+
+        enum FanState implements Supplier<AbstractStep<FanBot>> {
+            FAN, POLL, IDLE;
+
+            private static final Step<FanBot> step = new Step<FanBot>() {
+                @Override public StepResult step(FanBot self) {
+                    switch (self.getCurrentState()) {
+                    case FAN:
+                        return self.needed == 0 ? self.nextReactAll(self.calls, self.fanHandler)
+                                : self.needed == 1 ? self.nextReactAny(self.calls, self.fanHandler) : self
+                                        .nextReactFirst(self.needed, self.calls, self.fanHandler);
+                    case POLL:
+                        return self.nextReactAll(ready, self.pollHandler);
+                    default:
+                        return self.nextEnd();
+                    }
+                }
+            };
+
+            @Override public AbstractStep<FanBot> get() {
+                return step;
+            }
+        }
+
+        protected static class Builder extends BuilderBase<Builder, FanState, FanBot> {
+            protected Builder(FanState initial) {
+                super(initial);
+            }
+
+            public FanBot build(int needed) {
+                return new FanBot(this, needed);
+            }
+        }
+    }
+
+    @Test(timeout = 20000) public void testAll() throws Throwable {
+        final FanBot bot = new FanBot.Builder(FanBot.FanState.FAN).build(0);
+        final ListenableFuture<? extends Automaton.StopDescription<FanBot.FanState>> stop = bot.start(sched);
+        bot.calls.get(2).set("c");
+        bot.calls.get(0).setException(new IllegalStateException()); // failed counts as done;
+        Thread.sleep(20);
+        assertEquals(-1, bot.done);
+        bot.calls.get(1).set("b");
+        assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        assertEquals(3, bot.done);
+        assertEquals(1, bot.handled);
+    }
+
+    @Test(timeout = 20000) public void testAnyAndFirst() throws Throwable {
+        final FanBot any = new FanBot.Builder(FanBot.FanState.FAN).build(1);
+        final ListenableFuture<? extends Automaton.StopDescription<FanBot.FanState>> anyStop = any.start(sched);
+        any.calls.get(1).set("b");
+        Thread.sleep(20);
+        any.calls.get(0).set("a"); // while idle, ignored;
+        any.calls.get(2).set("c");
+        assertEquals(Automaton.StopReason.NATURAL, anyStop.get().getReason());
+        assertEquals(1, any.done);
+        assertEquals(1, any.handled);
+
+        final FanBot two = new FanBot.Builder(FanBot.FanState.FAN).build(2);
+        final ListenableFuture<? extends Automaton.StopDescription<FanBot.FanState>> twoStop = two.start(sched);
+        two.calls.get(0).set("a");
+        Thread.sleep(20);
+        assertEquals(-1, two.done);
+        two.calls.get(2).set("c");
+        assertEquals(Automaton.StopReason.NATURAL, twoStop.get().getReason());
+        assertEquals(2, two.done);
+        assertEquals(1, two.handled);
+    }
+
+    @Test(timeout = 20000) public void testOneAdmissionSlotPerStep() throws Throwable {
+        final AdmissionScheduler admission = new AdmissionScheduler(sched, Integer.MAX_VALUE, 10);
+        final FanBot bot = new FanBot.Builder(FanBot.FanState.FAN).build(1);
+        final ListenableFuture<? extends Automaton.StopDescription<FanBot.FanState>> stop = admission.start(bot);
+        while (admission.getInFlightReacts() == 0) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(20);
+        assertEquals(1, admission.getInFlightReacts());
+        bot.calls.get(1).set("b");
+        assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        // the other calls never complete, the slot was released on resume;
+        assertEquals(0, admission.getInFlightReacts());
+    }
+
+    private static WeakReference<FanBot> runAny(List<SettableFuture<String>> never) throws Exception {
+        final FanBot bot = new FanBot.Builder(FanBot.FanState.FAN).build(1);
+        never.add(bot.calls.get(0));
+        final ListenableFuture<? extends Automaton.StopDescription<FanBot.FanState>> stop = bot.start(sched);
+        bot.calls.get(1).set("b");
+        stop.get();
+        return new WeakReference<>(bot);
+    }
+
+    @Test(timeout = 20000) public void testAnyLeavesNoListener() throws Throwable {
+        final List<SettableFuture<String>> never = new ArrayList<>();
+        final WeakReference<FanBot> ref = runAny(never);
+        // the call which never answers doesn't keep its automaton;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+        assertTrue(!never.get(0).isDone());
+    }
+
+    private static long allocatedBytes(FanBot bot, int reacts) throws Exception {
+        final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        final long id = Thread.currentThread().getId();
+        bot.left = reacts;
+        final long before = mx.getThreadAllocatedBytes(id);
+        final ListenableFuture<? extends Automaton.StopDescription<FanBot.FanState>> stop = bot.start(pollSched);
+        final long after = mx.getThreadAllocatedBytes(id);
+        assertTrue(stop.isDone());
+        assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        return after - before;
+    }
+
+    @Test(timeout = 60000) public void testSteadyStateAllocatesNothing() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final FanBot bot = new FanBot.Builder(FanBot.FanState.POLL).build(0);
+        for (int i = 0; i < 20; i++) {
+            allocatedBytes(bot, 10000); // warm up (jit);
+        }
+        final long small = allocatedBytes(bot, 1000);
+        final long large = allocatedBytes(bot, 101000);
+        assertTrue("allocated " + (large - small) + " bytes per 100k wait-all steps", large - small < 8192);
+    }
+}
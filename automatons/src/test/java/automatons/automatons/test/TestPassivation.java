@@ -0,0 +1,138 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.Automaton;
+import automatons.automatons.AutomatonCheckpoint;
+import automatons.automatons.AutomatonFleet;
+import automatons.automatons.PassivationStore;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.test.TestCheckpoint.SleepBot;
+
+import com.google.common.base.Ticker;
+
+/**
+ * SleepBot/codec of {@link TestCheckpoint}: BEGIN -> WAIT (long delay) ->
+ * DONE -> end;
+ */
+public class TestPassivation {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    @Test(timeout = 20000) public void testRehydration() throws Throwable {
+        final AutomatonFleet<SleepBot.SleepState> fleet = new AutomatonFleet<>(sched);
+        final PassivationStore<SleepBot.SleepState, SleepBot> store = new PassivationStore<>(fleet,
+                TestCheckpoint.codec, 100, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 10000; i++) {
+            fleet.start(new SleepBot.Builder().build(i, 300));
+        }
+        Thread.sleep(100);
+        assertEquals(10000, store.getPassivated());
+        assertTrue(store.getOffHeapBytes() > 0);
+        fleet.awaitAll();
+        assertEquals(10000, fleet.getStopped(Automaton.StopReason.NATURAL));
+        assertEquals(10000, store.getRehydratedTotal());
+        assertEquals(0, store.getPassivated());
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            assertTrue(store.getHeapSavedPerAutomaton() > 0);
+        }
+    }
+
+    @Test(timeout = 20000) public void testStopAll() throws Throwable {
+        final AutomatonFleet<SleepBot.SleepState> fleet = new AutomatonFleet<>(sched);
+        final PassivationStore<SleepBot.SleepState, SleepBot> store = new PassivationStore<>(fleet,
+                TestCheckpoint.codec, 100, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 1000; i++) {
+            fleet.start(new SleepBot.Builder().build(i, TimeUnit.HOURS.toMillis(1)));
+        }
+        while (store.getPassivated() < 1000) {
+            Thread.sleep(1);
+        }
+        store.stopAll();
+        fleet.awaitAll();
+        assertEquals(1000, fleet.getStopped(Automaton.StopReason.MANUAL));
+        assertEquals(1000, fleet.getLastStateCount(SleepBot.SleepState.WAIT));
+        assertEquals(0, store.getPassivated());
+    }
+
+    @Test(timeout = 20000) public void testCodecFailure() throws Throwable {
+        final AutomatonCheckpoint.Codec<SleepBot.SleepState, SleepBot> broken = new AutomatonCheckpoint.Codec<SleepBot.SleepState, SleepBot>() {
+            @Override public void writeState(SleepBot.SleepState state, ByteBuffer out) {
+                TestCheckpoint.codec.writeState(state, out);
+            }
+
+            @Override public SleepBot.SleepState readState(ByteBuffer in) {
+                return TestCheckpoint.codec.readState(in);
+            }
+
+            @Override public void writeAssoc(SleepBot bot, ByteBuffer out) {
+                TestCheckpoint.codec.writeAssoc(bot, out);
+            }
+
+            @Override public SleepBot create(ByteBuffer in) {
+                throw new IllegalStateException("corrupt record");
+            }
+        };
+        final AutomatonFleet<SleepBot.SleepState> fleet = new AutomatonFleet<>(sched);
+        final PassivationStore<SleepBot.SleepState, SleepBot> store = new PassivationStore<>(fleet, broken, 50,
+                TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 100; i++) {
+            fleet.start(new SleepBot.Builder().build(i, 100));
+        }
+        assertTrue(fleet.awaitAll(10, TimeUnit.SECONDS));
+        assertEquals(100, fleet.getStopped(Automaton.StopReason.ERROR));
+        assertEquals(100, fleet.getLastStateCount(SleepBot.SleepState.WAIT));
+        assertEquals(0, store.getPassivated());
+    }
+
+    @Test(timeout = 20000) public void testStopAllCancelsTimersAndUsesMemberTicker() throws Throwable {
+        final ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1);
+        try {
+            // far from System.nanoTime(), so that the default ticker would be seen;
+            final AtomicLong now = new AtomicLong(Long.MIN_VALUE / 2);
+            final Ticker ticker = new Ticker() {
+                @Override public long read() {
+                    return now.get();
+                }
+            };
+            final AutomatonFleet<SleepBot.SleepState> fleet = new AutomatonFleet<>(
+                    AutomatonScheduler.fromExecutor(timers));
+            final PassivationStore<SleepBot.SleepState, SleepBot> store = new PassivationStore<>(fleet,
+                    TestCheckpoint.codec, 100, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < 100; i++) {
+                fleet.start(new SleepBot.Builder().ticker(ticker).build(i, TimeUnit.HOURS.toMillis(1)));
+            }
+            while (store.getPassivated() < 100) {
+                Thread.sleep(1);
+            }
+            assertEquals(100, timers.getQueue().size());
+            now.addAndGet(TimeUnit.HOURS.toNanos(1));
+            store.stopAll();
+            fleet.awaitAll();
+            assertEquals(0, timers.getQueue().size());
+            assertEquals(100, fleet.getStopped(Automaton.StopReason.MANUAL));
+            final long age = fleet.getAgePercentile(0.5, TimeUnit.MINUTES);
+            assertTrue("age " + age, age >= 60 && age < 120);
+        } finally {
+            timers.shutdownNow();
+        }
+    }
+}
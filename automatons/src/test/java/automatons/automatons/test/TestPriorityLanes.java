@@ -0,0 +1,118 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.PriorityLaneScheduler;
+import automatons.automatons.sched.PriorityLaneScheduler.Dispatch;
+
+public class TestPriorityLanes {
+
+    private static Runnable record(final List<String> log, final String name) {
+        return new Runnable() {
+            @Override public void run() {
+                log.add(name);
+            }
+        };
+    }
+
+    /**
+     * one worker is blocked while both lanes are filled, then the order of
+     * dispatch shows the policy;
+     */
+    private static List<String> dispatchOrder(Dispatch dispatch, int... weights) throws InterruptedException {
+        final PriorityLaneScheduler sched = AutomatonScheduler.priorityLanes(1, dispatch, weights);
+        try {
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch gate = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(1);
+            final List<String> log = new CopyOnWriteArrayList<>();
+            final AutomatonScheduler high = sched.bind(AutomatonScheduler.PRIORITY_HIGH);
+            final AutomatonScheduler low = sched.bind(AutomatonScheduler.PRIORITY_LOW);
+            low.submit(new Runnable() {
+                @Override public void run() {
+                    started.countDown();
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, 0, TimeUnit.NANOSECONDS);
+            started.await();
+            for (int i = 0; i < 4; i++) {
+                low.submit(record(log, "low"), 0, TimeUnit.NANOSECONDS);
+            }
+            for (int i = 0; i < 4; i++) {
+                high.submit(record(log, "high"), 0, TimeUnit.NANOSECONDS);
+            }
+            low.submit(new Runnable() {
+                @Override public void run() {
+                    done.countDown();
+                }
+            }, 0, TimeUnit.NANOSECONDS);
+            assertEquals(9, sched.getDepth(0) + sched.getDepth(1));
+            gate.countDown();
+            done.await();
+            return log;
+        } finally {
+            sched.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000) public void testStrict() throws Throwable {
+        final List<String> log = dispatchOrder(Dispatch.STRICT, 1, 1);
+        assertEquals("[high, high, high, high, low, low, low, low]", log.toString());
+    }
+
+    @Test(timeout = 10000) public void testWeighted() throws Throwable {
+        final List<String> log = dispatchOrder(Dispatch.WEIGHTED, 1, 1);
+        // lanes alternate while both have work;
+        assertEquals(2, log.subList(0, 4).lastIndexOf("high") - log.subList(0, 4).indexOf("high"));
+    }
+
+    protected static class CountdownAutomaton extends AbstractAutomaton<Integer> {
+        protected CountdownAutomaton(Builder b) {
+            super(b);
+        }
+
+        @Override protected StepResult step(Integer currentState) {
+            return currentState == 0 ? nextEnd() : next(currentState - 1, currentState % 2);
+        }
+
+        public static class Builder extends BuilderBase<Builder, Integer, CountdownAutomaton> {
+            protected Builder() {
+                super(10);
+            }
+
+            public CountdownAutomaton build() {
+                return new CountdownAutomaton(this);
+            }
+        }
+    }
+
+    @Test(timeout = 10000) public void testAutomatonLane() throws Throwable {
+        final PriorityLaneScheduler sched = AutomatonScheduler.priorityLanes(2, Dispatch.WEIGHTED, 4, 2, 1);
+        try {
+            final Automaton.StopDescription<?> d = new CountdownAutomaton.Builder()
+                    .priority(AutomatonScheduler.PRIORITY_HIGH).build().start(sched).get();
+            assertEquals(Automaton.StopReason.NATURAL, d.getReason());
+            assertEquals(12, sched.getDispatched(0)); // first step is submitted too;
+            assertEquals(0, sched.getDispatched(1));
+            assertEquals(0, sched.getDepth(0));
+            assertTrue(sched.getLag(0, TimeUnit.NANOSECONDS) > 0);
+        } finally {
+            sched.shutdown();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.sched.AdmissionScheduler;
+import automatons.automatons.sched.AutomatonScheduler;
+
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * react steps on completed futures run inline in the test thread (no
+ * futuresExecutor), so the bytes allocated by this thread are the bytes
+ * allocated by the react path itself; futures completed later run the react
+ * path inline in the completing thread, which is measured the same way;
+ */
+public class TestReactAllocation {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(1);
+
+    // instantExec is never used: all steps are joined;
+    private static final AutomatonScheduler sched = AutomatonScheduler.make(exec, null, exec);
+
+    // completes the futures of AsyncBot;
+    private static final ExecutorService completer = Executors.newSingleThreadExecutor();
+
+    private static final Executor direct = new Executor() {
+        @Override public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+        completer.shutdown();
+    }
+
+    protected static class PollBot extends AbstractAutomaton<PollBot.PollState> {
+        static final ListenableFuture<Object> ready = Futures.<Object> immediateFuture("ready");
+        int left;
+
+        enum PollState implements Supplier<AbstractStep<PollBot>> {
+            POLL(new ReactStep<PollBot, Object>() {
+                @Override public ListenableFuture<Object> future(PollBot self) {
+                    return ready;
+                }
+
+                @Override public StepResult step(PollBot self, Object result) {
+                    return self.left-- > 0 ? self.nextJoin(POLL) : self.nextEnd();
+                }
+            });
+
+            private final AbstractStep<PollBot> step;
+
+            private PollState(AbstractStep<PollBot> step) {
+                this.step = step;
+            }
+
+            @Override public AbstractStep<PollBot> get() {
+                return step;
+            }
+        }
+
+        protected PollBot(Builder b) {
+            super(b);
+        }
+
+        public static class Builder extends BuilderBase<Builder, PollState, PollBot> {
+            protected Builder() {
+                super(PollState.POLL);
+            }
+
+            public PollBot build() {
+                return new PollBot(this);
+            }
+        }
+    }
+
+    /**
+     * waits for futures[0], futures[1]... which are completed later by the
+     * completer thread;
+     */
+    protected static class AsyncBot extends AbstractAutomaton<AsyncBot.AsyncState> {
+        SettableFuture<Object>[] futures;
+        int next;
+
+        enum AsyncState implements Supplier<AbstractStep<AsyncBot>> {
+            WAIT(new ReactStep<AsyncBot, Object>() {
+                @Override public ListenableFuture<Object> future(AsyncBot self) {
+                    return self.futures[self.next++];
+                }
+
+                @Override public StepResult step(AsyncBot self, Object result) {
+                    return self.next < self.futures.length ? self.nextJoin(WAIT) : self.nextEnd();
+                }
+            });
+
+            private final AbstractStep<AsyncBot> step;
+
+            private AsyncState(AbstractStep<AsyncBot> step) {
+                this.step = step;
+            }
+
+            @Override public AbstractStep<AsyncBot> get() {
+                return step;
+            }
+        }
+
+        protected AsyncBot(Builder b) {
+            super(b);
+        }
+
+        public static class Builder extends BuilderBase<Builder, AsyncState, AsyncBot> {
+            protected Builder() {
+                super(AsyncState.WAIT);
+            }
+
+            public AsyncBot build() {
+                return new AsyncBot(this);
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" }) private static SettableFuture<Object>[] futures(int n) {
+        final SettableFuture<Object>[] futures = new SettableFuture[n];
+        for (int i = 0; i < n; i++) {
+            futures[i] = SettableFuture.create();
+        }
+        return futures;
+    }
+
+    /**
+     * bytes allocated by the completer thread while it completes the futures
+     * one by one, bot == null: the futures' own cost (a listener is added to
+     * each and run on set());
+     */
+    private static long completerBytes(final AsyncBot bot, AutomatonScheduler sched, int reacts) throws Exception {
+        final SettableFuture<Object>[] futures = futures(reacts);
+        ListenableFuture<? extends Automaton.StopDescription<AsyncBot.AsyncState>> stop = null;
+        if (bot != null) {
+            bot.futures = futures;
+            bot.next = 0;
+            stop = bot.start(sched); // parks on futures[0];
+        }
+        final long bytes = completer.submit(new Callable<Long>() {
+            @Override public Long call() {
+                final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory
+                        .getThreadMXBean();
+                final long id = Thread.currentThread().getId();
+                final Runnable nop = new Runnable() {
+                    @Override public void run() {
+                    }
+                };
+                final long before = mx.getThreadAllocatedBytes(id);
+                for (SettableFuture<Object> future : futures) {
+                    if (bot == null) {
+                        future.addListener(nop, direct);
+                    }
+                    future.set("done");
+                }
+                return mx.getThreadAllocatedBytes(id) - before;
+            }
+        }).get();
+        if (stop != null) {
+            assertTrue(stop.isDone());
+            assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        }
+        return bytes;
+    }
+
+    @Test(timeout = 60000) public void testLateFuturesAllocateNothingMore() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final AutomatonScheduler[] scheds = { sched,
+                new AdmissionScheduler(sched, Integer.MAX_VALUE, Integer.MAX_VALUE) };
+        for (AutomatonScheduler s : scheds) {
+            final AsyncBot bot = new AsyncBot.Builder().build();
+            for (int i = 0; i < 20; i++) {
+                completerBytes(bot, s, 10000); // warm up (jit);
+                completerBytes(null, s, 10000);
+            }
+            final long engine = completerBytes(bot, s, 101000) - completerBytes(bot, s, 1000);
+            final long futures = completerBytes(null, s, 101000) - completerBytes(null, s, 1000);
+            // the futures' listener nodes are theirs, the react path adds nothing;
+            assertTrue(s + ": allocated " + (engine - futures) + " bytes more than futures per 100k react steps",
+                    engine - futures < 8192);
+        }
+    }
+
+    private static long allocatedBytes(PollBot bot, int reacts) throws Exception {
+        final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        final long id = Thread.currentThread().getId();
+        bot.left = reacts;
+        final long before = mx.getThreadAllocatedBytes(id);
+        final ListenableFuture<? extends Automaton.StopDescription<PollBot.PollState>> stop = bot.start(sched);
+        final long after = mx.getThreadAllocatedBytes(id);
+        assertTrue(stop.isDone());
+        assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        return after - before;
+    }
+
+    @Test(timeout = 60000) public void testSteadyStateReactAllocatesNothing() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final PollBot bot = new PollBot.Builder().build();
+        for (int i = 0; i < 20; i++) {
+            allocatedBytes(bot, 10000); // warm up (jit);
+        }
+        final long small = allocatedBytes(bot, 1000);
+        final long large = allocatedBytes(bot, 101000);
+        // per start() costs are the same, 100k more react steps must be free;
+        assertTrue("allocated " + (large - small) + " bytes per 100k react steps", large - small < 8192);
+    }
+}
@@ -0,0 +1,171 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.AutomatonFleet;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.utility.FunctionWithError;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class TestReactDeadline {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    enum Mode {
+        STATE, ERROR_HANDLER, FAIL
+    }
+
+    /**
+     * CALL waits for the answer 50 ms: ANSWERED or TIMEOUT (or handler's
+     * error) -> end;
+     */
+    protected static class CallBot extends AbstractAutomaton<CallBot.CallState> {
+        final SettableFuture<String> answer = SettableFuture.create();
+        final Mode mode;
+        volatile String result;
+
+        protected CallBot(Builder b, Mode mode) {
+            super(b);
+            this.mode = mode;
+        }
+
+        private final Function<String, StepResult> handler = new Function<String, StepResult>() {
+            @Override public StepResult apply(String input) {
+                result = input;
+                return next(CallState.ANSWERED);
+            }
+        };
+
+        private final FunctionWithError<String, StepResult> errorHandler = new FunctionWithError<String, StepResult>() {
+            @Override public StepResult apply(String input) {
+                result = input;
+                return next(CallState.ANSWERED);
+            }
+
+            @Override public StepResult error(Throwable error) {
+                result = error.getClass().getSimpleName();
+                return nextEnd();
+            }
+        };
+
+        enum CallState implements Supplier<AbstractStep<CallBot>> {
+            CALL, ANSWERED, TIMEOUT;
+
+            private static final Step<CallBot> step = new Step<CallBot>() {
+                @Override public StepResult step(CallBot self) {
+                    switch (self.getCurrentState()) {
+                    case CALL:
+                        switch (self.mode) {
+                        case STATE:
+                            return self.nextReact(self.answer, 50, TimeUnit.MILLISECONDS, TIMEOUT, self.handler);
+                        case ERROR_HANDLER:
+                            return self.nextReact(self.answer, 50, TimeUnit.MILLISECONDS, self.errorHandler);
+                        default:
+                            return self.nextReact(self.answer, 50, TimeUnit.MILLISECONDS, self.handler);
+                        }
+                    case TIMEOUT:
+                        self.result = "timeout";
+                        return self.nextEnd();
+                    default:
+                        return self.next(null, 100, TimeUnit.MILLISECONDS); // a stray deadline would be seen here;
+                    }
+                }
+            };
+
+            @Override public AbstractStep<CallBot> get() {
+                return step;
+            }
+        }
+
+        protected static class Builder extends BuilderBase<Builder, CallState, CallBot> {
+            protected Builder() {
+                super(CallState.CALL);
+            }
+
+            public CallBot build(Mode mode) {
+                return new CallBot(this, mode);
+            }
+        }
+    }
+
+    @Test(timeout = 20000) public void testTimeoutState() throws Throwable {
+        final CallBot bot = new CallBot.Builder().build(Mode.STATE);
+        final long t0 = System.nanoTime();
+        final Automaton.StopDescription<CallBot.CallState> stop = bot.start(sched).get();
+        assertTrue(System.nanoTime() - t0 >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(Automaton.StopReason.NATURAL, stop.getReason());
+        assertEquals("timeout", bot.result);
+        assertEquals(1, bot.getReactTimeouts());
+        bot.answer.set("late"); // nobody listens;
+        assertEquals("timeout", bot.result);
+    }
+
+    @Test(timeout = 20000) public void testTimeoutError() throws Throwable {
+        final CallBot handled = new CallBot.Builder().build(Mode.ERROR_HANDLER);
+        assertEquals(Automaton.StopReason.NATURAL, handled.start(sched).get().getReason());
+        assertEquals("TimeoutException", handled.result);
+
+        final CallBot failed = new CallBot.Builder().build(Mode.FAIL);
+        final Automaton.StopDescription<CallBot.CallState> stop = failed.start(sched).get();
+        assertEquals(Automaton.StopReason.ERROR, stop.getReason());
+        assertTrue(stop.getError() instanceof TimeoutException);
+        assertNull(failed.result);
+    }
+
+    @Test(timeout = 20000) public void testAnsweredInTime() throws Throwable {
+        final CallBot bot = new CallBot.Builder().build(Mode.STATE);
+        final ListenableFuture<? extends Automaton.StopDescription<CallBot.CallState>> future = bot.start(sched);
+        bot.answer.set("ok");
+        final Automaton.StopDescription<CallBot.CallState> stop = future.get();
+        assertEquals("ok", bot.result);
+        assertEquals(0, bot.getReactTimeouts());
+        assertEquals(Automaton.StopReason.NATURAL, stop.getReason());
+    }
+
+    @Test(timeout = 20000) public void testFleetCountsAndNoLeak() throws Throwable {
+        final AutomatonFleet<CallBot.CallState> fleet = new AutomatonFleet<>(sched);
+        final List<CallBot> bots = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            bots.add(new CallBot.Builder().build(Mode.STATE));
+        }
+        final SettableFuture<String> answer = bots.get(0).answer;
+        final WeakReference<CallBot> ref = new WeakReference<>(bots.get(0));
+        fleet.startAll(bots);
+        fleet.awaitAll();
+        assertEquals(100, fleet.getReactTimeouts());
+        assertEquals(100, fleet.getStopped(Automaton.StopReason.NATURAL));
+        bots.clear();
+        // the future which never answered doesn't keep its automaton;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+        assertTrue(!answer.isDone());
+    }
+}
@@ -0,0 +1,154 @@
+package automatons.automatons.test;
+
+import static automatons.automatons.JumpAutomaton.toDelay;
+import static automatons.automatons.test.TestAutomaton.RandomAutomaton.State.stateA;
+import static automatons.automatons.test.TestAutomaton.RandomAutomaton.State.stateB;
+import static automatons.automatons.test.TestAutomaton.RandomAutomaton.State.stateC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.random.Randomizers;
+import automatons.automatons.sched.Cancellable;
+import automatons.automatons.sched.SimulatedScheduler;
+import automatons.automatons.test.TestAutomaton.RandomAutomaton;
+import automatons.automatons.utility.LongFunction;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class TestSimulatedScheduler {
+
+    /**
+     * waits for a future which is completed by a simulated timer;
+     */
+    protected static class ReactAutomaton extends AbstractAutomaton<Integer> {
+        private final SimulatedScheduler sched;
+
+        protected ReactAutomaton(Builder b, SimulatedScheduler sched) {
+            super(b);
+            this.sched = sched;
+        }
+
+        @Override protected StepResult step(Integer currentState) {
+            switch (currentState) {
+            case 1: {
+                final SettableFuture<String> reply = SettableFuture.create();
+                sched.submit(new Runnable() {
+                    @Override public void run() {
+                        reply.set("OK");
+                    }
+                }, 5, TimeUnit.SECONDS);
+                return nextReact(reply, new Function<String, StepResult>() {
+                    @Override public StepResult apply(String input) {
+                        return next(2, 1000);
+                    }
+                });
+            }
+            case 2:
+                return nextEnd();
+            default:
+                throw errorStateUndefined(currentState);
+            }
+        }
+
+        public static class Builder extends BuilderBase<Builder, Integer, ReactAutomaton> {
+            protected Builder() {
+                super(1);
+            }
+
+            public ReactAutomaton build(SimulatedScheduler sched) {
+                return new ReactAutomaton(this, sched);
+            }
+        }
+    }
+
+    private RandomAutomaton probabilityAutomaton(SimulatedScheduler sched, long seed) {
+        LongFunction<RandomAutomaton> delay = toDelay(0, 20);
+        return RandomAutomaton.builder()
+                .maxAge(20, TimeUnit.SECONDS)
+                .ticker(sched.ticker())
+                .randomizer(Randomizers.uniform(seed))
+                .jumpsBegin(stateA)
+                .jump(stateA, stateB).maybe(0.7).delay(delay)
+                .jump(stateA, stateC).maybe(0.1).delay(delay)
+                .loop(stateA).delay(delay)
+                .jump(stateB, stateA).delay(delay)
+                .jump(stateC, stateA).delay(delay)
+                .jumpsEnd()
+                .build();
+    }
+
+    @Test(timeout = 10000) public void testProbability() throws Throwable {
+        final SimulatedScheduler sched = new SimulatedScheduler();
+        final RandomAutomaton a = probabilityAutomaton(sched, 42);
+        final ListenableFuture<? extends Automaton.StopDescription<RandomAutomaton.State>> death = a.start(sched);
+        sched.runUntilIdle();
+        assertTrue(death.isDone());
+        assertEquals(Automaton.StopReason.AGE, death.get().getReason());
+        assertTrue(death.get().getAge(TimeUnit.SECONDS) >= 20);
+        assertTrue(a.a > a.b && a.b > a.c && a.c >= 1);
+    }
+
+    @Test(timeout = 10000) public void testDeterministic() throws Throwable {
+        final SimulatedScheduler s1 = new SimulatedScheduler(), s2 = new SimulatedScheduler();
+        final RandomAutomaton a1 = probabilityAutomaton(s1, 7), a2 = probabilityAutomaton(s2, 7);
+        a1.start(s1);
+        a2.start(s2);
+        assertEquals(s1.runUntilIdle(), s2.runUntilIdle());
+        assertEquals(s1.now(TimeUnit.NANOSECONDS), s2.now(TimeUnit.NANOSECONDS));
+        assertEquals(a1.a, a2.a);
+        assertEquals(a1.b, a2.b);
+        assertEquals(a1.c, a2.c);
+    }
+
+    @Test(timeout = 10000) public void testReact() throws Throwable {
+        final SimulatedScheduler sched = new SimulatedScheduler();
+        final ReactAutomaton a = new ReactAutomaton.Builder().ticker(sched.ticker()).build(sched);
+        final ListenableFuture<? extends Automaton.StopDescription<Integer>> stop = a.start(sched);
+        sched.runFor(5, TimeUnit.SECONDS);
+        assertTrue(!stop.isDone());
+        sched.runUntilIdle();
+        assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        assertEquals(6000, stop.get().getAge(TimeUnit.MILLISECONDS));
+        assertEquals(6, sched.now(TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000) public void testCancelled() throws Throwable {
+        final SimulatedScheduler sched = new SimulatedScheduler();
+        final int[] runs = new int[1];
+        final Runnable run = new Runnable() {
+            @Override public void run() {
+                runs[0]++;
+            }
+        };
+        sched.submit(run, 1, TimeUnit.SECONDS);
+        final Cancellable late = sched.submit(run, 10, TimeUnit.SECONDS);
+        assertTrue(late.cancel());
+        assertFalse(late.cancel());
+        // the cancelled event doesn't move the clock and isn't counted;
+        assertEquals(1, sched.runUntilIdle());
+        assertEquals(1, sched.now(TimeUnit.SECONDS));
+        assertFalse(sched.step());
+
+        sched.submit(run, 1, TimeUnit.SECONDS).cancel();
+        final Cancellable ran = sched.submit(run, 2, TimeUnit.SECONDS);
+        sched.submit(run, 3, TimeUnit.SECONDS).cancel();
+        sched.submit(run, 5, TimeUnit.SECONDS);
+        assertTrue(sched.step());
+        assertEquals(3, sched.now(TimeUnit.SECONDS));
+        assertFalse(ran.cancel());
+        assertEquals(0, sched.runFor(2, TimeUnit.SECONDS));
+        assertEquals(1, sched.pending());
+        assertEquals(1, sched.runFor(1, TimeUnit.SECONDS));
+        assertEquals(3, runs[0]);
+        assertEquals(6, sched.now(TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,138 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.sched.AutomatonScheduler;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class TestStageReact {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    private static final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+
+    // no futuresExecutor: the callback runs in the completing thread;
+    private static final AutomatonScheduler direct = AutomatonScheduler.make(exec, null, exec);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    /**
+     * ASK: nextReact() on the answer (50 ms deadline) -> CHECK: StageStep on
+     * the check -> end; TIMEOUT -> end;
+     */
+    protected static class StageBot extends AbstractAutomaton<StageBot.StageState> {
+        final CompletableFuture<String> answer = new CompletableFuture<>();
+        final CompletableFuture<Integer> check = new CompletableFuture<>();
+        volatile String result;
+        volatile int checked;
+
+        private final Function<String, StepResult> handler = new Function<String, StepResult>() {
+            @Override public StepResult apply(String input) {
+                result = input;
+                return next(StageState.CHECK);
+            }
+        };
+
+        protected StageBot(Builder b) {
+            super(b);
+        }
+
+        enum StageState implements Supplier<AbstractStep<StageBot>> {
+            ASK(new Step<StageBot>() {
+                @Override public StepResult step(StageBot self) {
+                    return self.nextReact(self.answer, 50, TimeUnit.MILLISECONDS, TIMEOUT, self.handler);
+                }
+            }),
+            CHECK(new StageStep<StageBot, Integer>() {
+                @Override public CompletionStage<Integer> stage(StageBot self) {
+                    return self.check;
+                }
+
+                @Override public StepResult step(StageBot self, Integer result) {
+                    self.checked = result;
+                    return self.nextEnd();
+                }
+            }),
+            TIMEOUT(new Step<StageBot>() {
+                @Override public StepResult step(StageBot self) {
+                    self.result = "timeout";
+                    return self.nextEnd();
+                }
+            });
+
+            private final AbstractStep<StageBot> step;
+
+            private StageState(AbstractStep<StageBot> step) {
+                this.step = step;
+            }
+
+            @Override public AbstractStep<StageBot> get() {
+                return step;
+            }
+        }
+
+        protected static class Builder extends BuilderBase<Builder, StageState, StageBot> {
+            protected Builder() {
+                super(StageState.ASK);
+            }
+
+            public StageBot build() {
+                return new StageBot(this);
+            }
+        }
+    }
+
+    @Test(timeout = 20000) public void testStages() throws Throwable {
+        for (AutomatonScheduler s : new AutomatonScheduler[] { sched, direct }) {
+            final StageBot bot = new StageBot.Builder().build();
+            final ListenableFuture<? extends Automaton.StopDescription<StageBot.StageState>> stop = bot.start(s);
+            bot.answer.complete("ok");
+            Thread.sleep(20);
+            bot.check.complete(42);
+            assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+            assertEquals("ok", bot.result);
+            assertEquals(42, bot.checked);
+        }
+    }
+
+    @Test(timeout = 20000) public void testCompletedStages() throws Throwable {
+        final StageBot bot = new StageBot.Builder().build();
+        bot.answer.complete("now");
+        bot.check.complete(1);
+        assertEquals(Automaton.StopReason.NATURAL, bot.start(sched).get().getReason());
+        assertEquals("now", bot.result);
+        assertEquals(1, bot.checked);
+    }
+
+    @Test(timeout = 20000) public void testFailureAndDeadline() throws Throwable {
+        final StageBot failed = new StageBot.Builder().build();
+        failed.answer.complete("ok");
+        final IllegalStateException error = new IllegalStateException();
+        failed.check.completeExceptionally(error);
+        final Automaton.StopDescription<StageBot.StageState> stop = failed.start(sched).get();
+        assertEquals(Automaton.StopReason.ERROR, stop.getReason());
+        assertTrue(stop.getError() == error);
+
+        final StageBot late = new StageBot.Builder().build();
+        assertEquals(Automaton.StopReason.NATURAL, late.start(sched).get().getReason());
+        assertEquals("timeout", late.result);
+        assertEquals(1, late.getReactTimeouts());
+    }
+}
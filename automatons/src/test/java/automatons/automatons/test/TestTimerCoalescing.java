@@ -0,0 +1,141 @@
+package automatons.automatons.test;
+
+import static automatons.automatons.JumpAutomaton.toDelay;
+import static automatons.automatons.test.TestAutomaton.RandomAutomaton.State.stateA;
+import static automatons.automatons.test.TestAutomaton.RandomAutomaton.State.stateB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import automatons.automatons.Automaton;
+import automatons.automatons.random.Randomizers;
+import automatons.automatons.sched.AutomatonScheduler;
+import automatons.automatons.sched.Cancellable;
+import automatons.automatons.sched.TimerCounters;
+import automatons.automatons.test.TestAutomaton.RandomAutomaton;
+import automatons.automatons.utility.LongFunction;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class TestTimerCoalescing {
+
+    private static final ScheduledExecutorService exec = Executors.newScheduledThreadPool(4);
+
+    @AfterClass public static void tearDown() {
+        exec.shutdown();
+    }
+
+    @Test(timeout = 20000) public void testSlackWindow() throws Throwable {
+        final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+        final long slack = TimeUnit.MILLISECONDS.toNanos(10);
+        final int total = 2000;
+        final CountDownLatch latch = new CountDownLatch(total);
+        final AtomicInteger early = new AtomicInteger();
+        final AtomicInteger late = new AtomicInteger();
+        final Random random = new Random(42);
+        for (int i = 0; i < total; i++) {
+            final long delay = 1 + random.nextInt(50);
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            sched.submit(new Runnable() {
+                @Override public void run() {
+                    final long now = System.nanoTime();
+                    if (now < deadline) {
+                        early.incrementAndGet();
+                    }
+                    if (now > deadline + slack + TimeUnit.MILLISECONDS.toNanos(500)) {
+                        late.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS, slack);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+        assertEquals(0, late.get());
+        final TimerCounters counters = sched.timerCounters();
+        assertEquals(total, counters.getTimers());
+        // ~51 ms / 10 ms grid, plus the time spent in this loop;
+        assertTrue(counters.toString(), counters.getWakeups() <= 20);
+        assertTrue(counters.getSavedWakeups() >= total - 20);
+    }
+
+    @Test(timeout = 20000) public void testAutomatonSlack() throws Throwable {
+        final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(exec);
+        final LongFunction<RandomAutomaton> delay = toDelay(1, 30);
+        final List<ListenableFuture<? extends Automaton.StopDescription<RandomAutomaton.State>>> stops = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            RandomAutomaton a = RandomAutomaton.builder()
+                    .randomizer(Randomizers.uniform(i))
+                    .timerSlack(20, TimeUnit.MILLISECONDS)
+                    .jumpsBegin(stateA)
+                    .jump(stateA, stateB).delay(delay)
+                    .jump(stateB, null).delay(delay)
+                    .jumpsEnd()
+                    .build();
+            stops.add(a.start(sched));
+        }
+        for (ListenableFuture<? extends Automaton.StopDescription<RandomAutomaton.State>> stop : stops) {
+            assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        }
+        assertEquals(400, sched.timerCounters().getTimers());
+        assertTrue(sched.timerCounters().getSavedWakeups() > 0);
+    }
+
+    @Test(timeout = 20000) public void testCancelledBatch() throws Throwable {
+        final ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1);
+        try {
+            final AutomatonScheduler sched = AutomatonScheduler.fromExecutor(pool);
+            final AtomicInteger fired = new AtomicInteger();
+            final Runnable fire = new Runnable() {
+                @Override public void run() {
+                    fired.incrementAndGet();
+                }
+            };
+            final List<Cancellable> timers = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                timers.add(sched.submit(fire, 1, TimeUnit.HOURS, TimeUnit.HOURS.toNanos(1)));
+            }
+            timers.add(sched.submit(fire, 1, TimeUnit.HOURS));
+            assertEquals(2, pool.getQueue().size());
+            assertEquals(101, sched.timerCounters().getTimers());
+            assertEquals(2, sched.timerCounters().getWakeups());
+
+            for (int i = 0; i < 99; i++) {
+                assertTrue(timers.get(i).cancel());
+            }
+            assertEquals(2, pool.getQueue().size());
+            for (Cancellable timer : timers.subList(99, 101)) {
+                assertTrue(timer.cancel());
+                assertFalse(timer.cancel());
+            }
+            assertEquals(0, pool.getQueue().size());
+            assertEquals(101, sched.timerCounters().getTimers());
+            assertEquals(0, sched.timerCounters().getWakeups());
+
+            // the grid point gets a new batch;
+            final CountDownLatch latch = new CountDownLatch(1);
+            sched.submit(new Runnable() {
+                @Override public void run() {
+                    latch.countDown();
+                }
+            }, 1, TimeUnit.MILLISECONDS, TimeUnit.MILLISECONDS.toNanos(1));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, fired.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
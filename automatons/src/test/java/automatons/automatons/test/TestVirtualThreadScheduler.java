@@ -0,0 +1,137 @@
+package automatons.automatons.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import automatons.automatons.AbstractAutomaton;
+import automatons.automatons.Automaton;
+import automatons.automatons.sched.VirtualThreadScheduler;
+
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class TestVirtualThreadScheduler {
+
+    /**
+     * CALL: BlockingStep, waits for the gate -> DONE after 1 ms -> end;
+     */
+    protected static class CallBot extends AbstractAutomaton<CallBot.CallState> {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        volatile Thread caller;
+        volatile String result;
+
+        protected CallBot(Builder b) {
+            super(b);
+        }
+
+        enum CallState implements Supplier<AbstractStep<CallBot>> {
+            CALL(new BlockingStep<CallBot>() {
+                @Override public StepResult step(CallBot self) throws Exception {
+                    self.caller = Thread.currentThread();
+                    self.entered.countDown();
+                    self.gate.await();
+                    self.result = "called";
+                    return self.next(DONE, 1);
+                }
+            }),
+            DONE(new Step<CallBot>() {
+                @Override public StepResult step(CallBot self) {
+                    self.result = "done";
+                    return self.nextEnd();
+                }
+            });
+
+            private final AbstractStep<CallBot> step;
+
+            private CallState(AbstractStep<CallBot> step) {
+                this.step = step;
+            }
+
+            @Override public AbstractStep<CallBot> get() {
+                return step;
+            }
+        }
+
+        protected static class Builder extends BuilderBase<Builder, CallState, CallBot> {
+            protected Builder() {
+                super(CallState.CALL);
+                enableManualStop();
+            }
+
+            public CallBot build() {
+                return new CallBot(this);
+            }
+        }
+    }
+
+    private static boolean runtimeHasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) throws Exception {
+        return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    private static void checkBlockingSteps(VirtualThreadScheduler sched) throws Exception {
+        final CallBot bot = new CallBot.Builder().build();
+        final ListenableFuture<? extends Automaton.StopDescription<CallBot.CallState>> stop = bot.start(sched);
+        assertTrue(bot.entered.await(5, TimeUnit.SECONDS));
+        assertTrue(bot.caller != Thread.currentThread());
+        if (sched.isVirtual()) {
+            assertTrue(isVirtual(bot.caller));
+        }
+        Thread.sleep(20);
+        assertFalse(stop.isDone());
+        bot.gate.countDown();
+        assertEquals(Automaton.StopReason.NATURAL, stop.get().getReason());
+        assertEquals("done", bot.result);
+
+        // stop() while blocked: the automaton stops when the step returns;
+        final CallBot stopped = new CallBot.Builder().build();
+        final ListenableFuture<? extends Automaton.StopDescription<CallBot.CallState>> manual = stopped.start(sched);
+        assertTrue(stopped.entered.await(5, TimeUnit.SECONDS));
+        stopped.stop();
+        Thread.sleep(20);
+        assertFalse(manual.isDone());
+        stopped.gate.countDown();
+        final Automaton.StopDescription<CallBot.CallState> d = manual.get();
+        assertEquals(Automaton.StopReason.MANUAL, d.getReason());
+        assertEquals(CallBot.CallState.DONE, d.getLastState());
+        assertEquals("called", stopped.result);
+    }
+
+    @Test(timeout = 20000) public void testVirtualThreads() throws Exception {
+        final VirtualThreadScheduler sched = new VirtualThreadScheduler();
+        try {
+            assertEquals(runtimeHasVirtualThreads(), sched.isVirtual());
+            Assume.assumeTrue(sched.isVirtual());
+            checkBlockingSteps(sched);
+        } finally {
+            sched.shutdown();
+        }
+    }
+
+    @Test(timeout = 20000) public void testPlatformThreads() throws Exception {
+        final VirtualThreadScheduler sched = new VirtualThreadScheduler(1, TimeUnit.MILLISECONDS, false);
+        try {
+            assertFalse(sched.isVirtual());
+            checkBlockingSteps(sched);
+        } finally {
+            sched.shutdown();
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package automatons.automatons.test;
 
 import static java.lang.System.out;
+import static org.junit.Assert.assertEquals;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -16,6 +18,7 @@ import automatons.automatons.sched.AutomatonScheduler;
 import com.google.common.base.Function;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 public class TestWaitJoin {
 
@@ -94,4 +97,50 @@ public class TestWaitJoin {
 		assert desc.getReason() == Automaton.StopReason.NATURAL;
 	}
 
+	protected static class SpinAutomaton extends AbstractAutomaton<Integer> {
+		int left = 100;
+		long sleepMillis; // per step;
+
+		protected SpinAutomaton(Builder b) {
+			super(b);
+		}
+
+		@Override protected StepResult step(Integer currentState) {
+			if (sleepMillis > 0) {
+				Uninterruptibles.sleepUninterruptibly(sleepMillis, TimeUnit.MILLISECONDS);
+			}
+			return left-- > 0 ? nextJoinSameState() : nextEnd();
+		}
+
+		public static class Builder extends BuilderBase<Builder, Integer, SpinAutomaton> {
+			protected Builder() {
+				super(1);
+			};
+
+			public SpinAutomaton build() {
+				return new SpinAutomaton(this);
+			}
+		}
+	}
+
+	@Test(timeout = 10000) public void testStepBudget() throws Throwable {
+		SpinAutomaton a = new SpinAutomaton.Builder().stepBudget(10).build();
+		Automaton.StopDescription<Integer> desc = a.start(sched).get();
+		assertEquals(Automaton.StopReason.NATURAL, desc.getReason());
+		assertEquals(-1, a.left);
+		// 101 steps, 10 per run;
+		assertEquals(10, a.getBudgetYields());
+	}
+
+	@Test(timeout = 10000) public void testTimeBudget() throws Throwable {
+		SpinAutomaton a = new SpinAutomaton.Builder().timeBudget(1, TimeUnit.MILLISECONDS).build();
+		a.left = 10;
+		a.sleepMillis = 5;
+		Automaton.StopDescription<Integer> desc = a.start(sched).get();
+		assertEquals(Automaton.StopReason.NATURAL, desc.getReason());
+		assertEquals(-1, a.left);
+		// 11 steps, every one is over the budget: the chain yields after each;
+		assertEquals(10, a.getBudgetYields());
+	}
+
 }